@@ -0,0 +1,200 @@
+package de.web.f_reissmann.benchmark;
+
+import de.web.f_reissmann.SaveTvDownloaderApp;
+import org.apache.commons.io.FileUtils;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Runs the whole downloader against a local {@link SaveTvStandIn} and reports the throughput.
+ * <p>
+ * All arguments are "key=value"-pairs. Keys starting with "standin." configure the stand-in:
+ * <ul>
+ * <li>standin.recordings: the number of recordings in the archive (default 20)</li>
+ * <li>standin.size: the size of every media file, or a range like "32M-128M" (default 16M)</li>
+ * <li>standin.latency: milliseconds every API-request takes (default 20)</li>
+ * <li>standin.bandwidth: bytes per second of every media stream, like "4M" (default 0 = unlimited)</li>
+ * <li>standin.errors: the probability of a failing request or an aborted stream (default 0)</li>
+ * <li>standin.truncated: the fraction of media files which are served truncated (default 0)</li>
+ * <li>standin.session: seconds after which a session expires (default 0 = never)</li>
+ * <li>standin.links: seconds after which a download-url expires (default 0 = never)</li>
+ * </ul>
+ * All other keys are written to the ".properties"-file of the downloader, e.g. "download.parallelism=4".
+ * <p>
+ * Besides the throughput, the peak number of live threads is reported. So running the same arguments once with
+ * "download.engine=BLOCKING" and once with "download.engine=ASYNC" compares the threads the engines need.
+ *
+ * @author Fabian Reißmann
+ * @since 26.03.2017
+ */
+public final class EndToEndBenchmark {
+
+    private static final String STANDIN_PREFIX = "standin.";
+    private static final Pattern TELECAST_ID = Pattern.compile("^.*-(\\d+)\\.mp4$");
+    private static final Pattern SIZE = Pattern.compile("^(\\d+)([KMG]?)$");
+    private static final double MB = 1024.0 * 1024.0;
+
+    private EndToEndBenchmark() {
+        throw new UnsupportedOperationException("Utility-Class should not be instantiated.");
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args "key=value"-pairs, see above
+     * @throws IOException if the stand-in or the temporary files could not be created
+     */
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = new TreeMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator < 1) {
+                throw new IllegalArgumentException("Expected key=value, but was: " + arg);
+            }
+            options.put(arg.substring(0, separator).trim(), arg.substring(separator + 1).trim());
+        }
+
+        String[] sizes = options.getOrDefault(STANDIN_PREFIX + "size", "16M").split("-");
+        File destination = Files.createTempDirectory("savetv-benchmark").toFile();
+
+        try (SaveTvStandIn standIn = new SaveTvStandIn.Builder()
+                .withRecordings(Integer.parseInt(options.getOrDefault(STANDIN_PREFIX + "recordings", "20")))
+                .withLatencyMillis(Long.parseLong(options.getOrDefault(STANDIN_PREFIX + "latency", "20")))
+                .withBandwidth(parseSize(options.getOrDefault(STANDIN_PREFIX + "bandwidth", "0")))
+                .withErrorRate(Double.parseDouble(options.getOrDefault(STANDIN_PREFIX + "errors", "0")))
+                .withTruncationRate(Double.parseDouble(options.getOrDefault(STANDIN_PREFIX + "truncated", "0")))
+                .withSessionLifetimeMillis(TimeUnit.SECONDS.toMillis(
+                        Long.parseLong(options.getOrDefault(STANDIN_PREFIX + "session", "0"))))
+                .withLinkLifetimeMillis(TimeUnit.SECONDS.toMillis(
+                        Long.parseLong(options.getOrDefault(STANDIN_PREFIX + "links", "0"))))
+                .withFileSizes(parseSize(sizes[0]), parseSize(sizes[sizes.length - 1]))
+                .start()) {
+
+            File config = writeConfig(options, standIn, destination);
+            long recordings = standIn.getArchiveSize();
+
+            long started = System.nanoTime();
+            SaveTvDownloaderApp.main(new String[]{config.getPath()});
+            double seconds = (System.nanoTime() - started) / 1e9;
+
+            // Including the subfolders created by the filename-template
+            Collection<File> downloaded = FileUtils.listFiles(destination, new String[]{"mp4"}, true);
+            long files = downloaded.size();
+            long bytes = 0;
+            long corrupt = 0;
+            for (File file : downloaded) {
+                bytes += file.length();
+                if (!isIntact(file, standIn)) {
+                    corrupt++;
+                }
+            }
+            long truncated = standIn.getArchivedIds().stream().filter(standIn::isTruncated).count();
+
+            System.out.println();
+            System.out.println("Configuration:       " + options);
+            System.out.println(String.format(Locale.ROOT, "Downloaded:          %d of %d recordings, %.1f MB",
+                    files, recordings, bytes / MB));
+            System.out.println(String.format(Locale.ROOT, "Corrupt files:       %d", corrupt));
+            System.out.println(String.format(Locale.ROOT, "Left in archive:     %d, %d of them truncated",
+                    standIn.getArchiveSize(), truncated));
+            System.out.println(String.format(Locale.ROOT, "Elapsed:             %.2f s", seconds));
+            System.out.println(String.format(Locale.ROOT, "Recordings per hour: %.1f", files * 3600 / seconds));
+            System.out.println(String.format(Locale.ROOT, "Throughput:          %.2f MB/s", bytes / MB / seconds));
+            System.out.println(String.format(Locale.ROOT, "Threads:             %d at peak",
+                    ManagementFactory.getThreadMXBean().getPeakThreadCount()));
+            System.out.println(String.format(Locale.ROOT, "Served by stand-in:  %.1f MB, %d injected errors, %d logins",
+                    standIn.getServedBytes() / MB, standIn.getInjectedErrors(), standIn.getLogins()));
+            System.out.println(String.format(Locale.ROOT, "Download-urls:       %d resolved",
+                    standIn.getResolvedUrls()));
+        } finally {
+            FileUtils.deleteQuietly(destination);
+        }
+    }
+
+    /**
+     * Compares the downloaded file with the content served by the stand-in. The file is identified by the telecast-id
+     * at the end of its name, so a filename-template without it makes every file count as corrupt.
+     */
+    private static boolean isIntact(File file, SaveTvStandIn standIn) throws IOException {
+        Matcher name = TELECAST_ID.matcher(file.getName());
+        if (!name.matches()) {
+            return false;
+        }
+
+        long telecastId = Long.parseLong(name.group(1));
+        if (standIn.isTruncated(telecastId) || file.length() != standIn.fileSize(telecastId)) {
+            return false;
+        }
+
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+            long position = 0;
+            int read;
+            while ((read = in.read()) != -1) {
+                if ((byte) read != standIn.expectedByte(telecastId, position++)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes the ".properties"-file for the downloader. The given options override the defaults.
+     */
+    private static File writeConfig(Map<String, String> options, SaveTvStandIn standIn, File destination)
+            throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("username", "benchmark");
+        properties.setProperty("password", "benchmark");
+        properties.setProperty("savetv.uri", standIn.getBaseUri().toString());
+        properties.setProperty("download.destination", destination.getPath());
+        properties.setProperty("retrieve.entries.age.min", "0");
+        properties.setProperty("metrics.jmx.enabled", "false");
+
+        options.forEach((key, value) -> {
+            if (!key.startsWith(STANDIN_PREFIX)) {
+                properties.setProperty(key, value);
+            }
+        });
+
+        File config = new File(destination, "benchmark.properties");
+        try (OutputStream out = Files.newOutputStream(config.toPath())) {
+            properties.store(out, "Created by " + EndToEndBenchmark.class.getSimpleName());
+        }
+        return config;
+    }
+
+    private static long parseSize(String size) {
+        Matcher matcher = SIZE.matcher(size.trim().toUpperCase(Locale.ROOT));
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Not a valid size: " + size);
+        }
+
+        long value = Long.parseLong(matcher.group(1));
+        switch (matcher.group(2)) {
+            case "G":
+                return value * 1024 * 1024 * 1024;
+            case "M":
+                return value * 1024 * 1024;
+            case "K":
+                return value * 1024;
+            default:
+                return value;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package de.web.f_reissmann.benchmark;
+
+import de.web.f_reissmann.file.FilenameTemplate;
+import de.web.f_reissmann.file.FilesystemProfile;
+import de.web.f_reissmann.recording.Recording;
+import de.web.f_reissmann.recording.format.RecordingFormat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures creating the sanitized filename of a downloaded {@link Recording}.
+ *
+ * @author Fabian Reißmann
+ * @since 24.03.2017
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FilenameBenchmark {
+
+    private static final int RECORDINGS = 1024;
+    private static final long SEED = 42L;
+
+    @Param({"PORTABLE", "POSIX", "WINDOWS"})
+    private FilesystemProfile profile;
+
+    private FilenameTemplate template;
+    private FilenameTemplate nestedTemplate;
+    private Recording[] recordings;
+    private RecordingFormat[] formats;
+    private int next;
+
+    @Setup
+    public void createRecordings() {
+        template = FilenameTemplate.compile(FilenameTemplate.DEFAULT, profile);
+        nestedTemplate = FilenameTemplate.compile("{title}/{title}-S{episode}-{quality}-{telecastId}", profile);
+
+        List<Recording> created = SyntheticArchive.recordings(RECORDINGS, SEED);
+
+        recordings = created.toArray(new Recording[created.size()]);
+        formats = new RecordingFormat[RECORDINGS];
+        for (int i = 0; i < RECORDINGS; i++) {
+            formats[i] = recordings[i].getAvailableFormats().get(0);
+        }
+    }
+
+    @Benchmark
+    public String toFilename() {
+        next = (next + 1) & (RECORDINGS - 1);
+
+        return template.render(recordings[next], formats[next], "");
+    }
+
+    @Benchmark
+    public String toNestedFilename() {
+        next = (next + 1) & (RECORDINGS - 1);
+
+        return nestedTemplate.render(recordings[next], formats[next], "");
+    }
+}
@@ -0,0 +1,54 @@
+package de.web.f_reissmann.benchmark;
+
+import de.web.f_reissmann.recording.Recording;
+import de.web.f_reissmann.recording.format.RecordingFormat;
+import de.web.f_reissmann.recording.format.selection.FormatPreference;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures selecting the preferred {@link RecordingFormat} of a {@link Recording} for the predefined orders and a
+ * custom rule.
+ *
+ * @author Fabian Reißmann
+ * @since 24.03.2017
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FormatSelectionBenchmark {
+
+    private static final int RECORDINGS = 1024;
+    private static final long SEED = 42L;
+
+    @Param({"CUT_BEST_QUALITY", "CUT_LOWEST_QUALITY", "cut HD > cut SD > uncut HD > never MOBILE"})
+    private String rule;
+
+    private FormatPreference preference;
+    private Recording[] recordings;
+    private int next;
+
+    @Setup
+    public void createRecordings() {
+        preference = FormatPreference.compile(rule);
+
+        List<Recording> created = SyntheticArchive.recordings(RECORDINGS, SEED);
+        recordings = created.toArray(new Recording[created.size()]);
+    }
+
+    @Benchmark
+    public RecordingFormat selectFormat() {
+        next = (next + 1) & (RECORDINGS - 1);
+
+        return preference.select(recordings[next]);
+    }
+}
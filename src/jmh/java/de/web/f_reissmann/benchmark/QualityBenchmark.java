@@ -0,0 +1,35 @@
+package de.web.f_reissmann.benchmark;
+
+import de.web.f_reissmann.recording.format.RecordingFormat.Quality;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures looking up a {@link Quality} by the code used by save.tv, which happens for every format of every parsed
+ * recording.
+ *
+ * @author Fabian Reißmann
+ * @since 24.03.2017
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class QualityBenchmark {
+
+    private static final int[] CODES = {4, 5, 6};
+
+    private int next;
+
+    @Benchmark
+    public Quality fromCode() {
+        next = next == CODES.length - 1 ? 0 : next + 1;
+
+        return Quality.fromCode(CODES[next]);
+    }
+}
@@ -0,0 +1,55 @@
+package de.web.f_reissmann.benchmark;
+
+import de.web.f_reissmann.parser.SaveTvResponseParser;
+import de.web.f_reissmann.recording.Recording;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures parsing the response of the online-archive, once as String into a JSON-tree and once streamed.
+ *
+ * @author Fabian Reißmann
+ * @since 24.03.2017
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SaveTvResponseParserBenchmark {
+
+    private static final long SEED = 42L;
+
+    @Param({"500", "5000", "50000"})
+    private int entries;
+
+    private final SaveTvResponseParser parser = new SaveTvResponseParser();
+    private String response;
+    private byte[] responseBytes;
+
+    @Setup
+    public void createResponse() {
+        response = SyntheticArchive.archiveResponse(entries, SEED);
+        responseBytes = response.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public List<Recording> extractRecordingsFromString() {
+        return parser.extractRecordings(response);
+    }
+
+    @Benchmark
+    public List<Recording> extractRecordingsFromStream() throws IOException {
+        return parser.extractRecordings(new ByteArrayInputStream(responseBytes));
+    }
+}
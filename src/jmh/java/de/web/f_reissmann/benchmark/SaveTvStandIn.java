@@ -0,0 +1,612 @@
+package de.web.f_reissmann.benchmark;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import de.web.f_reissmann.recording.Recording;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.SplittableRandom;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A local stand-in for save.tv, so the downloader can be tested and benchmarked without the live service.
+ * <p>
+ * Serves the login, the paged online-archive, the download-urls, the deletion and the media files (including
+ * HTTP-Range requests) of synthetic recordings. The latency of the API, the bandwidth of every media stream, the rate of
+ * injected errors, the sizes of the media files and the lifetimes of a session and a download-url are tunable by the
+ * {@link Builder}. An expired download-url is refused with "410 Gone". A search of the archive matches the titles and
+ * sub-titles ignoring the case.
+ * Requests to the API without a valid session are redirected to the login-page, like save.tv does.
+ * <p>
+ * Every media file is a minimal MP4-file ("ftyp", "moov" and "mdat" box). The content of the "mdat" box is derived
+ * from its telecast-id and position, so downloads can be verified using {@link #expectedByte(long, long)}. A fraction
+ * of the files can be served truncated, i.e. consistently shorter than their "mdat" box claims.
+ *
+ * @author Fabian Reißmann
+ * @since 26.03.2017
+ */
+public class SaveTvStandIn implements AutoCloseable {
+
+    private static final String LOGIN_PATH = "/STV/M/Index.cfm";
+    private static final String ARCHIVE_PATH = "/STV/M/obj/archive/JSON/VideoArchiveApi.cfm";
+    private static final String DOWNLOAD_URL_PATH = "/STV/M/obj/cRecordOrder/croGetDownloadUrl2.cfm";
+    private static final String DELETE_PATH = "/STV/M/obj/cRecordOrder/croDelete.cfm";
+    private static final String MEDIA_PATH = "/media/";
+    private static final String SESSION_COOKIE = "CFID";
+    private static final String JSON = "application/json; charset=utf-8";
+    private static final String HTML = "text/html; charset=utf-8";
+
+    private static final Pattern RANGE = Pattern.compile("^bytes=(\\d+)-(\\d*)$");
+    private static final Pattern MEDIA_FILE = Pattern.compile("^" + MEDIA_PATH + "(\\d+)\\.mp4$");
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * "ftyp" (24 bytes), an empty "moov" (8 bytes) and the 64 bit header of "mdat" (16 bytes).
+     */
+    static final int MP4_HEADER_SIZE = 48;
+    private static final int UNLIMITED = 0;
+
+    private final HttpServer server;
+    private final ExecutorService handlers;
+    private final NavigableMap<Long, Recording> archive = new ConcurrentSkipListMap<>();
+
+    private final Map<String, Long> sessions = new ConcurrentHashMap<>();
+
+    private final long latencyMillis;
+    private final long sessionMillis;
+    private final long linkMillis;
+    private final long bytesPerSecond;
+    private final double errorRate;
+    private final double truncationRate;
+    private final long minFileSize;
+    private final long maxFileSize;
+
+    private final AtomicLong servedBytes = new AtomicLong();
+    private final AtomicLong injectedErrors = new AtomicLong();
+    private final AtomicLong logins = new AtomicLong();
+    private final AtomicLong resolvedUrls = new AtomicLong();
+
+    private SaveTvStandIn(Builder builder) throws IOException {
+        this.latencyMillis = builder.latencyMillis;
+        this.sessionMillis = builder.sessionMillis;
+        this.linkMillis = builder.linkMillis;
+        this.bytesPerSecond = builder.bytesPerSecond;
+        this.errorRate = builder.errorRate;
+        this.truncationRate = builder.truncationRate;
+        this.minFileSize = builder.minFileSize;
+        this.maxFileSize = builder.maxFileSize;
+
+        for (Recording recording : SyntheticArchive.recordings(builder.recordings, builder.seed)) {
+            archive.put(recording.getTelecastId(), recording);
+        }
+
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), builder.port), 0);
+        this.handlers = Executors.newCachedThreadPool();
+        this.server.setExecutor(handlers);
+
+        server.createContext(LOGIN_PATH, api(this::login));
+        server.createContext(ARCHIVE_PATH, api(this::archivePage));
+        server.createContext(DOWNLOAD_URL_PATH, api(this::downloadUrl));
+        server.createContext(DELETE_PATH, api(this::delete));
+        server.createContext(MEDIA_PATH, this::media);
+        server.start();
+    }
+
+    /**
+     * @return the base-{@link URI} to configure the downloader with
+     */
+    public URI getBaseUri() {
+        return URI.create("http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort());
+    }
+
+    /**
+     * @return the number of recordings which were not deleted yet
+     */
+    public int getArchiveSize() {
+        return archive.size();
+    }
+
+    /**
+     * @return the telecast-ids of the recordings which were not deleted yet
+     */
+    public Set<Long> getArchivedIds() {
+        return new HashSet<>(archive.keySet());
+    }
+
+    /**
+     * @return the number of media bytes which were sent
+     */
+    public long getServedBytes() {
+        return servedBytes.get();
+    }
+
+    /**
+     * @return the number of failed requests and aborted streams
+     */
+    public long getInjectedErrors() {
+        return injectedErrors.get();
+    }
+
+    /**
+     * @return the number of successful logins
+     */
+    public long getLogins() {
+        return logins.get();
+    }
+
+    /**
+     * @return the number of download-urls which were handed out
+     */
+    public long getResolvedUrls() {
+        return resolvedUrls.get();
+    }
+
+    /**
+     * The size of the media file of the given recording, always the same for the same telecast-id.
+     * A truncated file is shorter than its "mdat" box claims.
+     *
+     * @param telecastId the id of the recording
+     * @return the size in bytes
+     */
+    public long fileSize(long telecastId) {
+        long size = completeSize(telecastId);
+
+        return isTruncated(telecastId) ? MP4_HEADER_SIZE + (size - MP4_HEADER_SIZE) * 9 / 10 : size;
+    }
+
+    /**
+     * Whether the media file of the given recording is served truncated, always the same for the same telecast-id.
+     *
+     * @param telecastId the id of the recording
+     * @return true, if the file is truncated
+     */
+    public boolean isTruncated(long telecastId) {
+        return truncationRate > 0 && new SplittableRandom(telecastId).nextDouble() < truncationRate;
+    }
+
+    /**
+     * The byte at the given position of the media file of the given recording.
+     *
+     * @param telecastId the id of the recording
+     * @param position   the position in the media file
+     * @return the expected byte
+     */
+    public byte expectedByte(long telecastId, long position) {
+        if (position >= MP4_HEADER_SIZE) {
+            return (byte) (position * 31 + telecastId);
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(MP4_HEADER_SIZE);
+        header.putInt(24).put(type("ftyp")).put(type("isom")).putInt(0x200).put(type("isom")).put(type("mp42"));
+        header.putInt(8).put(type("moov"));
+        header.putInt(1).put(type("mdat")).putLong(completeSize(telecastId) - 32);
+
+        return header.get((int) position);
+    }
+
+    private long completeSize(long telecastId) {
+        long spread = maxFileSize - minFileSize;
+
+        return spread == 0 ? minFileSize : minFileSize + Math.floorMod(telecastId * 2_654_435_761L, spread + 1);
+    }
+
+    private static byte[] type(String type) {
+        return type.getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * A POST logs in, a GET (e.g. after a redirect because of an expired session) shows the login-page.
+     */
+    private Response login(HttpExchange exchange) {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            return new Response(200, "<!DOCTYPE html><html><body><form method=\"post\"></form></body></html>", HTML);
+        }
+
+        String token = Long.toHexString(ThreadLocalRandom.current().nextLong());
+        sessions.put(token, System.currentTimeMillis());
+        logins.incrementAndGet();
+
+        exchange.getResponseHeaders().add("Set-Cookie", SESSION_COOKIE + "=" + token + "; Path=/");
+        exchange.getResponseHeaders().add("Location", "/STV/M/obj/user/usShowVideoArchive.cfm");
+
+        return new Response(302, "");
+    }
+
+    private boolean hasValidSession(HttpExchange exchange) {
+        List<String> cookies = exchange.getRequestHeaders().get("Cookie");
+        if (cookies == null) {
+            return false;
+        }
+
+        for (String header : cookies) {
+            for (String cookie : header.split(";")) {
+                String[] pair = cookie.trim().split("=", 2);
+                Long created = pair.length == 2 && SESSION_COOKIE.equals(pair[0]) ? sessions.get(pair[1]) : null;
+
+                if (created != null && (sessionMillis == UNLIMITED
+                        || System.currentTimeMillis() - created < sessionMillis)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private Response archivePage(HttpExchange exchange) {
+        Map<String, String> query = queryOf(exchange);
+        int perPage = Integer.parseInt(query.getOrDefault("iEntriesPerPage", "100"));
+        int page = Integer.parseInt(query.getOrDefault("iCurrentPage", "1"));
+
+        String searchString = query.getOrDefault("sSearchString", "").toLowerCase(Locale.ROOT);
+
+        List<Recording> entries = new ArrayList<>();
+        for (Recording recording : archive.values()) {
+            if (recording.getTitle().toLowerCase(Locale.ROOT).contains(searchString)
+                    || recording.getSubTitle().toLowerCase(Locale.ROOT).contains(searchString)) {
+                entries.add(recording);
+            }
+        }
+        int from = Math.min(entries.size(), (page - 1) * perPage);
+        int to = Math.min(entries.size(), from + perPage);
+
+        return new Response(200, SyntheticArchive.archiveResponse(entries.subList(from, to)));
+    }
+
+    private Response downloadUrl(HttpExchange exchange) {
+        long telecastId = Long.parseLong(queryOf(exchange).get("TelecastId"));
+        if (!archive.containsKey(telecastId)) {
+            return new Response(404, "{}");
+        }
+
+        resolvedUrls.incrementAndGet();
+        long expires = linkMillis == UNLIMITED ? Long.MAX_VALUE : System.currentTimeMillis() + linkMillis;
+
+        return new Response(200, "{\"DOWNLOADURL\":\"" + getBaseUri() + MEDIA_PATH + telecastId + ".mp4?expires="
+                + expires + "\"}");
+    }
+
+    private Response delete(HttpExchange exchange) {
+        archive.remove(Long.parseLong(queryOf(exchange).get("TelecastID")));
+
+        return new Response(200, "{\"SUCCESS\":true}");
+    }
+
+    /**
+     * Wraps an API-endpoint with the configured latency and error injection. Unless it is the login itself, requests
+     * without a valid session are redirected to the login.
+     */
+    private HttpHandler api(Endpoint endpoint) {
+        return exchange -> {
+            try (InputStream body = exchange.getRequestBody()) {
+                drain(body);
+                sleep(latencyMillis);
+
+                Response response;
+                if (shouldFail()) {
+                    response = new Response(500, "Injected error");
+                } else if (!LOGIN_PATH.equals(exchange.getRequestURI().getPath()) && !hasValidSession(exchange)) {
+                    exchange.getResponseHeaders().add("Location", LOGIN_PATH);
+                    response = new Response(302, "");
+                } else {
+                    response = endpoint.handle(exchange);
+                }
+                byte[] bytes = response.body.getBytes(StandardCharsets.UTF_8);
+
+                exchange.getResponseHeaders().set("Content-Type", response.contentType);
+                exchange.sendResponseHeaders(response.status, bytes.length == 0 ? -1 : bytes.length);
+                if (bytes.length > 0) {
+                    exchange.getResponseBody().write(bytes);
+                }
+            } catch (RuntimeException e) {
+                exchange.sendResponseHeaders(400, -1);
+            } finally {
+                exchange.close();
+            }
+        };
+    }
+
+    private void media(HttpExchange exchange) throws IOException {
+        try {
+            Matcher file = MEDIA_FILE.matcher(exchange.getRequestURI().getPath());
+            if (!file.matches() || !archive.containsKey(Long.parseLong(file.group(1)))) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+
+            String expires = queryOf(exchange).get("expires");
+            if (expires != null && Long.parseLong(expires) < System.currentTimeMillis()) {
+                exchange.sendResponseHeaders(410, -1);
+                return;
+            }
+
+            long telecastId = Long.parseLong(file.group(1));
+            long size = fileSize(telecastId);
+            long start = 0;
+            long end = size - 1;
+
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            Matcher ranged = range == null ? null : RANGE.matcher(range);
+            if (ranged != null && ranged.matches()) {
+                start = Long.parseLong(ranged.group(1));
+                end = ranged.group(2).isEmpty() ? end : Math.min(end, Long.parseLong(ranged.group(2)));
+
+                exchange.getResponseHeaders().set("Content-Range", "bytes " + start + "-" + end + "/" + size);
+                exchange.sendResponseHeaders(206, end - start + 1);
+            } else {
+                exchange.sendResponseHeaders(200, size);
+            }
+
+            stream(exchange.getResponseBody(), telecastId, start, end);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Writes the bytes in chunks, paced to the configured bandwidth. An injected error aborts the stream after a
+     * random chunk, so the client receives less than announced.
+     */
+    private void stream(OutputStream out, long telecastId, long start, long end) throws IOException {
+        byte[] chunk = new byte[CHUNK_SIZE];
+        long startNanos = System.nanoTime();
+        long abortAt = shouldFail() ? ThreadLocalRandom.current().nextLong(start, end + 1) : Long.MAX_VALUE;
+
+        long position = start;
+        while (position <= end) {
+            if (position >= abortAt) {
+                throw new IOException("Injected abort of the media stream");
+            }
+
+            int length = (int) Math.min(chunk.length, end - position + 1);
+            for (int i = 0; i < length; i++) {
+                chunk[i] = expectedByte(telecastId, position + i);
+            }
+            out.write(chunk, 0, length);
+            position += length;
+            servedBytes.addAndGet(length);
+
+            if (bytesPerSecond != UNLIMITED) {
+                long due = startNanos + TimeUnit.SECONDS.toNanos(position - start) / bytesPerSecond;
+                sleep(TimeUnit.NANOSECONDS.toMillis(due - System.nanoTime()));
+            }
+        }
+    }
+
+    private boolean shouldFail() {
+        if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+            injectedErrors.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Decodes the values like a form, i.e. a "+" is a space, so an encoded "&" does not split a value.
+     */
+    private static Map<String, String> queryOf(HttpExchange exchange) {
+        Map<String, String> values = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+
+        if (query != null) {
+            for (String pair : query.split("&")) {
+                int separator = pair.indexOf('=');
+                if (separator > 0) {
+                    values.put(pair.substring(0, separator), decode(pair.substring(separator + 1)));
+                }
+            }
+        }
+        return values;
+    }
+
+    private static String decode(String value) {
+        try {
+            return URLDecoder.decode(value, StandardCharsets.UTF_8.name());
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException("UTF-8 is always supported", e);
+        }
+    }
+
+    private static void drain(InputStream in) throws IOException {
+        byte[] ignored = new byte[1024];
+        while (in.read(ignored) != -1) {
+            // The request bodies (login form) are not evaluated
+        }
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        handlers.shutdownNow();
+    }
+
+    /**
+     * Handles one request of the API.
+     */
+    @FunctionalInterface
+    private interface Endpoint {
+        Response handle(HttpExchange exchange);
+    }
+
+    /**
+     * The status and body of an API-response.
+     */
+    private static class Response {
+
+        private final int status;
+        private final String body;
+        private final String contentType;
+
+        private Response(int status, String body) {
+            this(status, body, JSON);
+        }
+
+        private Response(int status, String body, String contentType) {
+            this.status = status;
+            this.body = body;
+            this.contentType = contentType;
+        }
+    }
+
+    /**
+     * Builder for the {@link SaveTvStandIn}.
+     */
+    public static class Builder {
+
+        private int port;
+        private int recordings = 20;
+        private long seed = 42L;
+        private long latencyMillis;
+        private long sessionMillis = UNLIMITED;
+        private long linkMillis = UNLIMITED;
+        private long bytesPerSecond = UNLIMITED;
+        private double errorRate;
+        private double truncationRate;
+        private long minFileSize = 16L * 1024 * 1024;
+        private long maxFileSize = 16L * 1024 * 1024;
+
+        /**
+         * @param port the local port, 0 for any free one
+         * @return <code>this</code>, for fluent style
+         */
+        public Builder withPort(int port) {
+            this.port = port;
+            return this;
+        }
+
+        /**
+         * @param recordings the number of recordings in the online-archive
+         * @return <code>this</code>, for fluent style
+         */
+        public Builder withRecordings(int recordings) {
+            this.recordings = recordings;
+            return this;
+        }
+
+        /**
+         * @param seed the seed of the synthetic recordings
+         * @return <code>this</code>, for fluent style
+         */
+        public Builder withSeed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        /**
+         * @param latencyMillis the time every API-request takes before it is answered
+         * @return <code>this</code>, for fluent style
+         */
+        public Builder withLatencyMillis(long latencyMillis) {
+            this.latencyMillis = latencyMillis;
+            return this;
+        }
+
+        /**
+         * @param sessionMillis the time after which a session expires, 0 for never
+         * @return <code>this</code>, for fluent style
+         */
+        public Builder withSessionLifetimeMillis(long sessionMillis) {
+            this.sessionMillis = sessionMillis;
+            return this;
+        }
+
+        /**
+         * @param linkMillis the time after which a download-url expires, 0 for never
+         * @return <code>this</code>, for fluent style
+         */
+        public Builder withLinkLifetimeMillis(long linkMillis) {
+            this.linkMillis = linkMillis;
+            return this;
+        }
+
+        /**
+         * @param bytesPerSecond the bandwidth of every single media stream, 0 for unlimited
+         * @return <code>this</code>, for fluent style
+         */
+        public Builder withBandwidth(long bytesPerSecond) {
+            this.bytesPerSecond = bytesPerSecond;
+            return this;
+        }
+
+        /**
+         * @param errorRate the probability of an API-request failing with status 500, or of a media stream being
+         *                  aborted
+         * @return <code>this</code>, for fluent style
+         */
+        public Builder withErrorRate(double errorRate) {
+            this.errorRate = errorRate;
+            return this;
+        }
+
+        /**
+         * @param truncationRate the fraction of media files which are served truncated
+         * @return <code>this</code>, for fluent style
+         */
+        public Builder withTruncationRate(double truncationRate) {
+            this.truncationRate = truncationRate;
+            return this;
+        }
+
+        /**
+         * @param minFileSize the smallest media file in bytes
+         * @param maxFileSize the largest media file in bytes
+         * @return <code>this</code>, for fluent style
+         */
+        public Builder withFileSizes(long minFileSize, long maxFileSize) {
+            if (minFileSize < MP4_HEADER_SIZE || maxFileSize < minFileSize) {
+                throw new IllegalArgumentException("Invalid file sizes: " + minFileSize + "-" + maxFileSize);
+            }
+
+            this.minFileSize = minFileSize;
+            this.maxFileSize = maxFileSize;
+            return this;
+        }
+
+        /**
+         * Creates and starts the stand-in.
+         *
+         * @return the running {@link SaveTvStandIn}
+         * @throws IOException if the server could not be started
+         */
+        public SaveTvStandIn start() throws IOException {
+            return new SaveTvStandIn(this);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package de.web.f_reissmann.benchmark;
+
+import com.google.gson.stream.JsonWriter;
+import de.web.f_reissmann.recording.Recording;
+import de.web.f_reissmann.recording.format.RecordingFormat;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Utility-Class for creating synthetic, but realistic responses and {@link Recording}s of the online-archive.
+ * <p>
+ * The same seed always creates the same data, so benchmark runs are comparable.
+ *
+ * @author Fabian Reißmann
+ * @since 24.03.2017
+ */
+public final class SyntheticArchive {
+
+    private static final String[] TITLES = {"Tatort", "Die Sendung mit der Maus", "Großstadtrevier",
+            "Terra X: Faszination Erde", "Der Bergdoktor", "Löwenzahn", "Wer weiß denn sowas?", "Akte Ö/Ä/Ü"};
+    private static final String[] SUBTITLES = {"", "Krimi, D 2016", "Doku-Reihe", "Folge: Übermut & Ärger",
+            "Spielfilm (USA 1999) - \"Die Rückkehr\""};
+    private static final int[] QUALITY_CODES = {4, 5, 6};
+    private static final int MAX_DAYS_LEFT = 30;
+    private static final long FIRST_TELECAST_ID = 13_000_000L;
+    private static final int CHANNELS = 40;
+
+    private SyntheticArchive() {
+        throw new UnsupportedOperationException("Utility-Class should not be instantiated.");
+    }
+
+    /**
+     * Creates the JSON-response of the "VideoArchiveApi" containing the given number of entries.
+     *
+     * @param entries the number of recordings
+     * @param seed    the seed of the random data
+     * @return the response as it is sent by save.tv
+     */
+    public static String archiveResponse(int entries, long seed) {
+        return archiveResponse(recordings(entries, seed));
+    }
+
+    /**
+     * Creates the JSON-response of the "VideoArchiveApi" containing the given recordings.
+     *
+     * @param recordings the recordings of the response
+     * @return the response as it is sent by save.tv
+     */
+    public static String archiveResponse(Collection<Recording> recordings) {
+        StringWriter response = new StringWriter();
+
+        try (JsonWriter json = new JsonWriter(response)) {
+            json.beginObject();
+            json.name("ITOTALENTRIES").value(recordings.size());
+            json.name("ARRVIDEOARCHIVEENTRIES").beginArray();
+
+            for (Recording recording : recordings) {
+                json.beginObject();
+                json.name("STRTELECASTENTRY").beginObject();
+                json.name("ITELECASTID").value(recording.getTelecastId());
+                json.name("STITLE").value(recording.getTitle());
+                json.name("SSUBTITLE").value(recording.getSubTitle());
+                json.name("SFOLGE").value(recording.getEpisode());
+                json.name("IDAYSLEFTBEFOREDELETE").value(recording.getDaysLeft());
+                json.name("SCHANNELNAME").value("Channel " + recording.getTelecastId() % CHANNELS);
+                json.name("ARRALLOWDDOWNLOADFORMATS").beginArray();
+                for (RecordingFormat format : recording.getAvailableFormats()) {
+                    json.beginObject();
+                    json.name("RECORDINGFORMATID").value(format.getQualityCode());
+                    json.name("BADCUTENABLED").value(format.isCut());
+                    json.endObject();
+                }
+                json.endArray();
+                json.endObject();
+                json.endObject();
+            }
+
+            json.endArray();
+            json.endObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return response.toString();
+    }
+
+    /**
+     * Creates random {@link Recording}s with ascending telecast-ids.
+     *
+     * @param count the number of recordings
+     * @param seed  the seed of the random data
+     * @return the recordings
+     */
+    public static List<Recording> recordings(int count, long seed) {
+        Random random = new Random(seed);
+        List<Recording> recordings = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+            recordings.add(new Recording.Builder()
+                    .withTelecastId(FIRST_TELECAST_ID + i)
+                    .withTitle(pick(random, TITLES))
+                    .withSubTitle(pick(random, SUBTITLES))
+                    .withEpisode(random.nextBoolean() ? String.valueOf(random.nextInt(500)) : "")
+                    .withDaysLeft(random.nextInt(MAX_DAYS_LEFT))
+                    .withAvailableFormats(randomFormats(random))
+                    .build());
+        }
+        return recordings;
+    }
+
+    /**
+     * Every quality is available with a chance of 3/4, but every recording has at least one format.
+     */
+    private static List<RecordingFormat> randomFormats(Random random) {
+        List<RecordingFormat> formats = new ArrayList<>();
+
+        for (int code : QUALITY_CODES) {
+            if (random.nextInt(4) != 0) {
+                formats.add(RecordingFormat.of(random.nextBoolean(), RecordingFormat.Quality.fromCode(code)));
+            }
+        }
+        if (formats.isEmpty()) {
+            formats.add(RecordingFormat.of(false, RecordingFormat.Quality.MOBILE));
+        }
+        return formats;
+    }
+
+    private static String pick(Random random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+}
@@ -1,18 +1,44 @@
 package de.web.f_reissmann;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import de.web.f_reissmann.config.SaveTvConfig;
+import de.web.f_reissmann.connection.HttpTransport;
 import de.web.f_reissmann.connection.SaveTvConnection;
+import de.web.f_reissmann.daemon.DownloadDaemon;
+import de.web.f_reissmann.deletion.DeletionPipeline;
+import de.web.f_reissmann.download.DeadlineScheduler;
+import de.web.f_reissmann.download.SegmentedDownloader;
+import de.web.f_reissmann.download.SharedDownloadScheduler;
+import de.web.f_reissmann.download.TransferEstimator;
+import de.web.f_reissmann.ledger.DownloadLedger;
+import de.web.f_reissmann.metrics.MetricsExporter;
 import de.web.f_reissmann.recording.Recording;
-import org.apache.http.impl.client.HttpClients;
+import de.web.f_reissmann.recording.format.selection.FormatPreference;
+import org.apache.http.client.HttpClient;
+import org.apache.http.impl.client.CloseableHttpClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 /**
  * The Application to start the downloader.
  * <p>
- * Needs a valid ".properties"-file as first argument.
+ * Needs a valid ".properties"-file as first argument. Every further ".properties"-file adds another account, whose
+ * recordings are downloaded at the same time. All accounts have their own connection and session, but share the
+ * download workers, the bandwidth and the disk space, as configured by the first file.
  *
  * @author Fabian Reißmann
  * @since 19.02.2017
@@ -28,34 +54,206 @@ public final class SaveTvDownloaderApp {
     /**
      * Starts the application.
      *
-     * @param args the ".properties"-file to get the configuration parameters from
+     * @param args the ".properties"-files to get the configuration parameters from, one per account
      */
     public static void main(String[] args) {
         if (args.length < 1) {
-            throw new IllegalArgumentException("Wrong arguments:s <path_to_config>");
+            throw new IllegalArgumentException("Wrong arguments:s <path_to_config> [<path_to_config> ...]");
         }
 
-        String configPath = args[0];
-        SaveTvConfig saveTvConfig = SaveTvConfig.from(configPath);
+        List<SaveTvConfig> saveTvConfigs = new ArrayList<>();
+        for (String configPath : args) {
+            saveTvConfigs.add(SaveTvConfig.from(configPath));
+            LOGGER.info("Started Downloader using config: '{}' ", configPath);
+        }
+        checkDestinations(saveTvConfigs);
+
+        MetricsExporter metricsExporter = MetricsExporter.start(saveTvConfigs.get(0));
+        try {
+            run(saveTvConfigs);
+        } finally {
+            metricsExporter.close();
+        }
+    }
+
+    /**
+     * The ledger and the other files of an account are stored in its download destination by default, so accounts
+     * sharing one would overwrite each other's files.
+     */
+    private static void checkDestinations(List<SaveTvConfig> saveTvConfigs) {
+        Set<File> destinations = new HashSet<>();
+        for (SaveTvConfig saveTvConfig : saveTvConfigs) {
+            if (!destinations.add(new File(saveTvConfig.getDownloadDestination()).getAbsoluteFile())) {
+                throw new IllegalArgumentException("Every account needs its own download destination, but '"
+                        + saveTvConfig.getAccountName() + "' shares: '" + saveTvConfig.getDownloadDestination() + "'");
+            }
+        }
+    }
+
+    /**
+     * Runs all accounts, sharing the downloader and the workers configured by the first one.
+     */
+    private static void run(List<SaveTvConfig> saveTvConfigs) {
+        SaveTvConfig sharedConfig = saveTvConfigs.get(0);
+        int totalWeight = saveTvConfigs.stream().mapToInt(SaveTvConfig::getAccountWeight).sum();
+
+        try (CloseableHttpClient sharedClient = HttpTransport.createClient(sharedConfig);
+             SegmentedDownloader downloader = SaveTvConnection.createDownloader(sharedConfig, sharedClient);
+             SharedDownloadScheduler downloads = new SharedDownloadScheduler(
+                SharedDownloadScheduler.Arbitration.valueOf(sharedConfig.getDownloadArbitration()),
+                sharedConfig.getDownloadParallelism(), sharedConfig.getDownloadUrlPrefetch(),
+                Duration.ofSeconds(sharedConfig.getDownloadSpaceDeferSeconds()),
+                sharedConfig.getDownloadSpaceDeferMax())) {
+
+            List<Runnable> accountRuns = new ArrayList<>();
+            for (int i = 0; i < saveTvConfigs.size(); i++) {
+                SaveTvConfig saveTvConfig = saveTvConfigs.get(i);
+                // The share of the workers, used to estimate which recordings are at risk
+                int share = Math.max(1,
+                        sharedConfig.getDownloadParallelism() * saveTvConfig.getAccountWeight() / totalWeight);
+                boolean daemon = sharedConfig.isDaemonEnabled();
+
+                if (i == 0) {
+                    accountRuns.add(() -> runAccount(saveTvConfig, sharedClient, downloader, downloads, share,
+                            daemon));
+                } else {
+                    accountRuns.add(() -> runAccountWithOwnClient(saveTvConfig, downloader, downloads, share,
+                            daemon));
+                }
+            }
+
+            if (accountRuns.size() == 1) {
+                accountRuns.get(0).run();
+            } else {
+                runConcurrently(accountRuns);
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Unable to close the connections", e);
+        }
+    }
+
+    /**
+     * Runs every account in its own thread and waits until all of them are done.
+     */
+    private static void runConcurrently(List<Runnable> accountRuns) {
+        ExecutorService accounts = Executors.newFixedThreadPool(accountRuns.size(), new ThreadFactoryBuilder()
+                .setNameFormat("account-%d")
+                .build());
+        try {
+            List<CompletableFuture<Void>> runs = new ArrayList<>();
+            for (Runnable accountRun : accountRuns) {
+                runs.add(CompletableFuture.runAsync(accountRun, accounts));
+            }
+
+            for (CompletableFuture<Void> run : runs) {
+                try {
+                    run.join();
+                } catch (CompletionException e) {
+                    LOGGER.error("Downloading an account failed", e.getCause());
+                }
+            }
+        } finally {
+            accounts.shutdown();
+        }
+    }
 
-        LOGGER.info("Started Downloader using config: '{}' ", configPath);
+    /**
+     * Runs an account with a client of its own, so its session is separated from the others. The client is closed
+     * once the account is done.
+     */
+    private static void runAccountWithOwnClient(SaveTvConfig saveTvConfig, SegmentedDownloader downloader,
+                                                SharedDownloadScheduler downloads, int share, boolean daemon) {
+        try (CloseableHttpClient client = HttpTransport.createClient(saveTvConfig)) {
+            runAccount(saveTvConfig, client, downloader, downloads, share, daemon);
+        } catch (IOException e) {
+            LOGGER.warn("Unable to close the connections of '{}'", saveTvConfig.getAccountName(), e);
+        }
+    }
 
-        SaveTvConnection saveTvConnection = SaveTvConnection.login(saveTvConfig, HttpClients::createDefault);
+    private static void runAccount(SaveTvConfig saveTvConfig, HttpClient client, SegmentedDownloader downloader,
+                                   SharedDownloadScheduler downloads, int share, boolean daemon) {
+        SaveTvConnection saveTvConnection = SaveTvConnection.login(saveTvConfig, () -> client, downloader);
 
-        List<Recording> recordings = saveTvConnection.retrieveRecordings();
+        DownloadLedger ledger = DownloadLedger.open(new File(saveTvConfig.getLedgerFile()),
+                new File(saveTvConfig.getDownloadDestination()));
 
-        LOGGER.info("Found {} recordings to download", recordings.size());
+        TransferEstimator estimator = new TransferEstimator(saveTvConfig.getDownloadThroughputEstimate());
+        DeadlineScheduler scheduler = new DeadlineScheduler(estimator,
+                FormatPreference.compile(saveTvConfig.getFormatSelection())::select,
+                share, Clock.systemDefaultZone());
+        SharedDownloadScheduler.Account account = downloads.register(saveTvConfig.getAccountName(),
+                saveTvConfig.getAccountWeight(), saveTvConnection::download, saveTvConnection::prefetchDownloadUrls,
+                scheduler);
 
-        for (Recording recording : recordings) {
-            saveTvConnection.download(recording);
+        try (DeletionPipeline deletions = new DeletionPipeline(new File(saveTvConfig.getDeleteJournalFile()),
+                saveTvConnection::deleteRecording, saveTvConfig.getDeleteRate(),
+                TimeUnit.SECONDS.toMillis(saveTvConfig.getDeleteBatchDelaySeconds()))) {
 
-            if (saveTvConfig.shouldDeleteOnSuccess()) {
-                saveTvConnection.deleteRecording(recording);
+            if (daemon) {
+                new DownloadDaemon(saveTvConfig, saveTvConnection, ledger, deletions, account, estimator).run();
+            } else {
+                downloadOnce(saveTvConfig, saveTvConnection, ledger, deletions, account, estimator);
             }
-            LOGGER.info("Finished recording\n");
+        }
+    }
+
+    /**
+     * Retrieves the online-archive once and downloads all recordings which were not downloaded yet.
+     */
+    private static void downloadOnce(SaveTvConfig saveTvConfig, SaveTvConnection saveTvConnection,
+                                     DownloadLedger ledger, DeletionPipeline deletions,
+                                     SharedDownloadScheduler.Account downloads, TransferEstimator estimator) {
+        Set<Long> listed = new HashSet<>();
+        List<Recording> alreadyDownloaded = new ArrayList<>();
+
+        int found;
+        deletions.pause();
+        try {
+            found = saveTvConnection.retrieveRecordings(recording -> {
+                listed.add(recording.getTelecastId());
+
+                if (ledger.contains(recording.getTelecastId())) {
+                    LOGGER.debug("Skipping already downloaded recording: '{}'", recording.getTitle());
+                    alreadyDownloaded.add(recording);
+                    return;
+                }
+
+                downloads.submit(recording, downloaded -> {
+                    ledger.record(downloaded);
+                    estimator.record(downloaded);
+                    downloads.replan();
+
+                    if (saveTvConfig.shouldDeleteOnSuccess()) {
+                        deletions.request(downloaded.getRecording().getTelecastId(),
+                                downloaded.getRecording().getSearchTerm());
+                    }
+                    LOGGER.info("Finished recording: '{}'", downloaded.getRecording().getTitle());
+                });
+            });
+        } finally {
+            deletions.resume();
+        }
+
+        LOGGER.info("Found {} recordings, {} of them were already downloaded", found, alreadyDownloaded.size());
+        downloads.replan();
+        if (saveTvConnection.isArchiveFiltered()) {
+            // The recordings outside the search terms are not listed, but must not count as deleted
+            deletions.confirmFiltered(listed, saveTvConfig.getSearchTerms(),
+                    saveTvConnection::retrieveAllTelecastIds);
+        } else {
+            deletions.confirm(listed);
+        }
+
+        // A previous run downloaded them, but did not delete them. Files which were not verified are kept online
+        if (saveTvConfig.shouldDeleteOnSuccess()) {
+            alreadyDownloaded.stream()
+                    .filter(recording -> ledger.isVerified(recording.getTelecastId()))
+                    .forEach(recording -> deletions.request(recording.getTelecastId(), recording.getSearchTerm()));
         }
 
-        LOGGER.info("Downloader finished");
+        int succeeded = downloads.awaitCompletion();
+        LOGGER.info("Downloader finished: {} of {} recordings downloaded", succeeded,
+                found - alreadyDownloaded.size());
     }
 
 }
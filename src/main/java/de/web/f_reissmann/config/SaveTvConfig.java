@@ -8,6 +8,8 @@ import org.apache.commons.configuration2.builder.fluent.PropertiesBuilderParamet
 import org.apache.commons.configuration2.ex.ConfigurationException;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * The config which provides the necessary settings.
@@ -23,9 +25,59 @@ public class SaveTvConfig {
      * Defaults, if they are not provided in the config.
      */
     private static final int NUMBER_OF_ENTRIES_PER_REQUEST_DEFAULT = 500;
+    private static final String BASE_URI_DEFAULT = "https://www.save.tv";
     private static final boolean DELETE_ON_SUCCESS_DEFAULT = false;
     private static final String FORMAT_SELECTION_DEFAULT = "CUT_BEST_QUALITY";
+    private static final String FILENAME_TEMPLATE_DEFAULT = "{title}-{episode}-{subTitle}-{quality}-{telecastId}";
+    private static final String FILENAME_PROFILE_DEFAULT = "PORTABLE";
     private static final int MIN_AGE_DEFAULT = 3;
+    private static final String SEARCH_TERMS_DEFAULT = "";
+    private static final int DOWNLOAD_PARALLELISM_DEFAULT = 1;
+    private static final String DOWNLOAD_ARBITRATION_DEFAULT = "FAIR_SHARE";
+    private static final int ACCOUNT_WEIGHT_DEFAULT = 1;
+    private static final int DOWNLOAD_SEGMENTS_DEFAULT = 4;
+    private static final long DOWNLOAD_SEGMENT_MIN_SIZE_DEFAULT = 16L * 1024 * 1024;
+    private static final String DOWNLOAD_ENGINE_DEFAULT = "BLOCKING";
+    private static final int DOWNLOAD_ENGINE_IO_THREADS_DEFAULT = 2;
+    private static final String LEDGER_FILE_NAME_DEFAULT = ".savetv-ledger";
+    private static final int DOWNLOAD_WRITE_BLOCK_SIZE_DEFAULT = 1024 * 1024;
+    private static final int DOWNLOAD_BUFFER_COUNT_DEFAULT = 32;
+    private static final long DOWNLOAD_CHECKPOINT_INTERVAL_DEFAULT = 32L * 1024 * 1024;
+    private static final String DOWNLOAD_FSYNC_POLICY_DEFAULT = "CHECKPOINT";
+    private static final String DOWNLOAD_PREALLOCATION_DEFAULT = "SIZE";
+    private static final boolean DOWNLOAD_CHECKSUM_FULL_DEFAULT = false;
+    private static final String DOWNLOAD_BANDWIDTH_LIMIT_DEFAULT = "0";
+    private static final String DOWNLOAD_BANDWIDTH_SCHEDULE_DEFAULT = "";
+    private static final String DOWNLOAD_THROUGHPUT_ESTIMATE_DEFAULT = "2M";
+    private static final int DOWNLOAD_URL_PREFETCH_DEFAULT = 4;
+    private static final long DOWNLOAD_URL_TTL_MINUTES_DEFAULT = 30L;
+    private static final long DOWNLOAD_SPACE_HEADROOM_DEFAULT = 1024L * 1024 * 1024;
+    private static final long DOWNLOAD_SPACE_DEFER_SECONDS_DEFAULT = 300L;
+    private static final int DOWNLOAD_SPACE_DEFER_MAX_DEFAULT = 12;
+    private static final double DELETE_RATE_DEFAULT = 1.0;
+    private static final long DELETE_BATCH_DELAY_SECONDS_DEFAULT = 10L;
+    private static final String DELETE_JOURNAL_FILE_NAME_DEFAULT = ".savetv-deletions";
+    private static final boolean DAEMON_ENABLED_DEFAULT = false;
+    private static final boolean METRICS_JMX_ENABLED_DEFAULT = true;
+    private static final int METRICS_HTTP_PORT_DEFAULT = 0;
+    private static final long DAEMON_POLL_INTERVAL_MINUTES_DEFAULT = 60L;
+    private static final long DAEMON_FULL_POLL_INTERVAL_HOURS_DEFAULT = 24L;
+    private static final String DAEMON_QUEUE_FILE_NAME_DEFAULT = ".savetv-queue";
+    private static final boolean SESSION_PERSIST_DEFAULT = true;
+    private static final String SESSION_FILE_NAME_DEFAULT = ".savetv-session";
+    private static final int HTTP_MAX_CONNECTIONS_DEFAULT = 64;
+    private static final int HTTP_MAX_CONNECTIONS_PER_ROUTE_DEFAULT = 32;
+    private static final int HTTP_CONNECT_TIMEOUT_MILLIS_DEFAULT = 10_000;
+    private static final int HTTP_SOCKET_TIMEOUT_MILLIS_DEFAULT = 60_000;
+    private static final int HTTP_CONNECTION_REQUEST_TIMEOUT_MILLIS_DEFAULT = 0;
+    private static final long HTTP_KEEP_ALIVE_SECONDS_DEFAULT = 30L;
+    private static final int RETRY_ATTEMPTS_DEFAULT = 5;
+    private static final long RETRY_INITIAL_BACKOFF_MILLIS_DEFAULT = 1000L;
+    private static final long RETRY_MAX_BACKOFF_MILLIS_DEFAULT = 60_000L;
+    private static final double RETRY_BACKOFF_MULTIPLIER_DEFAULT = 2.0;
+    private static final double RETRY_JITTER_DEFAULT = 0.5;
+    private static final int CIRCUIT_FAILURE_THRESHOLD_DEFAULT = 5;
+    private static final long CIRCUIT_OPEN_SECONDS_DEFAULT = 30L;
 
     private final Configuration config;
 
@@ -63,6 +115,24 @@ public class SaveTvConfig {
         return config.getString(Constants.PASS);
     }
 
+    /**
+     * The name of the account, which is used for logging if several accounts are downloaded at once.
+     *
+     * @return the name, defaults to the username
+     */
+    public String getAccountName() {
+        return config.getString(Constants.ACCOUNT_NAME, getUsername());
+    }
+
+    /**
+     * The share of the download workers of this account, relative to the other accounts downloaded at once.
+     *
+     * @return the weight, at least 1
+     */
+    public int getAccountWeight() {
+        return config.getInt(Constants.ACCOUNT_WEIGHT, ACCOUNT_WEIGHT_DEFAULT);
+    }
+
     public String getDownloadDestination() {
         return config.getString(Constants.DOWNLOAD_DESTINATION);
     }
@@ -71,6 +141,52 @@ public class SaveTvConfig {
         return config.getString(Constants.FORMAT_SELECTION, FORMAT_SELECTION_DEFAULT);
     }
 
+    /**
+     * The template of the names of the downloaded files, see {@link de.web.f_reissmann.file.FilenameTemplate}.
+     *
+     * @return the template, e.g. "{title}/{title}-S{episode}-{quality}-{telecastId}"
+     */
+    public String getFilenameTemplate() {
+        return config.getString(Constants.FILENAME_TEMPLATE, FILENAME_TEMPLATE_DEFAULT);
+    }
+
+    /**
+     * The name of the {@link de.web.f_reissmann.file.FilesystemProfile} of the download destination.
+     *
+     * @return the name of the profile, e.g. "PORTABLE"
+     */
+    public String getFilenameProfile() {
+        return config.getString(Constants.FILENAME_PROFILE, FILENAME_PROFILE_DEFAULT);
+    }
+
+    /**
+     * The base of all URIs of save.tv. Only needs to be changed for testing against a stand-in server.
+     *
+     * @return the base-URI, e.g. "https://www.save.tv"
+     */
+    public String getBaseUri() {
+        return config.getString(Constants.BASE_URI, BASE_URI_DEFAULT);
+    }
+
+    /**
+     * Whether the cookies of the session are stored, so the next run can reuse them instead of logging in.
+     *
+     * @return true, if the session should be stored; false, otherwise
+     */
+    public boolean shouldPersistSession() {
+        return config.getBoolean(Constants.SESSION_PERSIST, SESSION_PERSIST_DEFAULT);
+    }
+
+    /**
+     * The file which stores the cookies of the session. Defaults to ".savetv-session" in the download destination.
+     *
+     * @return the path of the session file
+     */
+    public String getSessionFile() {
+        return config.getString(Constants.SESSION_FILE,
+                new File(getDownloadDestination(), SESSION_FILE_NAME_DEFAULT).getPath());
+    }
+
     public boolean shouldDeleteOnSuccess() {
         return config.getBoolean(Constants.DELETE_ON_SUCCESS, DELETE_ON_SUCCESS_DEFAULT);
     }
@@ -83,6 +199,303 @@ public class SaveTvConfig {
         return config.getInt(Constants.MIN_AGE, MIN_AGE_DEFAULT);
     }
 
+    /**
+     * The terms the online-archive is searched for, separated by "|", e.g. "Tatort|Die Sendung mit der Maus".
+     *
+     * @return the trimmed terms, or an empty list to retrieve the whole archive
+     */
+    public List<String> getSearchTerms() {
+        List<String> searchTerms = new ArrayList<>();
+        for (String searchTerm : config.getString(Constants.SEARCH_TERMS, SEARCH_TERMS_DEFAULT).split("\\|")) {
+            if (!searchTerm.trim().isEmpty()) {
+                searchTerms.add(searchTerm.trim());
+            }
+        }
+        return searchTerms;
+    }
+
+    public int getDownloadParallelism() {
+        return config.getInt(Constants.DOWNLOAD_PARALLELISM, DOWNLOAD_PARALLELISM_DEFAULT);
+    }
+
+    /**
+     * Decides which account gets the next free download worker, if several accounts are downloaded at once:
+     * "FAIR_SHARE" shares the workers by the weights of the accounts, "DEADLINE" prefers the earliest deadline of all
+     * accounts.
+     *
+     * @return the name of the arbitration
+     */
+    public String getDownloadArbitration() {
+        return config.getString(Constants.DOWNLOAD_ARBITRATION, DOWNLOAD_ARBITRATION_DEFAULT);
+    }
+
+    public int getDownloadSegments() {
+        return config.getInt(Constants.DOWNLOAD_SEGMENTS, DOWNLOAD_SEGMENTS_DEFAULT);
+    }
+
+    public long getDownloadSegmentMinSize() {
+        return config.getLong(Constants.DOWNLOAD_SEGMENT_MIN_SIZE, DOWNLOAD_SEGMENT_MIN_SIZE_DEFAULT);
+    }
+
+    /**
+     * The engine transferring the segments: "BLOCKING" uses one thread per segment, "ASYNC" a few non-blocking I/O
+     * threads for all segments.
+     *
+     * @return the name of the engine
+     */
+    public String getDownloadEngine() {
+        return config.getString(Constants.DOWNLOAD_ENGINE, DOWNLOAD_ENGINE_DEFAULT);
+    }
+
+    /**
+     * The number of I/O threads of the "ASYNC" engine, which transfer all segments together.
+     *
+     * @return the number of threads
+     */
+    public int getDownloadEngineIoThreads() {
+        return config.getInt(Constants.DOWNLOAD_ENGINE_IO_THREADS, DOWNLOAD_ENGINE_IO_THREADS_DEFAULT);
+    }
+
+    public int getDownloadWriteBlockSize() {
+        return config.getInt(Constants.DOWNLOAD_WRITE_BLOCK_SIZE, DOWNLOAD_WRITE_BLOCK_SIZE_DEFAULT);
+    }
+
+    /**
+     * The number of write buffers shared by all downloads. Together with {@link #getDownloadWriteBlockSize()} this
+     * bounds the memory used for buffering downloads.
+     *
+     * @return the number of buffers
+     */
+    public int getDownloadBufferCount() {
+        return config.getInt(Constants.DOWNLOAD_BUFFER_COUNT, DOWNLOAD_BUFFER_COUNT_DEFAULT);
+    }
+
+    public long getDownloadCheckpointInterval() {
+        return config.getLong(Constants.DOWNLOAD_CHECKPOINT_INTERVAL, DOWNLOAD_CHECKPOINT_INTERVAL_DEFAULT);
+    }
+
+    public String getDownloadFsyncPolicy() {
+        return config.getString(Constants.DOWNLOAD_FSYNC_POLICY, DOWNLOAD_FSYNC_POLICY_DEFAULT);
+    }
+
+    public String getDownloadPreallocation() {
+        return config.getString(Constants.DOWNLOAD_PREALLOCATION, DOWNLOAD_PREALLOCATION_DEFAULT);
+    }
+
+    /**
+     * Whether the plain SHA-256 of a file downloaded in several segments is recorded, like <code>sha256sum</code>
+     * prints it. This reads every such file once more after it was downloaded. Otherwise the checksum combines the
+     * digests of the segments, which are calculated while the bytes are written.
+     *
+     * @return true, if the complete file should be read for its checksum; false, otherwise
+     */
+    public boolean shouldCalculateFullChecksum() {
+        return config.getBoolean(Constants.DOWNLOAD_CHECKSUM_FULL, DOWNLOAD_CHECKSUM_FULL_DEFAULT);
+    }
+
+    /**
+     * The bandwidth of all downloads together, outside of the windows of {@link #getDownloadBandwidthSchedule()}.
+     *
+     * @return the bandwidth in bytes per second, optionally with suffix "K", "M" or "G". "0" means unlimited
+     */
+    public String getDownloadBandwidthLimit() {
+        return config.getString(Constants.DOWNLOAD_BANDWIDTH_LIMIT, DOWNLOAD_BANDWIDTH_LIMIT_DEFAULT);
+    }
+
+    /**
+     * The time windows with their own bandwidth, e.g. "08:00-23:00@10M".
+     *
+     * @return the comma separated windows
+     */
+    public String getDownloadBandwidthSchedule() {
+        return config.getString(Constants.DOWNLOAD_BANDWIDTH_SCHEDULE, DOWNLOAD_BANDWIDTH_SCHEDULE_DEFAULT);
+    }
+
+    /**
+     * The file of the download ledger. Defaults to a hidden file in the download destination.
+     *
+     * @return the path of the ledger file
+     */
+    public String getLedgerFile() {
+        return config.getString(Constants.LEDGER_FILE,
+                new File(getDownloadDestination(), LEDGER_FILE_NAME_DEFAULT).getPath());
+    }
+
+    public int getHttpMaxConnections() {
+        return config.getInt(Constants.HTTP_MAX_CONNECTIONS, HTTP_MAX_CONNECTIONS_DEFAULT);
+    }
+
+    public int getHttpMaxConnectionsPerRoute() {
+        return config.getInt(Constants.HTTP_MAX_CONNECTIONS_PER_ROUTE, HTTP_MAX_CONNECTIONS_PER_ROUTE_DEFAULT);
+    }
+
+    public int getHttpConnectTimeoutMillis() {
+        return config.getInt(Constants.HTTP_CONNECT_TIMEOUT, HTTP_CONNECT_TIMEOUT_MILLIS_DEFAULT);
+    }
+
+    public int getHttpSocketTimeoutMillis() {
+        return config.getInt(Constants.HTTP_SOCKET_TIMEOUT, HTTP_SOCKET_TIMEOUT_MILLIS_DEFAULT);
+    }
+
+    /**
+     * How long to wait for a free connection from the pool. 0 means to wait infinitely.
+     *
+     * @return the timeout in milliseconds
+     */
+    public int getHttpConnectionRequestTimeoutMillis() {
+        return config.getInt(Constants.HTTP_CONNECTION_REQUEST_TIMEOUT, HTTP_CONNECTION_REQUEST_TIMEOUT_MILLIS_DEFAULT);
+    }
+
+    public long getHttpKeepAliveSeconds() {
+        return config.getLong(Constants.HTTP_KEEP_ALIVE, HTTP_KEEP_ALIVE_SECONDS_DEFAULT);
+    }
+
+    /**
+     * The number of attempts of a call to save.tv or a download, before it fails. Only transient network errors and
+     * server errors are retried.
+     *
+     * @return the number of attempts in total, 1 to never retry
+     */
+    public int getRetryAttempts() {
+        return config.getInt(Constants.RETRY_ATTEMPTS, RETRY_ATTEMPTS_DEFAULT);
+    }
+
+    public long getRetryInitialBackoffMillis() {
+        return config.getLong(Constants.RETRY_INITIAL_BACKOFF, RETRY_INITIAL_BACKOFF_MILLIS_DEFAULT);
+    }
+
+    public long getRetryMaxBackoffMillis() {
+        return config.getLong(Constants.RETRY_MAX_BACKOFF, RETRY_MAX_BACKOFF_MILLIS_DEFAULT);
+    }
+
+    public double getRetryBackoffMultiplier() {
+        return config.getDouble(Constants.RETRY_BACKOFF_MULTIPLIER, RETRY_BACKOFF_MULTIPLIER_DEFAULT);
+    }
+
+    /**
+     * The randomized fraction of every delay between two attempts.
+     *
+     * @return a value between 0 (fixed delays) and 1 (fully random delays)
+     */
+    public double getRetryJitter() {
+        return config.getDouble(Constants.RETRY_JITTER, RETRY_JITTER_DEFAULT);
+    }
+
+    /**
+     * The number of consecutive failures of one endpoint, after which it is not called for a while.
+     *
+     * @return the number of failures
+     */
+    public int getCircuitFailureThreshold() {
+        return config.getInt(Constants.CIRCUIT_FAILURE_THRESHOLD, CIRCUIT_FAILURE_THRESHOLD_DEFAULT);
+    }
+
+    public long getCircuitOpenSeconds() {
+        return config.getLong(Constants.CIRCUIT_OPEN_DURATION, CIRCUIT_OPEN_SECONDS_DEFAULT);
+    }
+
+    public String getDownloadThroughputEstimate() {
+        return config.getString(Constants.DOWNLOAD_THROUGHPUT_ESTIMATE, DOWNLOAD_THROUGHPUT_ESTIMATE_DEFAULT);
+    }
+
+    /**
+     * The number of waiting recordings whose download-urls are resolved ahead of their download.
+     *
+     * @return the number of recordings, or 0 if the urls should only be resolved when the download starts
+     */
+    public int getDownloadUrlPrefetch() {
+        return config.getInt(Constants.DOWNLOAD_URL_PREFETCH, DOWNLOAD_URL_PREFETCH_DEFAULT);
+    }
+
+    /**
+     * How long a resolved download-url is used, before it is resolved again.
+     *
+     * @return the time to live in minutes
+     */
+    public long getDownloadUrlTimeToLiveMinutes() {
+        return config.getLong(Constants.DOWNLOAD_URL_TTL, DOWNLOAD_URL_TTL_MINUTES_DEFAULT);
+    }
+
+    /**
+     * The free space of the download destination which is never used by downloads, in bytes.
+     *
+     * @return the headroom in bytes
+     */
+    public long getDownloadSpaceHeadroom() {
+        return config.getLong(Constants.DOWNLOAD_SPACE_HEADROOM, DOWNLOAD_SPACE_HEADROOM_DEFAULT);
+    }
+
+    /**
+     * How long a download which does not fit on the disk is deferred, before it is tried again.
+     *
+     * @return the delay in seconds
+     */
+    public long getDownloadSpaceDeferSeconds() {
+        return config.getLong(Constants.DOWNLOAD_SPACE_DEFER, DOWNLOAD_SPACE_DEFER_SECONDS_DEFAULT);
+    }
+
+    /**
+     * How often a download is deferred, before it fails for lack of space.
+     *
+     * @return the maximum number of deferrals, 0 to fail right away
+     */
+    public int getDownloadSpaceDeferMax() {
+        return config.getInt(Constants.DOWNLOAD_SPACE_DEFER_MAX, DOWNLOAD_SPACE_DEFER_MAX_DEFAULT);
+    }
+
+    public double getDeleteRate() {
+        return config.getDouble(Constants.DELETE_RATE, DELETE_RATE_DEFAULT);
+    }
+
+    public long getDeleteBatchDelaySeconds() {
+        return config.getLong(Constants.DELETE_BATCH_DELAY, DELETE_BATCH_DELAY_SECONDS_DEFAULT);
+    }
+
+    /**
+     * The file of the pending deletions. Defaults to a hidden file in the download destination.
+     *
+     * @return the path of the deletion journal
+     */
+    public String getDeleteJournalFile() {
+        return config.getString(Constants.DELETE_JOURNAL_FILE,
+                new File(getDownloadDestination(), DELETE_JOURNAL_FILE_NAME_DEFAULT).getPath());
+    }
+
+    public boolean isDaemonEnabled() {
+        return config.getBoolean(Constants.DAEMON_ENABLED, DAEMON_ENABLED_DEFAULT);
+    }
+
+    public long getDaemonPollIntervalMinutes() {
+        return config.getLong(Constants.DAEMON_POLL_INTERVAL, DAEMON_POLL_INTERVAL_MINUTES_DEFAULT);
+    }
+
+    public long getDaemonFullPollIntervalHours() {
+        return config.getLong(Constants.DAEMON_FULL_POLL_INTERVAL, DAEMON_FULL_POLL_INTERVAL_HOURS_DEFAULT);
+    }
+
+    /**
+     * The file of the daemon's download queue. Defaults to a hidden file in the download destination.
+     *
+     * @return the path of the queue file
+     */
+    public String getDaemonQueueFile() {
+        return config.getString(Constants.DAEMON_QUEUE_FILE,
+                new File(getDownloadDestination(), DAEMON_QUEUE_FILE_NAME_DEFAULT).getPath());
+    }
+
+    public boolean isMetricsJmxEnabled() {
+        return config.getBoolean(Constants.METRICS_JMX_ENABLED, METRICS_JMX_ENABLED_DEFAULT);
+    }
+
+    /**
+     * The local port on which the metrics are served in the text-format of Prometheus.
+     *
+     * @return the port, or 0 if the metrics should not be served
+     */
+    public int getMetricsHttpPort() {
+        return config.getInt(Constants.METRICS_HTTP_PORT, METRICS_HTTP_PORT_DEFAULT);
+    }
+
     /**
      * Defines the property-keys which can be used in the ".properties"-file.
      */
@@ -101,9 +514,60 @@ public class SaveTvConfig {
          * Defaults will be provided for the following properties, if none is defined in the ".properties"-file
          */
         private static final String FORMAT_SELECTION = "download.format.selection";
+        private static final String FILENAME_TEMPLATE = "download.filename.template";
+        private static final String FILENAME_PROFILE = "download.filename.profile";
+        private static final String BASE_URI = "savetv.uri";
+        private static final String SESSION_PERSIST = "session.persist";
+        private static final String SESSION_FILE = "session.file";
         private static final String DELETE_ON_SUCCESS = "download.delete.on.success";
         private static final String ENTRIES_PER_REQUEST = "retrieve.entries.per.request";
         private static final String MIN_AGE = "retrieve.entries.age.min";
+        private static final String SEARCH_TERMS = "retrieve.search.terms";
+        private static final String DOWNLOAD_PARALLELISM = "download.parallelism";
+        private static final String DOWNLOAD_ARBITRATION = "download.arbitration";
+        private static final String ACCOUNT_NAME = "account.name";
+        private static final String ACCOUNT_WEIGHT = "account.weight";
+        private static final String DOWNLOAD_SEGMENTS = "download.segments";
+        private static final String DOWNLOAD_SEGMENT_MIN_SIZE = "download.segment.size.min";
+        private static final String DOWNLOAD_ENGINE = "download.engine";
+        private static final String DOWNLOAD_ENGINE_IO_THREADS = "download.engine.io.threads";
+        private static final String LEDGER_FILE = "download.ledger.file";
+        private static final String DOWNLOAD_WRITE_BLOCK_SIZE = "download.write.block.size";
+        private static final String DOWNLOAD_BUFFER_COUNT = "download.write.buffers";
+        private static final String DOWNLOAD_CHECKPOINT_INTERVAL = "download.checkpoint.interval";
+        private static final String DOWNLOAD_FSYNC_POLICY = "download.fsync";
+        private static final String DOWNLOAD_PREALLOCATION = "download.preallocation";
+        private static final String DOWNLOAD_CHECKSUM_FULL = "download.checksum.full";
+        private static final String DOWNLOAD_BANDWIDTH_LIMIT = "download.bandwidth.limit";
+        private static final String DOWNLOAD_BANDWIDTH_SCHEDULE = "download.bandwidth.schedule";
+        private static final String DOWNLOAD_THROUGHPUT_ESTIMATE = "download.throughput.estimate";
+        private static final String DOWNLOAD_URL_PREFETCH = "download.url.prefetch";
+        private static final String DOWNLOAD_URL_TTL = "download.url.ttl";
+        private static final String DOWNLOAD_SPACE_HEADROOM = "download.space.headroom";
+        private static final String DOWNLOAD_SPACE_DEFER = "download.space.defer";
+        private static final String DOWNLOAD_SPACE_DEFER_MAX = "download.space.defer.max";
+        private static final String DELETE_RATE = "download.delete.rate";
+        private static final String DELETE_BATCH_DELAY = "download.delete.batch.delay";
+        private static final String DELETE_JOURNAL_FILE = "download.delete.journal.file";
+        private static final String DAEMON_ENABLED = "daemon.enabled";
+        private static final String DAEMON_POLL_INTERVAL = "daemon.poll.interval";
+        private static final String DAEMON_FULL_POLL_INTERVAL = "daemon.poll.full.interval";
+        private static final String DAEMON_QUEUE_FILE = "daemon.queue.file";
+        private static final String METRICS_JMX_ENABLED = "metrics.jmx.enabled";
+        private static final String METRICS_HTTP_PORT = "metrics.http.port";
+        private static final String HTTP_MAX_CONNECTIONS = "http.connections.max";
+        private static final String HTTP_MAX_CONNECTIONS_PER_ROUTE = "http.connections.max.per.route";
+        private static final String HTTP_CONNECT_TIMEOUT = "http.timeout.connect";
+        private static final String HTTP_SOCKET_TIMEOUT = "http.timeout.socket";
+        private static final String HTTP_CONNECTION_REQUEST_TIMEOUT = "http.timeout.connection.request";
+        private static final String HTTP_KEEP_ALIVE = "http.keepalive";
+        private static final String RETRY_ATTEMPTS = "retry.attempts";
+        private static final String RETRY_INITIAL_BACKOFF = "retry.backoff.initial";
+        private static final String RETRY_MAX_BACKOFF = "retry.backoff.max";
+        private static final String RETRY_BACKOFF_MULTIPLIER = "retry.backoff.multiplier";
+        private static final String RETRY_JITTER = "retry.jitter";
+        private static final String CIRCUIT_FAILURE_THRESHOLD = "circuit.failure.threshold";
+        private static final String CIRCUIT_OPEN_DURATION = "circuit.open.duration";
 
         private Constants() {
             throw new UnsupportedOperationException("Utility-Class should not be instantiated.");
@@ -0,0 +1,108 @@
+package de.web.f_reissmann.connection;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import de.web.f_reissmann.recording.Recording;
+import de.web.f_reissmann.recording.RecordingUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+/**
+ * Walks through all pages of the online-archive.
+ * <p>
+ * The pages are pipelined: While page K is requested and parsed, page K+1 is already requested and parsed in the
+ * background. The walk ends with the first page which is not full, or which does not contain any unseen recording
+ * (in case the server ignores the page parameter). So at the end at most one page is requested needlessly.
+ *
+ * @author Fabian Reißmann
+ * @since 06.03.2017
+ */
+class ArchivePager {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ArchivePager.class);
+
+    /**
+     * The page which is handed to the consumer and the one which is requested speculatively.
+     */
+    private static final int PAGES_IN_FLIGHT = 2;
+
+    /**
+     * Fetches and parses one page.
+     */
+    private final IntFunction<List<Recording>> pageFetcher;
+
+    private final int entriesPerPage;
+
+    /**
+     * Ctor.
+     *
+     * @param pageFetcher    fetches and parses the page with the given number, starting at
+     *                       {@link SaveTvUriUtils#FIRST_PAGE}
+     * @param entriesPerPage the number of entries which a full page contains
+     */
+    ArchivePager(IntFunction<List<Recording>> pageFetcher, int entriesPerPage) {
+        this.pageFetcher = pageFetcher;
+        this.entriesPerPage = entriesPerPage;
+    }
+
+    /**
+     * Retrieves all pages and hands every recording exactly once to the consumer.
+     * <p>
+     * The recordings of one page are handed out sorted by the days left before they are deleted.
+     *
+     * @param consumer receives the recordings
+     * @return the number of recordings handed to the consumer
+     */
+    int forEachRecording(Consumer<Recording> consumer) {
+        ExecutorService fetcher = Executors.newFixedThreadPool(PAGES_IN_FLIGHT, new ThreadFactoryBuilder()
+                .setNameFormat("archive-pager-%d")
+                .setDaemon(true)
+                .build());
+
+        try {
+            Set<Long> seen = new HashSet<>();
+            int page = SaveTvUriUtils.FIRST_PAGE;
+            CompletableFuture<List<Recording>> current = fetch(page, fetcher);
+            CompletableFuture<List<Recording>> next = fetch(page + 1, fetcher);
+
+            while (true) {
+                List<Recording> recordings = current.join();
+                boolean isLastPage = recordings.size() < entriesPerPage;
+
+                if (!isLastPage) {
+                    current = next;
+                    next = fetch(page + 2, fetcher);
+                }
+
+                int unseen = 0;
+                recordings.sort(RecordingUtil.byDaysLeft());
+                for (Recording recording : recordings) {
+                    if (seen.add(recording.getTelecastId())) {
+                        consumer.accept(recording);
+                        unseen++;
+                    }
+                }
+                LOGGER.debug("Retrieved page {} with {} recordings", page, recordings.size());
+
+                if (isLastPage || unseen == 0) {
+                    return seen.size();
+                }
+                page++;
+            }
+        } finally {
+            fetcher.shutdownNow();
+        }
+    }
+
+    private CompletableFuture<List<Recording>> fetch(int page, ExecutorService fetcher) {
+        return CompletableFuture.supplyAsync(() -> pageFetcher.apply(page), fetcher);
+    }
+}
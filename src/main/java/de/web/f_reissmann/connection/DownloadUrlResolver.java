@@ -0,0 +1,140 @@
+package de.web.f_reissmann.connection;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import de.web.f_reissmann.recording.Recording;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Resolves the download-urls of recordings ahead of their download and caches them for a limited time.
+ * <p>
+ * Resolving a url costs one round trip to the save.tv-API. The {@link de.web.f_reissmann.download.DownloadExecutor}
+ * announces the recordings which are going to be downloaded next, so their urls are resolved in the background while
+ * the current downloads are running. A download then takes the cached url, or waits for the one being resolved, and
+ * only resolves it itself if nothing was prefetched.
+ * <p>
+ * The urls expire at save.tv after some time. Cached urls are therefore only used for the configured time to live and
+ * a url refused by the server is {@link #invalidate(long) invalidated}, so the next call resolves a fresh one.
+ *
+ * @author Fabian Reißmann
+ * @since 29.03.2017
+ */
+class DownloadUrlResolver {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DownloadUrlResolver.class);
+
+    /**
+     * Resolves the url of one recording, blocking until the API answered.
+     */
+    private final Function<Recording, URI> resolveAction;
+
+    private final long timeToLiveNanos;
+    private final LongSupplier nanoTime;
+    private final Map<Long, CachedUrl> cache = new ConcurrentHashMap<>();
+
+    /**
+     * Resolves the prefetched urls. The threads are daemons, so pending prefetches never delay the exit.
+     */
+    private final ExecutorService prefetchers;
+
+    /**
+     * Ctor.
+     *
+     * @param resolveAction   resolves the url of one recording
+     * @param threads         the number of urls which are prefetched at once
+     * @param timeToLiveNanos how long a resolved url is used
+     * @param nanoTime        the source of the time, e.g. {@link System#nanoTime()}
+     */
+    DownloadUrlResolver(Function<Recording, URI> resolveAction, int threads, long timeToLiveNanos,
+                        LongSupplier nanoTime) {
+        this.resolveAction = resolveAction;
+        this.timeToLiveNanos = timeToLiveNanos;
+        this.nanoTime = nanoTime;
+        this.prefetchers = Executors.newFixedThreadPool(Math.max(1, threads), new ThreadFactoryBuilder()
+                .setNameFormat("url-resolver-%d")
+                .setDaemon(true)
+                .build());
+    }
+
+    /**
+     * Starts resolving the urls of the given recordings in the background, unless they are already cached.
+     *
+     * @param upcoming the recordings which are going to be downloaded next
+     */
+    void prefetch(Collection<Recording> upcoming) {
+        long now = nanoTime.getAsLong();
+        cache.values().removeIf(cached -> cached.isExpired(now));
+
+        for (Recording recording : upcoming) {
+            cache.computeIfAbsent(recording.getTelecastId(), id -> {
+                LOGGER.debug("Prefetching the download-url of '{}'", recording.getTitle());
+                return new CachedUrl(CompletableFuture.supplyAsync(() -> resolveAction.apply(recording), prefetchers),
+                        now);
+            });
+        }
+    }
+
+    /**
+     * Returns the url of the given recording, either from the cache or resolved right away.
+     *
+     * @param recording the recording to download
+     * @return the download-url
+     * @throws IllegalStateException if the url could not be resolved
+     */
+    URI resolve(Recording recording) {
+        CachedUrl cached = cache.get(recording.getTelecastId());
+
+        if (cached != null && !cached.isExpired(nanoTime.getAsLong())) {
+            try {
+                return cached.url.join();
+            } catch (CompletionException e) {
+                LOGGER.debug("Prefetching the download-url of '{}' failed, resolving it again",
+                        recording.getTitle(), e.getCause());
+                cache.remove(recording.getTelecastId(), cached);
+            }
+        }
+
+        URI url = resolveAction.apply(recording);
+        cache.put(recording.getTelecastId(), new CachedUrl(CompletableFuture.completedFuture(url),
+                nanoTime.getAsLong()));
+        return url;
+    }
+
+    /**
+     * Forgets the url of the given recording, e.g. because it was refused or is no longer needed.
+     *
+     * @param telecastId the id of the recording
+     */
+    void invalidate(long telecastId) {
+        cache.remove(telecastId);
+    }
+
+    /**
+     * A resolved, or still resolving, url together with the time it was requested.
+     */
+    private class CachedUrl {
+
+        private final CompletableFuture<URI> url;
+        private final long requestedAt;
+
+        private CachedUrl(CompletableFuture<URI> url, long requestedAt) {
+            this.url = url;
+            this.requestedAt = requestedAt;
+        }
+
+        private boolean isExpired(long now) {
+            return now - requestedAt > timeToLiveNanos;
+        }
+    }
+}
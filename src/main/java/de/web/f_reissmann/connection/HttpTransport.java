@@ -0,0 +1,150 @@
+package de.web.f_reissmann.connection;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import de.web.f_reissmann.config.SaveTvConfig;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.ssl.SSLContexts;
+
+import javax.net.ssl.SSLContext;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Utility-Class for creating the {@link CloseableHttpClient} which is shared by all requests, the calls of the
+ * save.tv-API as well as the download of the media files.
+ * <p>
+ * The connections are pooled and kept alive, so that subsequent requests to the same host do not need a new TCP- and
+ * TLS-handshake. Since all connections share one {@link SSLContext}, even new connections can resume a cached TLS
+ * session instead of doing a full handshake.
+ * <p>
+ * The "ASYNC" download-engine transfers the media files using a {@link CloseableHttpAsyncClient} instead, which is
+ * configured the same way.
+ *
+ * @author Fabian Reißmann
+ * @since 10.03.2017
+ */
+public final class HttpTransport {
+
+    /**
+     * How long a TLS session is kept for resumption.
+     */
+    private static final int TLS_SESSION_TIMEOUT_SECONDS = (int) TimeUnit.HOURS.toSeconds(1);
+
+    /**
+     * Pooled connections which have been idle for this long are validated before they are used again.
+     */
+    private static final int VALIDATE_AFTER_INACTIVITY_MILLIS = 2000;
+
+    private HttpTransport() {
+        throw new UnsupportedOperationException("Utility-Class should not be instantiated.");
+    }
+
+    /**
+     * Creates the pooling {@link CloseableHttpClient} configured by the given {@link SaveTvConfig}.
+     *
+     * @param config the config including the connection-limits and timeouts
+     * @return a new {@link CloseableHttpClient}
+     */
+    public static CloseableHttpClient createClient(SaveTvConfig config) {
+        long keepAliveMillis = TimeUnit.SECONDS.toMillis(config.getHttpKeepAliveSeconds());
+
+        return HttpClients.custom()
+                .setConnectionManager(createConnectionManager(config))
+                .setDefaultRequestConfig(createRequestConfig(config))
+                .setKeepAliveStrategy(createKeepAliveStrategy(keepAliveMillis))
+                .evictExpiredConnections()
+                .evictIdleConnections(keepAliveMillis, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    /**
+     * Creates and starts the non-blocking {@link CloseableHttpAsyncClient} of the "ASYNC" download-engine.
+     * <p>
+     * It has its own pool of connections, limited like the one of {@link #createClient(SaveTvConfig)}. All of them
+     * are served by {@link SaveTvConfig#getDownloadEngineIoThreads()} daemon threads, no matter how many downloads are
+     * running.
+     *
+     * @param config the config including the connection-limits, timeouts and the number of I/O threads
+     * @return a new, already started {@link CloseableHttpAsyncClient}
+     */
+    public static CloseableHttpAsyncClient createAsyncClient(SaveTvConfig config) {
+        if (config.getDownloadEngineIoThreads() < 1) {
+            throw new IllegalArgumentException(
+                    "The number of I/O threads must at least be 1, but was: " + config.getDownloadEngineIoThreads());
+        }
+
+        long keepAliveMillis = TimeUnit.SECONDS.toMillis(config.getHttpKeepAliveSeconds());
+
+        CloseableHttpAsyncClient client = HttpAsyncClients.custom()
+                .setSSLContext(createSslContext())
+                .setMaxConnTotal(config.getHttpMaxConnections())
+                .setMaxConnPerRoute(config.getHttpMaxConnectionsPerRoute())
+                .setDefaultRequestConfig(createRequestConfig(config))
+                .setKeepAliveStrategy(createKeepAliveStrategy(keepAliveMillis))
+                .setDefaultIOReactorConfig(IOReactorConfig.custom()
+                        .setIoThreadCount(config.getDownloadEngineIoThreads())
+                        .setConnectTimeout(config.getHttpConnectTimeoutMillis())
+                        .setSoTimeout(config.getHttpSocketTimeoutMillis())
+                        .build())
+                .setThreadFactory(new ThreadFactoryBuilder()
+                        .setNameFormat("download-io-%d")
+                        .setDaemon(true)
+                        .build())
+                .build();
+
+        client.start();
+        return client;
+    }
+
+    private static RequestConfig createRequestConfig(SaveTvConfig config) {
+        return RequestConfig.custom()
+                .setConnectTimeout(config.getHttpConnectTimeoutMillis())
+                .setSocketTimeout(config.getHttpSocketTimeoutMillis())
+                .setConnectionRequestTimeout(config.getHttpConnectionRequestTimeoutMillis())
+                .build();
+    }
+
+    /**
+     * Keeps a connection alive as long as the server announces, but never longer than the given duration.
+     */
+    private static ConnectionKeepAliveStrategy createKeepAliveStrategy(long keepAliveMillis) {
+        return (response, context) -> {
+            long announced = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+
+            return announced > 0 ? Math.min(announced, keepAliveMillis) : keepAliveMillis;
+        };
+    }
+
+    private static SSLContext createSslContext() {
+        SSLContext sslContext = SSLContexts.createSystemDefault();
+        sslContext.getClientSessionContext().setSessionTimeout(TLS_SESSION_TIMEOUT_SECONDS);
+        return sslContext;
+    }
+
+    private static PoolingHttpClientConnectionManager createConnectionManager(SaveTvConfig config) {
+        SSLContext sslContext = createSslContext();
+
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(
+                RegistryBuilder.<ConnectionSocketFactory>create()
+                        .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                        .register("https", new SSLConnectionSocketFactory(sslContext))
+                        .build());
+
+        connectionManager.setMaxTotal(config.getHttpMaxConnections());
+        connectionManager.setDefaultMaxPerRoute(config.getHttpMaxConnectionsPerRoute());
+        connectionManager.setValidateAfterInactivity(VALIDATE_AFTER_INACTIVITY_MILLIS);
+
+        return connectionManager;
+    }
+}
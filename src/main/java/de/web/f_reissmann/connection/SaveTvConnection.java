@@ -1,34 +1,67 @@
 package de.web.f_reissmann.connection;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import de.web.f_reissmann.config.SaveTvConfig;
-import de.web.f_reissmann.file.FilenameUtil;
+import de.web.f_reissmann.download.DownloadResult;
+import de.web.f_reissmann.download.LinkExpiredException;
+import de.web.f_reissmann.download.SegmentedDownloader;
+import de.web.f_reissmann.download.VerifiedTransfer;
+import de.web.f_reissmann.file.DownloadFilenames;
+import de.web.f_reissmann.file.FilenameTemplate;
+import de.web.f_reissmann.file.FilesystemProfile;
+import de.web.f_reissmann.metrics.Metrics;
 import de.web.f_reissmann.parser.SaveTvResponseParser;
 import de.web.f_reissmann.recording.Recording;
 import de.web.f_reissmann.recording.RecordingUtil;
 import de.web.f_reissmann.recording.format.RecordingFormat;
-import org.apache.commons.io.FileUtils;
+import de.web.f_reissmann.recording.format.selection.FormatPreference;
+import de.web.f_reissmann.resilience.HttpStatusException;
+import de.web.f_reissmann.resilience.ResilientCaller;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.URI;
-import java.net.URL;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.function.Supplier;
 
 /**
  * The access point for interacting with save.tv.
  * It provides methods for retrieval, download und deletion.
+ * <p>
+ * The cookies of the session are kept in a {@link SessionStore}, which is stored between runs if configured. A stored
+ * session is reused without logging in. If a request reveals that the session expired (a redirect to the login, the
+ * status 401 or 403, or an HTML-page instead of JSON), the connection logs in again and repeats the request once.
+ * <p>
+ * All calls, including the downloads, are made by a {@link ResilientCaller}, which retries temporary failures and
+ * stops calling an endpoint which keeps failing for a while.
  *
  * @author Fabian Reißmann
  * @since 19.02.2017
@@ -37,34 +70,107 @@ public class SaveTvConnection {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(SaveTvConnection.class);
 
+    private static final String LOGIN_ENDPOINT = "login";
+
+    /**
+     * The downloads of the media files share one circuit breaker.
+     */
+    private static final String MEDIA_ENDPOINT = "media";
+
+    /**
+     * How many bytes of a response are examined for an HTML-page, before it is parsed as JSON.
+     */
+    private static final int HTML_SNIFF_LIMIT = 256;
+
+    /**
+     * How many search terms are retrieved at once. Every search pipelines its pages on its own.
+     */
+    private static final int SEARCHES_IN_FLIGHT = 4;
+
     /**
      * The SaveTv config.
      */
     private final SaveTvConfig config;
 
+    /**
+     * The base of all {@link URI}s of save.tv.
+     */
+    private final URI baseUri;
+
     /**
      * The {@link HttpClient} used for making any GET- or POST-calls.
      */
     private final HttpClient client;
 
+    /**
+     * The cookies of the session, shared by all requests to the API.
+     */
+    private final SessionStore session;
+
+    /**
+     * Incremented by every login, so that concurrent requests which notice the same expired session only login once.
+     */
+    private final AtomicInteger sessionGeneration = new AtomicInteger();
+
+    /**
+     * Retries the calls and downloads which failed temporarily.
+     */
+    private final ResilientCaller resilientCaller;
+
     /**
      * Used for parsing the raw string responses into POJOs etc.
      */
     private final SaveTvResponseParser responseParser = new SaveTvResponseParser();
 
+    /**
+     * Selects the downloaded format of every recording, compiled once from the {@link SaveTvConfig}.
+     */
+    private final FormatPreference formatPreference;
+
+    /**
+     * Assigns the files the recordings are downloaded to.
+     */
+    private final DownloadFilenames filenames;
+
+    /**
+     * Used for transferring the media files of the recordings.
+     */
+    private final SegmentedDownloader downloader;
+
+    /**
+     * Resolves and caches the download-urls, ahead of the downloads if they are announced.
+     */
+    private final DownloadUrlResolver urlResolver;
+
     /**
      * Ctor.
      *
-     * @param config the SaveTv config
-     * @param client the {@link HttpClient} which is used to make all requests
+     * @param config     the SaveTv config
+     * @param client     the {@link HttpClient} which is used to make all requests
+     * @param session    the cookies of the session
+     * @param downloader transfers the media files
      */
-    private SaveTvConnection(SaveTvConfig config, HttpClient client) {
+    private SaveTvConnection(SaveTvConfig config, HttpClient client, SessionStore session,
+                             SegmentedDownloader downloader) {
         this.config = config;
+        this.formatPreference = FormatPreference.compile(config.getFormatSelection());
+        this.filenames = new DownloadFilenames(new File(config.getDownloadDestination()),
+                FilenameTemplate.compile(config.getFilenameTemplate(),
+                        FilesystemProfile.valueOf(config.getFilenameProfile())));
+        this.baseUri = URI.create(config.getBaseUri());
         this.client = client;
+        this.session = session;
+        this.resilientCaller = ResilientCaller.from(config);
+        this.downloader = downloader;
+        this.urlResolver = new DownloadUrlResolver(this::resolveDownloadUrl, config.getDownloadUrlPrefetch(),
+                TimeUnit.MINUTES.toNanos(config.getDownloadUrlTimeToLiveMinutes()), System::nanoTime);
     }
 
     /**
      * Factory-Method for creating an already logged-in connection to SaveTv.
+     * <p>
+     * If a stored session is available, it is reused instead of logging in. Whether it is still valid turns out with
+     * the first request.
      *
      * @param config         the config including credentials and other settings used for logging in
      * @param clientSupplier a supplier for supplying a {@link HttpClient} which is used to make all requests
@@ -72,10 +178,39 @@ public class SaveTvConnection {
      * @throws UnableToLoginException if an exception occurred while trying to connect
      */
     public static SaveTvConnection login(SaveTvConfig config, Supplier<HttpClient> clientSupplier) {
-        SaveTvConnection saveTvConnection = new SaveTvConnection(config, clientSupplier.get());
+        HttpClient client = clientSupplier.get();
+
+        return login(config, () -> client, createDownloader(config, client));
+    }
+
+    /**
+     * Factory-Method for creating an already logged-in connection to SaveTv, which transfers the media files using
+     * the given {@link SegmentedDownloader}. So several connections (e.g. of different accounts) can share the
+     * bandwidth and disk space of one downloader.
+     *
+     * @param config         the config including credentials and other settings used for logging in
+     * @param clientSupplier a supplier for supplying a {@link HttpClient} which is used to make all API-requests
+     * @param downloader     transfers the media files
+     * @return a logged in connection to SaveTv
+     * @throws UnableToLoginException if an exception occurred while trying to connect
+     */
+    public static SaveTvConnection login(SaveTvConfig config, Supplier<HttpClient> clientSupplier,
+                                         SegmentedDownloader downloader) {
+        SessionStore session = config.shouldPersistSession()
+                ? SessionStore.open(new File(config.getSessionFile()))
+                : SessionStore.inMemory();
+        SaveTvConnection saveTvConnection = new SaveTvConnection(config, clientSupplier.get(), session, downloader);
+
+        if (session.hasSession()) {
+            LOGGER.info("Reusing the stored session, not logging in");
+            return saveTvConnection;
+        }
 
         try {
-            saveTvConnection.tryLogin();
+            saveTvConnection.resilientCaller.call(LOGIN_ENDPOINT, () -> {
+                saveTvConnection.tryLogin();
+                return null;
+            });
         } catch (IOException e) {
             throw new UnableToLoginException("Unable to login", e);
         }
@@ -84,7 +219,25 @@ public class SaveTvConnection {
     }
 
     /**
-     * Retrieves at most the {@link SaveTvConfig#getEntriesPerRequest()} newest recordings.
+     * Creates the {@link SegmentedDownloader} using the download-engine configured by the given {@link SaveTvConfig}.
+     *
+     * @param config the config including the download settings
+     * @param client the {@link HttpClient} used by the downloader
+     * @return a new {@link SegmentedDownloader}
+     */
+    public static SegmentedDownloader createDownloader(SaveTvConfig config, HttpClient client) {
+        switch (SegmentedDownloader.Engine.valueOf(config.getDownloadEngine())) {
+            case BLOCKING:
+                return new SegmentedDownloader(client, config);
+            case ASYNC:
+                return new SegmentedDownloader(client, HttpTransport.createAsyncClient(config), config);
+            default:
+                throw new IllegalStateException("Should not be happen, since we are using enum here");
+        }
+    }
+
+    /**
+     * Retrieves all recordings from the online-archive.
      * <p>
      * Sort-order:
      * Recordings which will be removed soon are located at the start of the list. To not loose recordings from save.tv
@@ -93,9 +246,114 @@ public class SaveTvConnection {
      * @return a sorted list of {@link Recording}s
      */
     public List<Recording> retrieveRecordings() {
-        URI requestUri = SaveTvUriUtils.videoArchiveUri(config.getEntriesPerRequest(), config.getEntryMinAge());
+        List<Recording> recordings = new ArrayList<>();
+
+        retrieveRecordings(recordings::add);
+        recordings.sort(RecordingUtil.byDaysLeft());
+
+        return recordings;
+    }
+
+    /**
+     * Retrieves all recordings from the online-archive page by page, using pages of
+     * {@link SaveTvConfig#getEntriesPerRequest()} entries.
+     * <p>
+     * The recordings are handed to the consumer as soon as their page was parsed, while the next page is already
+     * requested. Within one page the recordings which will be removed soon come first.
+     *
+     * @param consumer receives every {@link Recording} exactly once
+     * @return the number of retrieved recordings
+     */
+    public int retrieveRecordings(Consumer<Recording> consumer) {
+        return retrieveRecordingsSince(SaveTvUriUtils.oldestStartDate(), consumer);
+    }
+
+    /**
+     * Same as {@link #retrieveRecordings(Consumer)}, but only retrieves the recordings which were recorded at or after
+     * the given date.
+     * <p>
+     * If {@link SaveTvConfig#getSearchTerms() search terms} are configured, only the recordings matching one of them
+     * are retrieved. save.tv filters them, so the recordings which are not of interest are neither transferred nor
+     * parsed. Every term is searched on its own, up to {@link #SEARCHES_IN_FLIGHT} of them at once. A recording
+     * matching several terms is handed to the consumer once only, with one of them as its
+     * {@link Recording#getSearchTerm() search term}.
+     *
+     * @param startDate the date of the oldest recording to retrieve
+     * @param consumer  receives every {@link Recording} exactly once, from one thread at a time
+     * @return the number of retrieved recordings
+     */
+    public int retrieveRecordingsSince(LocalDate startDate, Consumer<Recording> consumer) {
+        List<String> searchTerms = config.getSearchTerms();
+        if (searchTerms.isEmpty()) {
+            return retrieveMatching(SaveTvUriUtils.NO_SEARCH, startDate, consumer);
+        }
+
+        ExecutorService searches = Executors.newFixedThreadPool(Math.min(searchTerms.size(), SEARCHES_IN_FLIGHT),
+                new ThreadFactoryBuilder()
+                        .setNameFormat("archive-search-%d")
+                        .setDaemon(true)
+                        .build());
+        try {
+            Set<Long> seen = new HashSet<>();
+            Consumer<Recording> unseenOnly = recording -> {
+                synchronized (seen) {
+                    if (seen.add(recording.getTelecastId())) {
+                        consumer.accept(recording);
+                    }
+                }
+            };
+
+            CompletableFuture<?>[] results = new CompletableFuture<?>[searchTerms.size()];
+            for (int i = 0; i < searchTerms.size(); i++) {
+                String searchTerm = searchTerms.get(i);
+                results[i] = CompletableFuture.runAsync(() -> {
+                    int matching = retrieveMatching(searchTerm, startDate,
+                            recording -> unseenOnly.accept(recording.foundBy(searchTerm)));
+                    LOGGER.debug("Retrieved {} recordings matching '{}'", matching, searchTerm);
+                }, searches);
+            }
+            CompletableFuture.allOf(results).join();
 
-        return responseParser.extractRecordings(executeGetOnUri(requestUri));
+            synchronized (seen) {
+                return seen.size();
+            }
+        } finally {
+            searches.shutdownNow();
+        }
+    }
+
+    /**
+     * @return true, if the listings only contain the recordings matching the {@link SaveTvConfig#getSearchTerms()
+     * search terms}, not the whole online-archive
+     */
+    public boolean isArchiveFiltered() {
+        return !config.getSearchTerms().isEmpty();
+    }
+
+    /**
+     * Retrieves the telecast-ids of all recordings in the online-archive, ignoring the search terms.
+     *
+     * @return the ids of all recordings
+     */
+    public Set<Long> retrieveAllTelecastIds() {
+        Set<Long> telecastIds = new HashSet<>();
+        retrieveMatching(SaveTvUriUtils.NO_SEARCH, SaveTvUriUtils.oldestStartDate(),
+                recording -> telecastIds.add(recording.getTelecastId()));
+        return telecastIds;
+    }
+
+    private int retrieveMatching(String searchString, LocalDate startDate, Consumer<Recording> consumer) {
+        int entriesPerPage = config.getEntriesPerRequest();
+
+        return new ArchivePager(page -> retrievePage(entriesPerPage, page, startDate, searchString), entriesPerPage)
+                .forEachRecording(consumer);
+    }
+
+    private List<Recording> retrievePage(int entriesPerPage, int page, LocalDate startDate, String searchString) {
+        URI requestUri = SaveTvUriUtils.videoArchivePageUri(baseUri, entriesPerPage, page, startDate,
+                config.getEntryMinAge(), searchString);
+
+        return executeGetOnUri(requestUri, responseParser::extractRecordings);
     }
 
     /**
@@ -103,29 +361,66 @@ public class SaveTvConnection {
      * <p>
      * Format-Selection:
      * The preferred format for the downloaded recording is also defined in the {@link SaveTvConfig}.
+     * <p>
+     * An interrupted download leaves a ".part"-file behind, which is resumed by the next call for the same recording.
+     * A download only succeeds once its checksum is calculated and the file is verified as complete MP4-file.
      *
      * @param recording the {@link Recording} to download
+     * @return the {@link DownloadResult} describing the downloaded file
      */
-    public void download(Recording recording) {
-        RecordingFormat format = RecordingFormat.getPreferredFormat(recording, config.getFormatSelection());
+    public DownloadResult download(Recording recording) {
+        RecordingFormat format = formatPreference.select(recording);
 
-        URI requestForRecordingDownloadUri = SaveTvUriUtils.getDownloadUriFor(recording, format);
+        File downloadedFile = filenames.fileOf(recording, format);
+        String fileName = downloadedFile.getName();
+        try {
+            LOGGER.info("Start downloading: '{}' to '{}'", fileName, downloadedFile.getParent());
+
+            long started = System.nanoTime();
+            VerifiedTransfer transfer;
+            try {
+                // Every repeated attempt resumes the ".part"-file of the previous one
+                transfer = resilientCaller.call(MEDIA_ENDPOINT, () -> transfer(recording, downloadedFile));
+            } finally {
+                urlResolver.invalidate(recording.getTelecastId());
+            }
+            Duration elapsed = Duration.ofNanos(System.nanoTime() - started);
+            LOGGER.info("Finished and verified download, checksum: {}", transfer.getChecksum());
 
-        String downloadDestination = config.getDownloadDestination();
-        String fileName = FilenameUtil.sanitize(RecordingUtil.toFilename(recording, format));
+            return new DownloadResult(recording, format, downloadedFile, downloadedFile.length(),
+                    transfer.getTransferred(), elapsed, transfer.getChecksum());
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to download: '" + fileName + "'. It will be resumed next time.", e);
+        }
+    }
 
-        File downloadedFile = new File(downloadDestination, fileName + ".mp4");
+    private VerifiedTransfer transfer(Recording recording, File downloadedFile) throws IOException {
         try {
-            FileUtils.forceMkdirParent(downloadedFile);
+            return downloader.download(urlResolver.resolve(recording), downloadedFile);
+        } catch (LinkExpiredException e) {
+            LOGGER.info("Download-url of '{}' expired ({}), resuming with a new one", recording.getTitle(),
+                    e.getMessage());
+            Metrics.retries("download-url").increment();
+
+            urlResolver.invalidate(recording.getTelecastId());
+            return downloader.download(urlResolver.resolve(recording), downloadedFile);
+        }
+    }
 
-            LOGGER.info("Start downloading: '{}' to '{}'", fileName, downloadDestination);
-            String downloadUrl = responseParser.extractDownloadUri(executeGetOnUri(requestForRecordingDownloadUri));
+    /**
+     * Resolves the download-urls of the given recordings in the background, so their downloads can start right away.
+     *
+     * @param upcoming the recordings which are going to be downloaded next
+     */
+    public void prefetchDownloadUrls(Collection<Recording> upcoming) {
+        urlResolver.prefetch(upcoming);
+    }
 
-            FileUtils.copyURLToFile(new URL(downloadUrl), downloadedFile);
-            LOGGER.info("Finished download.");
-        } catch (IOException e) {
-            throw new IllegalStateException("", e);
-        }
+    private URI resolveDownloadUrl(Recording recording) {
+        RecordingFormat format = formatPreference.select(recording);
+        URI requestUri = SaveTvUriUtils.getDownloadUriFor(baseUri, recording, format);
+
+        return URI.create(responseParser.extractDownloadUri(executeGetOnUri(requestUri)));
     }
 
     /**
@@ -137,32 +432,156 @@ public class SaveTvConnection {
      * @param recording the {@link Recording} to delete
      */
     public void deleteRecording(Recording recording) {
-        URI requestUri = SaveTvUriUtils.deleteRecordUri(recording.getTelecastId());
+        deleteRecording(recording.getTelecastId());
+        LOGGER.info("Deleted from Online-Archive: '{}'", recording.getTitle());
+    }
+
+    /**
+     * Deletes the recording with the given telecast-id from the online-archive.
+     * <p>
+     * Attention:
+     * There is no possibility to access a deleted recording.
+     *
+     * @param telecastId the id of the {@link Recording} to delete
+     * @throws IllegalStateException if save.tv did not accept the deletion
+     */
+    public void deleteRecording(long telecastId) {
+        URI requestUri = SaveTvUriUtils.deleteRecordUri(baseUri, telecastId);
 
-        executeGetOnUri(requestUri);
-        LOGGER.info("Deleted from Online-Archive: '{}' (URL='{}')", recording.getTitle(), requestUri);
+        String response = executeGetOnUri(requestUri);
+        if (!responseParser.hasDeletedCorrectly(response)) {
+            throw new IllegalStateException("save.tv did not accept the deletion of " + telecastId + ": " + response);
+        }
+        LOGGER.debug("Requested deletion from Online-Archive: {} (URL='{}')", telecastId, requestUri);
     }
 
     private String executeGetOnUri(URI uri) {
-        try {
-            HttpGet httpGet = new HttpGet(uri);
-            HttpResponse res = client.execute(httpGet);
-            HttpEntity entity = res.getEntity();
+        return executeGetOnUri(uri, this::convertContentToString);
+    }
 
-            if (entity == null) {
-                throw new IOException("The response did not include an entity");
-            }
+    private <T> T executeGetOnUri(URI uri, ContentReader<T> contentReader) {
+        String endpoint = endpointOf(uri);
+        long started = System.nanoTime();
 
-            return convertEntityToString(entity);
+        try {
+            return resilientCaller.call(endpoint, () -> getWithSession(uri, contentReader));
         } catch (IOException e) {
+            Metrics.apiErrors(endpoint).increment();
             throw new IllegalStateException("Unable to execute get on uri: " + uri, e);
+        } finally {
+            Metrics.apiLatency(endpoint).observeSecondsSince(started);
+        }
+    }
+
+    private <T> T getWithSession(URI uri, ContentReader<T> contentReader) throws IOException {
+        int generation = sessionGeneration.get();
+        try {
+            return tryGetOnUri(uri, contentReader);
+        } catch (SessionExpiredException e) {
+            LOGGER.info("Session expired ({}), logging in again", e.getMessage());
+            Metrics.retries(LOGIN_ENDPOINT).increment();
+
+            relogin(generation);
+            return tryGetOnUri(uri, contentReader);
+        }
+    }
+
+    private <T> T tryGetOnUri(URI uri, ContentReader<T> contentReader) throws IOException {
+        HttpClientContext context = newContext();
+        HttpResponse res = client.execute(new HttpGet(uri), context);
+        HttpEntity entity = res.getEntity();
+
+        if (entity == null) {
+            throw new IOException("The response did not include an entity");
+        }
+
+        int status = res.getStatusLine().getStatusCode();
+        if (status == HttpStatus.SC_UNAUTHORIZED || status == HttpStatus.SC_FORBIDDEN) {
+            EntityUtils.consumeQuietly(entity);
+            throw new SessionExpiredException("status " + status);
+        }
+        if (status >= HttpStatus.SC_BAD_REQUEST) {
+            EntityUtils.consumeQuietly(entity);
+            throw new HttpStatusException(status, "Unexpected status: " + res.getStatusLine());
+        }
+        if (wasRedirectedToLogin(context)) {
+            EntityUtils.consumeQuietly(entity);
+            throw new SessionExpiredException("redirected to the login");
+        }
+
+        try (InputStream content = new BufferedInputStream(entity.getContent())) {
+            if (isHtml(content)) {
+                throw new SessionExpiredException("received an HTML-page instead of JSON");
+            }
+            return contentReader.read(content);
+        } finally {
+            // Returns the connection to the pool, even if the reader did not read until the end
+            EntityUtils.consumeQuietly(entity);
+        }
+    }
+
+    /**
+     * Logs in again, unless another request already did so since the given generation of the session.
+     */
+    private synchronized void relogin(int expiredGeneration) throws IOException {
+        if (sessionGeneration.get() != expiredGeneration) {
+            return;
+        }
+
+        session.invalidate();
+        tryLogin();
+    }
+
+    /**
+     * Every request gets its own context, since a context must not be shared by concurrent requests. The
+     * {@link SessionStore} is thread-safe and shared by all of them.
+     */
+    private HttpClientContext newContext() {
+        HttpClientContext context = HttpClientContext.create();
+        context.setCookieStore(session.getCookieStore());
+        return context;
+    }
+
+    private boolean wasRedirectedToLogin(HttpClientContext context) {
+        List<URI> redirects = context.getRedirectLocations();
+        String loginPath = SaveTvUriUtils.loginUri(baseUri).getPath();
+
+        return redirects != null && redirects.stream().anyMatch(location -> loginPath.equals(location.getPath()));
+    }
+
+    /**
+     * An API-response starting with "&lt;" is the HTML-page of the login, which save.tv sends instead of JSON once
+     * the session expired. Only peeks at the stream, it is reset to its start afterwards.
+     */
+    private static boolean isHtml(InputStream content) throws IOException {
+        content.mark(HTML_SNIFF_LIMIT);
+        try {
+            for (int i = 0; i < HTML_SNIFF_LIMIT; i++) {
+                int read = content.read();
+                if (read == -1 || !Character.isWhitespace(read)) {
+                    return read == '<';
+                }
+            }
+            return false;
+        } finally {
+            content.reset();
         }
     }
 
-    private String convertEntityToString(HttpEntity entity) throws IOException {
+    /**
+     * The name of the called API-endpoint, e.g. "VideoArchiveApi" for ".../VideoArchiveApi.cfm".
+     */
+    private static String endpointOf(URI uri) {
+        String path = uri.getPath();
+        String file = path.substring(path.lastIndexOf('/') + 1);
+
+        return file.endsWith(".cfm") ? file.substring(0, file.length() - ".cfm".length()) : file;
+    }
+
+    private String convertContentToString(InputStream content) throws IOException {
         StringBuilder sb = new StringBuilder();
 
-        try (InputStreamReader inputStreamReader = new InputStreamReader(entity.getContent(), StandardCharsets.UTF_8);
+        try (InputStreamReader inputStreamReader = new InputStreamReader(content, StandardCharsets.UTF_8);
              BufferedReader reader = new BufferedReader(inputStreamReader)) {
             String line = reader.readLine();
 
@@ -178,17 +597,53 @@ public class SaveTvConnection {
         String username = config.getUsername();
         String password = config.getPassword();
 
-        HttpPost httpPost = new HttpPost(SaveTvUriUtils.loginUri());
+        HttpPost httpPost = new HttpPost(SaveTvUriUtils.loginUri(baseUri));
         httpPost.setEntity(SaveTvCredentialsFormatter.toFormEntity(username, password));
 
-        HttpResponse response = client.execute(httpPost);
+        long started = System.nanoTime();
+        try {
+            HttpResponse response = client.execute(httpPost, newContext());
+            EntityUtils.consume(response.getEntity());
 
-        checkLoginResponse(response);
+            checkLoginResponse(response);
+            sessionGeneration.incrementAndGet();
+            session.save();
+        } catch (IOException e) {
+            Metrics.apiErrors(LOGIN_ENDPOINT).increment();
+            throw e;
+        } finally {
+            Metrics.apiLatency(LOGIN_ENDPOINT).observeSecondsSince(started);
+        }
     }
 
     private void checkLoginResponse(HttpResponse response) throws IOException {
+        int status = response.getStatusLine().getStatusCode();
+        if (status >= HttpStatus.SC_INTERNAL_SERVER_ERROR) {
+            // Failed on the server, which says nothing about the credentials
+            throw new HttpStatusException(status, "Login failed: " + response.getStatusLine());
+        }
         if (!responseParser.hasLoggedInCorrectly(response)) {
-            throw new IOException("Response is not correct. Headers: " + Arrays.toString(response.getAllHeaders()));
+            throw new HttpStatusException(HttpStatus.SC_UNAUTHORIZED,
+                    "Response is not correct. Headers: " + Arrays.toString(response.getAllHeaders()));
+        }
+    }
+
+    /**
+     * Reads the content of a response, while it is still streamed from the server.
+     *
+     * @param <T> the type which is created from the content
+     */
+    @FunctionalInterface
+    private interface ContentReader<T> {
+        T read(InputStream content) throws IOException;
+    }
+
+    /**
+     * Thrown if a response shows, that the session is no longer valid.
+     */
+    private static class SessionExpiredException extends HttpStatusException {
+        private SessionExpiredException(String message) {
+            super(HttpStatus.SC_UNAUTHORIZED, message);
         }
     }
 
@@ -10,17 +10,18 @@ import java.time.LocalDate;
 
 /**
  * Utility-Class for creating the {@link URI}s used for accessing save.tv.
+ * <p>
+ * All {@link URI}s are resolved against a base-{@link URI}, which is "https://www.save.tv" unless configured
+ * otherwise, e.g. for a local stand-in server.
  *
  * @author Fabian Reißmann
  * @since 19.02.2017
  */
 final class SaveTvUriUtils {
 
-    private static final String SCHEME = "https";
-    private static final String HOST = "www.save.tv";
-
     private static final String NOT_SET = null;
-    private static final String NO_SEARCH = "";
+    static final String NO_SEARCH = "";
+    static final int FIRST_PAGE = 1;
 
     private SaveTvUriUtils() {
         throw new UnsupportedOperationException("Utility-Class should not be instantiated.");
@@ -29,57 +30,59 @@ final class SaveTvUriUtils {
     /**
      * Creates the {@link URI} used for logging in.
      *
+     * @param base the base-{@link URI} of save.tv
      * @return an {@link URI}
      */
-    static URI loginUri() {
-        return tryMakeUri(SCHEME, HOST, "/STV/M/Index.cfm");
+    static URI loginUri(URI base) {
+        return tryMakeUri(base, "/STV/M/Index.cfm");
     }
 
     /**
-     * Creates the {@link URI} used for retrieving the recordings from the online-archive.
+     * Creates the {@link URI} used for retrieving one page of recordings from the online-archive.
      *
-     * @param numberOfEntries the number of entries to receive at most
-     * @param minAge          retrieved entries must at least be <code>minAge</code> days old
+     * @param base           the base-{@link URI} of save.tv
+     * @param entriesPerPage the number of entries on one page
+     * @param page           the page to retrieve, starting at {@link #FIRST_PAGE}
+     * @param startDate      retrieved entries must not be recorded before this date
+     * @param minAge         retrieved entries must at least be <code>minAge</code> days old
+     * @param searchString   the recordings must match this
      * @return an {@link URI}
      */
-    static URI videoArchiveUri(int numberOfEntries, int minAge) {
-        return videoArchiveUri(numberOfEntries, minAge, NO_SEARCH);
-    }
-
-    /**
-     * Creates the {@link URI} used for retrieving the recordings from the online-archive.
-     * <p>
-     * But retrieves only recordings which match the given <code>searchString</code>.
-     *
-     * @param numberOfEntries the number of entries to receive at most
-     * @param minAge          retrieved entries must at least be <code>minAge</code> days old
-     * @param searchString    the recordings must match this  @return an {@link URI}
-     */
-    static URI videoArchiveUri(int numberOfEntries, int minAge, String searchString) {
-        LocalDate now = LocalDate.now();
-
-        String startDate = now.minusYears(1).toString();
-        String endDate = now.minusDays(minAge).toString();
+    static URI videoArchivePageUri(URI base, int entriesPerPage, int page, LocalDate startDate, int minAge,
+                                   String searchString) {
+        String endDate = LocalDate.now().minusDays(minAge).toString();
         String encodedSearchString = URLEncoderUtil.encodeSafely(searchString);
 
-        String query = String.format("iEntriesPerPage=%d&iRecordingState=1&dStartdate=%s&dEnddate=%s&sSearchString=%s",
-                numberOfEntries,
+        String query = String.format("iEntriesPerPage=%d&iCurrentPage=%d&iRecordingState=1&dStartdate=%s&dEnddate=%s"
+                        + "&sSearchString=%s",
+                entriesPerPage,
+                page,
                 startDate,
                 endDate,
                 encodedSearchString);
 
-        return tryMakeUri(SCHEME, HOST, "/STV/M/obj/archive/JSON/VideoArchiveApi.cfm", query);
+        return tryMakeUri(base, "/STV/M/obj/archive/JSON/VideoArchiveApi.cfm", query);
+    }
+
+    /**
+     * The start date which includes every recording of the online-archive.
+     *
+     * @return the date one year ago
+     */
+    static LocalDate oldestStartDate() {
+        return LocalDate.now().minusYears(1);
     }
 
     /**
      * Creates the {@link URI} used for downloading the given {@link Recording} from the online-archive.
      *
+     * @param base      the base-{@link URI} of save.tv
      * @param recording the {@link Recording} which should be downloaded
      * @param format    the {@link RecordingFormat} in which the download should happen
      * @return an {@link URI}
      */
-    static URI getDownloadUriFor(Recording recording, RecordingFormat format) {
-        return tryMakeUri(SCHEME, HOST, "/STV/M/obj/cRecordOrder/croGetDownloadUrl2.cfm", toDownloadQuery(recording, format));
+    static URI getDownloadUriFor(URI base, Recording recording, RecordingFormat format) {
+        return tryMakeUri(base, "/STV/M/obj/cRecordOrder/croGetDownloadUrl2.cfm", toDownloadQuery(recording, format));
     }
 
     private static String toDownloadQuery(Recording recording, RecordingFormat format) {
@@ -93,20 +96,30 @@ final class SaveTvUriUtils {
     /**
      * Creates the {@link URI} used for removing a {@link RecordingFormat} from the online-archive.
      *
+     * @param base       the base-{@link URI} of save.tv
      * @param telecastId the id of the {@link Recording} which should be deleted
      * @return an {@link URI}
      */
-    static URI deleteRecordUri(long telecastId) {
-        return tryMakeUri(SCHEME, HOST, "/STV/M/obj/cRecordOrder/croDelete.cfm", "TelecastID=" + telecastId);
+    static URI deleteRecordUri(URI base, long telecastId) {
+        return tryMakeUri(base, "/STV/M/obj/cRecordOrder/croDelete.cfm", "TelecastID=" + telecastId);
     }
 
-    private static URI tryMakeUri(String scheme, String host, String path) {
-        return tryMakeUri(scheme, host, path, NOT_SET);
+    private static URI tryMakeUri(URI base, String path) {
+        return tryMakeUri(base, path, NOT_SET);
     }
 
-    private static URI tryMakeUri(String scheme, String host, String path, String query) {
+    /**
+     * The path is appended to the path of the base-{@link URI}, so save.tv may also be served below a path.
+     * <p>
+     * The query is already encoded, e.g. the search string. So it is appended as it is, since the multi-argument
+     * {@link URI}-ctor would encode the '%' of every encoded char once more.
+     */
+    private static URI tryMakeUri(URI base, String path, String query) {
+        String basePath = base.getPath() == null ? "" : base.getPath().replaceAll("/+$", "");
+
         try {
-            return new URI(scheme, host, path, query, NOT_SET);
+            URI uri = new URI(base.getScheme(), base.getAuthority(), basePath + path, NOT_SET, NOT_SET);
+            return query == null ? uri : new URI(uri + "?" + query);
         } catch (URISyntaxException e) {
             throw new IllegalArgumentException("Unable to create URI", e);
         }
@@ -0,0 +1,212 @@
+package de.web.f_reissmann.connection;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import org.apache.http.client.CookieStore;
+import org.apache.http.cookie.ClientCookie;
+import org.apache.http.cookie.Cookie;
+import org.apache.http.impl.client.BasicCookieStore;
+import org.apache.http.impl.cookie.BasicClientCookie;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * The cookies of the session at save.tv, optionally stored in a file, so the next run can reuse the session instead of
+ * logging in again.
+ * <p>
+ * The cookies grant access to the account, so the file is only readable and writable by its owner. It is replaced
+ * atomically and removed as soon as the session turns out to be expired.
+ *
+ * @author Fabian Reißmann
+ * @since 28.03.2017
+ */
+class SessionStore {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SessionStore.class);
+
+    private static final String OWNER_ONLY = "rw-------";
+
+    private final Gson gson = new Gson();
+    private final Path file;
+    private final BasicCookieStore cookies = new BasicCookieStore();
+
+    private SessionStore(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Creates a store which keeps the cookies in memory only.
+     *
+     * @return the empty {@link SessionStore}
+     */
+    static SessionStore inMemory() {
+        return new SessionStore(null);
+    }
+
+    /**
+     * Opens the store persisted in the given file. If the file is missing or unreadable, the store is empty.
+     *
+     * @param file the file of the stored session
+     * @return the {@link SessionStore}, containing the unexpired cookies of the stored session
+     */
+    static SessionStore open(File file) {
+        SessionStore store = new SessionStore(file.toPath());
+
+        if (file.isFile()) {
+            try (Reader reader = Files.newBufferedReader(store.file, StandardCharsets.UTF_8)) {
+                StoredCookie[] stored = store.gson.fromJson(reader, StoredCookie[].class);
+                if (stored != null) {
+                    for (StoredCookie cookie : stored) {
+                        store.cookies.addCookie(cookie.toCookie());
+                    }
+                }
+            } catch (IOException | JsonParseException e) {
+                LOGGER.warn("Unable to read the stored session '{}', logging in again", file, e);
+                store.cookies.clear();
+            }
+        }
+        return store;
+    }
+
+    /**
+     * @return the cookies, to be used by all requests to the save.tv-API
+     */
+    CookieStore getCookieStore() {
+        return cookies;
+    }
+
+    /**
+     * @return true, if there are unexpired cookies which might belong to a valid session; false, otherwise
+     */
+    boolean hasSession() {
+        cookies.clearExpired(new Date());
+        return !cookies.getCookies().isEmpty();
+    }
+
+    /**
+     * Stores the current cookies, if this store is persisted.
+     */
+    void save() {
+        if (file == null) {
+            return;
+        }
+
+        // Cookies without expiry are stored as well, since save.tv identifies its sessions by them
+        List<StoredCookie> stored = cookies.getCookies().stream()
+                .map(StoredCookie::new)
+                .collect(Collectors.toList());
+
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            Path temp = createOwnerOnly(file.resolveSibling(file.getFileName() + ".tmp"));
+            try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                gson.toJson(stored, writer);
+            }
+            move(temp, file);
+        } catch (IOException e) {
+            LOGGER.warn("Unable to store the session in '{}'. The next run has to login again", file, e);
+        }
+    }
+
+    /**
+     * Forgets the cookies of an expired session, in memory and in the file.
+     */
+    void invalidate() {
+        cookies.clear();
+        if (file == null) {
+            return;
+        }
+
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            LOGGER.warn("Unable to remove the expired session '{}'", file, e);
+        }
+    }
+
+    private static Path createOwnerOnly(Path path) throws IOException {
+        Files.deleteIfExists(path);
+
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            return Files.createFile(path, PosixFilePermissions.asFileAttribute(
+                    PosixFilePermissions.fromString(OWNER_ONLY)));
+        }
+
+        Path created = Files.createFile(path);
+        File asFile = created.toFile();
+        if (!(asFile.setReadable(false, false) && asFile.setReadable(true, true)
+                && asFile.setWritable(false, false) && asFile.setWritable(true, true))) {
+            LOGGER.warn("Unable to restrict the permissions of '{}' to its owner", path);
+        }
+        return created;
+    }
+
+    private static void move(Path source, Path destination) throws IOException {
+        try {
+            Files.move(source, destination, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, destination, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * The stored form of one {@link Cookie}. Keeps whether the domain and path were set by the server, since that
+     * changes to which hosts and paths the cookie is sent.
+     */
+    private static class StoredCookie {
+
+        private String name;
+        private String value;
+        private String domain;
+        private String path;
+        private Long expiry;
+        private boolean secure;
+        private boolean domainAttribute;
+        private boolean pathAttribute;
+
+        private StoredCookie(Cookie cookie) {
+            this.name = cookie.getName();
+            this.value = cookie.getValue();
+            this.domain = cookie.getDomain();
+            this.path = cookie.getPath();
+            this.expiry = cookie.getExpiryDate() == null ? null : cookie.getExpiryDate().getTime();
+            this.secure = cookie.isSecure();
+
+            if (cookie instanceof ClientCookie) {
+                this.domainAttribute = ((ClientCookie) cookie).containsAttribute(ClientCookie.DOMAIN_ATTR);
+                this.pathAttribute = ((ClientCookie) cookie).containsAttribute(ClientCookie.PATH_ATTR);
+            }
+        }
+
+        private Cookie toCookie() {
+            BasicClientCookie cookie = new BasicClientCookie(name, value);
+            cookie.setDomain(domain);
+            cookie.setPath(path);
+            cookie.setExpiryDate(expiry == null ? null : new Date(expiry));
+            cookie.setSecure(secure);
+
+            if (domainAttribute) {
+                cookie.setAttribute(ClientCookie.DOMAIN_ATTR, domain);
+            }
+            if (pathAttribute) {
+                cookie.setAttribute(ClientCookie.PATH_ATTR, path);
+            }
+            return cookie;
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package de.web.f_reissmann.daemon;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import de.web.f_reissmann.config.SaveTvConfig;
+import de.web.f_reissmann.connection.SaveTvConnection;
+import de.web.f_reissmann.deletion.DeletionPipeline;
+import de.web.f_reissmann.download.DownloadResult;
+import de.web.f_reissmann.download.SharedDownloadScheduler;
+import de.web.f_reissmann.download.TransferEstimator;
+import de.web.f_reissmann.ledger.DownloadLedger;
+import de.web.f_reissmann.recording.Recording;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps running and polls the online-archive in a fixed interval, instead of retrieving it once.
+ * <p>
+ * Only the first poll and one poll every {@link SaveTvConfig#getDaemonFullPollIntervalHours()} retrieve the whole
+ * archive. All other polls only retrieve the recordings which became old enough since the previous poll. New
+ * recordings (compared to the previous listings by their telecast-id) are added to a {@link PersistentDownloadQueue}
+ * and downloaded. Recordings stay queued until they were downloaded, so failed downloads are retried with the next
+ * poll, and pending ones are continued right after a restart.
+ * <p>
+ * The downloads are run by the {@link SharedDownloadScheduler}, which may run the downloads of other accounts, too.
+ *
+ * @author Fabian Reißmann
+ * @since 16.03.2017
+ */
+public class DownloadDaemon {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DownloadDaemon.class);
+
+    /**
+     * Incremental polls overlap the previous one by this many days, so no recording is missed at the boundary.
+     */
+    private static final int OVERLAP_DAYS = 1;
+
+    private final SaveTvConfig config;
+    private final SaveTvConnection connection;
+    private final DownloadLedger ledger;
+    private final PersistentDownloadQueue queue;
+    private final SharedDownloadScheduler.Account downloads;
+    private final TransferEstimator estimator;
+
+    /**
+     * The recordings which were handed to the {@link #downloads} and are not done yet.
+     */
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+
+    private final DeletionPipeline deletions;
+
+    /**
+     * The telecast-ids of all listings since the last full poll.
+     */
+    private Set<Long> previousListing = new HashSet<>();
+    private Instant lastFullPoll;
+    private LocalDate lastEndDate;
+
+    /**
+     * Ctor.
+     *
+     * @param config     the config including the poll intervals
+     * @param connection the logged in connection to save.tv
+     * @param ledger     the ledger of the recordings which were already downloaded
+     * @param deletions  the pipeline which deletes the downloaded recordings
+     * @param downloads  runs the downloads of the account
+     * @param estimator  estimates the transfer times used by the scheduler of the account
+     */
+    public DownloadDaemon(SaveTvConfig config, SaveTvConnection connection, DownloadLedger ledger,
+                          DeletionPipeline deletions, SharedDownloadScheduler.Account downloads,
+                          TransferEstimator estimator) {
+        this.config = config;
+        this.connection = connection;
+        this.ledger = ledger;
+        this.deletions = deletions;
+        this.downloads = downloads;
+        this.estimator = estimator;
+        this.queue = PersistentDownloadQueue.open(new File(config.getDaemonQueueFile()));
+    }
+
+    /**
+     * Starts polling and blocks until the daemon is interrupted.
+     */
+    public void run() {
+        LOGGER.info("Started daemon, polling every {} minutes", config.getDaemonPollIntervalMinutes());
+        submitPending();
+
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("daemon-poll-%d")
+                .build());
+        scheduler.scheduleWithFixedDelay(this::pollSafely, 0, config.getDaemonPollIntervalMinutes(),
+                TimeUnit.MINUTES);
+
+        try {
+            scheduler.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.info("Daemon interrupted, stopping");
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * A failing poll must not cancel the scheduled polls.
+     */
+    private void pollSafely() {
+        try {
+            poll();
+        } catch (RuntimeException e) {
+            LOGGER.error("Poll failed, retrying with the next one", e);
+        }
+    }
+
+    private void poll() {
+        Instant now = Instant.now();
+        boolean fullPoll = lastFullPoll == null
+                || Duration.between(lastFullPoll, now).toHours() >= config.getDaemonFullPollIntervalHours();
+
+        List<Recording> listing = new ArrayList<>();
+        LocalDate endDate = LocalDate.now().minusDays(config.getEntryMinAge());
+
+        // Deleting shifts the entries of the online-archive between its pages
+        deletions.pause();
+        try {
+            if (fullPoll) {
+                connection.retrieveRecordings(listing::add);
+            } else {
+                connection.retrieveRecordingsSince(lastEndDate.minusDays(OVERLAP_DAYS), listing::add);
+            }
+        } finally {
+            deletions.resume();
+        }
+
+        Set<Long> listed = new HashSet<>();
+        int added = 0;
+        for (Recording recording : listing) {
+            listed.add(recording.getTelecastId());
+
+            if (!previousListing.contains(recording.getTelecastId())
+                    && !ledger.contains(recording.getTelecastId())
+                    && queue.add(recording)) {
+                added++;
+            }
+        }
+
+        if (fullPoll) {
+            int gone = queue.retainAll(listed);
+            LOGGER.info("Full poll: {} recordings, {} new, {} no longer available", listing.size(), added, gone);
+
+            if (connection.isArchiveFiltered()) {
+                // The recordings outside the search terms are not listed, but must not count as deleted
+                deletions.confirmFiltered(listed, config.getSearchTerms(), connection::retrieveAllTelecastIds);
+            } else {
+                deletions.confirm(listed);
+            }
+            previousListing = listed;
+            lastFullPoll = now;
+        } else {
+            LOGGER.info("Incremental poll: {} recordings, {} new", listing.size(), added);
+            previousListing.addAll(listed);
+        }
+        lastEndDate = endDate;
+
+        submitPending();
+    }
+
+    private void submitPending() {
+        for (Recording recording : queue.pending()) {
+            if (inFlight.add(recording.getTelecastId())) {
+                downloads.submit(recording, this::onDownloaded)
+                        .whenComplete((result, failure) -> inFlight.remove(recording.getTelecastId()));
+            }
+        }
+        downloads.replan();
+    }
+
+    private void onDownloaded(DownloadResult downloaded) {
+        Recording recording = downloaded.getRecording();
+
+        ledger.record(downloaded);
+        queue.remove(recording.getTelecastId());
+        estimator.record(downloaded);
+        downloads.replan();
+
+        if (config.shouldDeleteOnSuccess()) {
+            deletions.request(recording.getTelecastId(), recording.getSearchTerm());
+        }
+        LOGGER.info("Finished recording: '{}'", recording.getTitle());
+    }
+}
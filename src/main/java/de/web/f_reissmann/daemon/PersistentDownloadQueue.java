@@ -0,0 +1,163 @@
+package de.web.f_reissmann.daemon;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import de.web.f_reissmann.recording.Recording;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The recordings which are waiting to be downloaded, persisted so they survive a restart of the daemon.
+ * <p>
+ * The queue is stored as a journal: every added {@link Recording} is appended as "+&lt;json&gt;", every removed one as
+ * "-&lt;telecastId&gt;". On opening, the journal is replayed and compacted, so that it only contains the pending
+ * recordings.
+ *
+ * @author Fabian Reißmann
+ * @since 16.03.2017
+ */
+class PersistentDownloadQueue {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PersistentDownloadQueue.class);
+
+    private static final char ADDED = '+';
+    private static final char REMOVED = '-';
+
+    private final Gson gson = new Gson();
+    private final Path journal;
+    private final Map<Long, Recording> pending = new LinkedHashMap<>();
+
+    private PersistentDownloadQueue(Path journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Opens the queue stored in the given file, or creates an empty one if the file does not exist.
+     *
+     * @param journalFile the file of the queue
+     * @return the opened {@link PersistentDownloadQueue}
+     * @throws IllegalStateException if the queue could not be read or written
+     */
+    static PersistentDownloadQueue open(File journalFile) {
+        PersistentDownloadQueue queue = new PersistentDownloadQueue(journalFile.toPath());
+
+        try {
+            queue.replay();
+            queue.compact();
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to open download queue: " + journalFile, e);
+        }
+
+        LOGGER.info("Download queue contains {} pending recordings", queue.pending.size());
+        return queue;
+    }
+
+    /**
+     * Adds the recording, if it is not queued yet.
+     *
+     * @param recording the {@link Recording} to add
+     * @return true, if it was added; false, if it was already queued
+     */
+    synchronized boolean add(Recording recording) {
+        if (pending.containsKey(recording.getTelecastId())) {
+            return false;
+        }
+
+        append(ADDED + gson.toJson(recording));
+        pending.put(recording.getTelecastId(), recording);
+        return true;
+    }
+
+    /**
+     * Removes the recording, e.g. because it was downloaded.
+     *
+     * @param telecastId the id of the {@link Recording} to remove
+     */
+    synchronized void remove(long telecastId) {
+        if (pending.remove(telecastId) != null) {
+            append(REMOVED + String.valueOf(telecastId));
+        }
+    }
+
+    /**
+     * Removes all recordings which are not contained in the given ids, e.g. because they are no longer available.
+     *
+     * @param telecastIds the ids of the recordings to keep
+     * @return the number of removed recordings
+     */
+    synchronized int retainAll(Set<Long> telecastIds) {
+        List<Long> gone = new ArrayList<>(pending.keySet());
+        gone.removeAll(telecastIds);
+
+        gone.forEach(this::remove);
+        return gone.size();
+    }
+
+    /**
+     * @return the pending recordings in the order they were added
+     */
+    synchronized List<Recording> pending() {
+        return new ArrayList<>(pending.values());
+    }
+
+    private void replay() throws IOException {
+        if (!Files.isRegularFile(journal)) {
+            return;
+        }
+
+        for (String line : Files.readAllLines(journal, StandardCharsets.UTF_8)) {
+            if (line.isEmpty()) {
+                continue;
+            }
+
+            try {
+                if (line.charAt(0) == ADDED) {
+                    Recording recording = gson.fromJson(line.substring(1), Recording.class);
+                    pending.put(recording.getTelecastId(), recording);
+                } else if (line.charAt(0) == REMOVED) {
+                    pending.remove(Long.parseLong(line.substring(1)));
+                }
+            } catch (JsonParseException | NumberFormatException e) {
+                // e.g. the last line was only written partially, when the daemon was killed
+                LOGGER.warn("Ignoring invalid line of download queue: '{}'", line, e);
+            }
+        }
+    }
+
+    private void compact() throws IOException {
+        Files.createDirectories(journal.toAbsolutePath().getParent());
+
+        Path temp = journal.resolveSibling(journal.getFileName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            for (Recording recording : pending.values()) {
+                writer.write(ADDED + gson.toJson(recording));
+                writer.newLine();
+            }
+        }
+        Files.move(temp, journal, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private void append(String line) {
+        try (BufferedWriter writer = Files.newBufferedWriter(journal, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            writer.write(line);
+            writer.newLine();
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to write download queue: " + journal, e);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package de.web.f_reissmann.deletion;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The telecast-ids of the recordings which should be deleted from the online-archive, persisted so they survive a
+ * restart.
+ * <p>
+ * Every requested deletion is appended as "+&lt;telecastId&gt;", every confirmed one as "-&lt;telecastId&gt;". A
+ * deletion of a recording which was listed by a search term is appended as "+&lt;telecastId&gt;\t&lt;term&gt;". On
+ * opening, the journal is replayed and compacted, so that it only contains the pending deletions.
+ *
+ * @author Fabian Reißmann
+ * @since 18.03.2017
+ */
+class DeletionJournal {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DeletionJournal.class);
+
+    private static final char REQUESTED = '+';
+    private static final char CONFIRMED = '-';
+    private static final char SEARCH_TERM_SEPARATOR = '\t';
+
+    private final Path journal;
+    /**
+     * The pending deletions with the search terms which listed them.
+     */
+    private final Map<Long, String> pending = new LinkedHashMap<>();
+
+    private DeletionJournal(Path journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Opens the journal stored in the given file, or creates an empty one if the file does not exist.
+     *
+     * @param journalFile the file of the journal
+     * @return the opened {@link DeletionJournal}
+     * @throws IllegalStateException if the journal could not be read or written
+     */
+    static DeletionJournal open(File journalFile) {
+        DeletionJournal deletionJournal = new DeletionJournal(journalFile.toPath());
+
+        try {
+            deletionJournal.replay();
+            deletionJournal.compact();
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to open deletion journal: " + journalFile, e);
+        }
+
+        return deletionJournal;
+    }
+
+    /**
+     * Requests the deletion of the recording, if it was not requested yet.
+     *
+     * @param telecastId the id of the recording to delete
+     * @param searchTerm the search term which listed the recording, or an empty string
+     * @return true, if it was requested; false, if it was already pending
+     */
+    synchronized boolean request(long telecastId, String searchTerm) {
+        if (pending.containsKey(telecastId)) {
+            return false;
+        }
+
+        append(requested(telecastId, searchTerm));
+        pending.put(telecastId, searchTerm);
+        return true;
+    }
+
+    /**
+     * Removes the recording from the pending deletions, because it is no longer contained in the online-archive.
+     *
+     * @param telecastId the id of the deleted recording
+     */
+    synchronized void confirm(long telecastId) {
+        if (pending.remove(telecastId) != null) {
+            append(CONFIRMED + String.valueOf(telecastId));
+        }
+    }
+
+    /**
+     * @return the ids of the pending deletions in the order they were requested
+     */
+    synchronized Set<Long> pending() {
+        return new LinkedHashSet<>(pending.keySet());
+    }
+
+    /**
+     * @param telecastId the id of a pending deletion
+     * @return the search term which listed the recording, or an empty string if it is unknown
+     */
+    synchronized String searchTermOf(long telecastId) {
+        return pending.getOrDefault(telecastId, "");
+    }
+
+    private void replay() throws IOException {
+        if (!Files.isRegularFile(journal)) {
+            return;
+        }
+
+        for (String line : Files.readAllLines(journal, StandardCharsets.UTF_8)) {
+            if (line.isEmpty()) {
+                continue;
+            }
+
+            try {
+                int separator = line.indexOf(SEARCH_TERM_SEPARATOR);
+                long telecastId = Long.parseLong(separator == -1 ? line.substring(1) : line.substring(1, separator));
+
+                if (line.charAt(0) == REQUESTED) {
+                    // Journals written by a previous version contain no search terms
+                    pending.put(telecastId, separator == -1 ? "" : line.substring(separator + 1));
+                } else if (line.charAt(0) == CONFIRMED) {
+                    pending.remove(telecastId);
+                }
+            } catch (NumberFormatException e) {
+                // e.g. the last line was only written partially, when the downloader was killed
+                LOGGER.warn("Ignoring invalid line of deletion journal: '{}'", line, e);
+            }
+        }
+    }
+
+    private void compact() throws IOException {
+        Files.createDirectories(journal.toAbsolutePath().getParent());
+
+        Path temp = journal.resolveSibling(journal.getFileName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            for (Map.Entry<Long, String> deletion : pending.entrySet()) {
+                writer.write(requested(deletion.getKey(), deletion.getValue()));
+                writer.newLine();
+            }
+        }
+        Files.move(temp, journal, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static String requested(long telecastId, String searchTerm) {
+        String line = REQUESTED + String.valueOf(telecastId);
+        return searchTerm.isEmpty() ? line : line + SEARCH_TERM_SEPARATOR + searchTerm;
+    }
+
+    private void append(String line) {
+        try (BufferedWriter writer = Files.newBufferedWriter(journal, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            writer.write(line);
+            writer.newLine();
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to write deletion journal: " + journal, e);
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package de.web.f_reissmann.deletion;
+
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import de.web.f_reissmann.metrics.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Deletes recordings from the online-archive in the background, decoupled from the downloads.
+ * <p>
+ * Requested deletions are persisted in a {@link DeletionJournal} and coalesced: they are not sent right away, but
+ * together after a short delay, with a bounded rate. A sent deletion stays pending until an archive listing confirms
+ * that the recording is gone. If it is still listed, it is sent again.
+ * <p>
+ * Deleting shifts the entries of the online-archive between its pages, so no deletion is sent between
+ * {@link #pause()} and {@link #resume()}.
+ *
+ * @author Fabian Reißmann
+ * @since 18.03.2017
+ */
+public class DeletionPipeline implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DeletionPipeline.class);
+
+    private final DeletionJournal journal;
+    private final LongConsumer deleteAction;
+    private final RateLimiter rateLimiter;
+    private final long batchDelayMillis;
+    private final ScheduledThreadPoolExecutor worker;
+
+    /**
+     * Deletions take the read-lock, so only a listing (write-lock) holds them back.
+     */
+    private final ReadWriteLock listingLock = new ReentrantReadWriteLock();
+
+    /**
+     * The pending deletions which were sent, but not confirmed yet.
+     */
+    private final Set<Long> sent = ConcurrentHashMap.newKeySet();
+
+    private boolean flushScheduled;
+
+    /**
+     * Ctor.
+     *
+     * @param journalFile      the file which keeps the pending deletions
+     * @param deleteAction     deletes the recording with the given telecast-id; throws a {@link RuntimeException} if
+     *                         the deletion failed
+     * @param deletesPerSecond the maximum rate of deletions
+     * @param batchDelayMillis the time to wait for further requests, before sending the pending deletions
+     */
+    public DeletionPipeline(File journalFile, LongConsumer deleteAction, double deletesPerSecond,
+                            long batchDelayMillis) {
+        this.journal = DeletionJournal.open(journalFile);
+        this.deleteAction = deleteAction;
+        this.rateLimiter = RateLimiter.create(deletesPerSecond);
+        this.batchDelayMillis = batchDelayMillis;
+
+        this.worker = new ScheduledThreadPoolExecutor(1, new ThreadFactoryBuilder()
+                .setNameFormat("deletion-%d")
+                .build());
+        this.worker.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+
+        LOGGER.info("Deletion journal contains {} pending deletions", journal.pending().size());
+    }
+
+    /**
+     * Requests the deletion of the recording with the given telecast-id.
+     *
+     * @param telecastId the id of the recording to delete
+     * @param searchTerm the {@link de.web.f_reissmann.recording.Recording#getSearchTerm() search term} which listed
+     *                   the recording, or an empty string
+     */
+    public void request(long telecastId, String searchTerm) {
+        if (journal.request(telecastId, searchTerm)) {
+            scheduleFlush();
+        }
+    }
+
+    /**
+     * Holds back all deletions until {@link #resume()} is called by the same thread, e.g. while listing the
+     * online-archive.
+     */
+    public void pause() {
+        listingLock.writeLock().lock();
+    }
+
+    /**
+     * Continues sending the deletions held back by {@link #pause()}.
+     */
+    public void resume() {
+        listingLock.writeLock().unlock();
+    }
+
+    /**
+     * Confirms the pending deletions against a complete listing of the online-archive: recordings which are no longer
+     * listed are done, sent deletions of recordings which are still listed are sent again.
+     *
+     * @param listedTelecastIds the ids of all recordings in the online-archive
+     */
+    public void confirm(Set<Long> listedTelecastIds) {
+        confirm(journal.pending(), listedTelecastIds);
+        scheduleFlush();
+    }
+
+    /**
+     * Same as {@link #confirm(Set)}, but against a listing which only contains the recordings matching the given
+     * search terms.
+     * <p>
+     * A deletion requested for a recording listed by one of these terms is confirmed against the filtered listing,
+     * since the recording would be listed again if it still existed. Only if the search term of a pending deletion is
+     * no longer configured (or unknown), the complete listing is retrieved to confirm it. The deletions are held back
+     * while the complete listing is retrieved.
+     *
+     * @param listedTelecastIds the ids of all recordings matching the search terms
+     * @param searchTerms       the search terms of the listing
+     * @param completeListing   retrieves the ids of all recordings in the online-archive
+     */
+    public void confirmFiltered(Set<Long> listedTelecastIds, Collection<String> searchTerms,
+                                Supplier<Set<Long>> completeListing) {
+        List<Long> filtered = new ArrayList<>();
+        List<Long> unfiltered = new ArrayList<>();
+        for (Long telecastId : journal.pending()) {
+            if (searchTerms.contains(journal.searchTermOf(telecastId))) {
+                filtered.add(telecastId);
+            } else {
+                unfiltered.add(telecastId);
+            }
+        }
+
+        confirm(filtered, listedTelecastIds);
+
+        if (!unfiltered.isEmpty()) {
+            LOGGER.info("{} deletions are not covered by the search terms, retrieving the complete online-archive",
+                    unfiltered.size());
+
+            Set<Long> allTelecastIds;
+            pause();
+            try {
+                allTelecastIds = completeListing.get();
+            } finally {
+                resume();
+            }
+            confirm(unfiltered, allTelecastIds);
+        }
+        scheduleFlush();
+    }
+
+    private void confirm(Collection<Long> pendingTelecastIds, Set<Long> listedTelecastIds) {
+        int confirmed = 0;
+        int failed = 0;
+
+        for (Long telecastId : pendingTelecastIds) {
+            if (!listedTelecastIds.contains(telecastId)) {
+                journal.confirm(telecastId);
+                sent.remove(telecastId);
+                confirmed++;
+            } else if (sent.remove(telecastId)) {
+                LOGGER.warn("Recording {} is still listed after deleting it, deleting it again", telecastId);
+                Metrics.retries("delete").increment();
+                failed++;
+            }
+        }
+
+        LOGGER.info("Confirmed {} deletions, {} failed", confirmed, failed);
+    }
+
+    private synchronized void scheduleFlush() {
+        if (!flushScheduled && !worker.isShutdown()) {
+            flushScheduled = true;
+            worker.schedule(this::flush, batchDelayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void flush() {
+        synchronized (this) {
+            flushScheduled = false;
+        }
+
+        for (Long telecastId : journal.pending()) {
+            if (sent.contains(telecastId)) {
+                continue;
+            }
+
+            rateLimiter.acquire();
+            listingLock.readLock().lock();
+            try {
+                deleteAction.accept(telecastId);
+                sent.add(telecastId);
+            } catch (RuntimeException e) {
+                // Stays pending, so it is sent again with the next flush
+                LOGGER.warn("Unable to delete recording {}, retrying later", telecastId, e);
+            } finally {
+                listingLock.readLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Sends all pending deletions which were not sent yet and waits until they are sent.
+     */
+    @Override
+    public void close() {
+        worker.execute(this::flush);
+        worker.shutdown();
+
+        try {
+            worker.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            worker.shutdownNow();
+        }
+    }
+}
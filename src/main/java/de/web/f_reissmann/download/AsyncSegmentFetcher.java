@@ -0,0 +1,202 @@
+package de.web.f_reissmann.download;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.ContentDecoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.client.HttpAsyncClient;
+import org.apache.http.nio.client.methods.HttpAsyncMethods;
+import org.apache.http.nio.protocol.AbstractAsyncResponseConsumer;
+import org.apache.http.protocol.HttpContext;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fetches segments using a non-blocking {@link HttpAsyncClient}, instead of one blocking thread per segment.
+ * <p>
+ * The few I/O threads of the client serve the connections of all segments of all downloads. Whenever bytes of a
+ * segment arrived, they are read into its pooled buffer, and every full buffer is written to its position in the file
+ * right away, just like {@link DownloadSink#transfer} does for a blocking stream. Since the I/O thread writes, the
+ * {@link DownloadSink.FsyncPolicy} "CHECKPOINT" forces the file on it, too.
+ * <p>
+ * An I/O thread must never sleep, since it would stall all of its connections. So the {@link BandwidthLimiter} is
+ * asked for the time to wait only, and the input of the connection is suspended for that time instead.
+ *
+ * @author Fabian Reißmann
+ * @since 30.03.2017
+ */
+class AsyncSegmentFetcher {
+
+    private final HttpAsyncClient client;
+    private final BufferPool bufferPool;
+    private final BandwidthLimiter bandwidthLimiter;
+
+    /**
+     * Resumes the connections which were suspended by the {@link BandwidthLimiter}.
+     */
+    private final ScheduledExecutorService throttle = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder()
+                    .setNameFormat("download-throttle-%d")
+                    .setDaemon(true)
+                    .build());
+
+    /**
+     * Ctor.
+     *
+     * @param client           the started {@link HttpAsyncClient} used for all requests
+     * @param bufferPool       the pool providing one buffer per segment
+     * @param bandwidthLimiter limits the bandwidth of all downloads together
+     */
+    AsyncSegmentFetcher(HttpAsyncClient client, BufferPool bufferPool, BandwidthLimiter bandwidthLimiter) {
+        this.client = client;
+        this.bufferPool = bufferPool;
+        this.bandwidthLimiter = bandwidthLimiter;
+    }
+
+    /**
+     * Starts fetching the missing bytes of the given segment. Only blocks until a buffer is available.
+     *
+     * @param request    the range request of the segment
+     * @param part       the segment which is written. Its progress is updated after every written block
+     * @param sink       writes the bytes into the file
+     * @param digest     the digest of the segment, updated with every block
+     * @param onProgress called after every written block with the number of bytes written by it
+     * @return completed once the segment is complete, or completed exceptionally with the {@link IOException}, e.g.
+     * a {@link LinkExpiredException}
+     * @throws IOException if the thread was interrupted while waiting for a buffer
+     */
+    CompletableFuture<Void> fetch(HttpGet request, Segment part, DownloadSink sink, MessageDigest digest,
+                                  DownloadSink.ProgressListener onProgress) throws IOException {
+        ByteBuffer buffer = bufferPool.acquire();
+        CompletableFuture<Void> fetched = new CompletableFuture<>();
+
+        try {
+            client.execute(HttpAsyncMethods.create(request),
+                    new SegmentConsumer(part, sink, digest, onProgress, buffer),
+                    new FutureCallback<Void>() {
+                        @Override
+                        public void completed(Void result) {
+                            bufferPool.release(buffer);
+                            fetched.complete(null);
+                        }
+
+                        @Override
+                        public void failed(Exception e) {
+                            bufferPool.release(buffer);
+                            fetched.completeExceptionally(e);
+                        }
+
+                        @Override
+                        public void cancelled() {
+                            bufferPool.release(buffer);
+                            fetched.completeExceptionally(new IOException("Cancelled: " + part.toRangeHeader()));
+                        }
+                    });
+        } catch (RuntimeException e) {
+            bufferPool.release(buffer);
+            throw e;
+        }
+        return fetched;
+    }
+
+    /**
+     * Consumes the response of one range request, on the I/O thread of its connection.
+     */
+    private class SegmentConsumer extends AbstractAsyncResponseConsumer<Void> {
+
+        private final Segment part;
+        private final DownloadSink sink;
+        private final MessageDigest digest;
+        private final DownloadSink.ProgressListener onProgress;
+
+        /**
+         * Holds the bytes which were received, but not written yet.
+         */
+        private final ByteBuffer buffer;
+
+        private SegmentConsumer(Segment part, DownloadSink sink, MessageDigest digest,
+                                DownloadSink.ProgressListener onProgress, ByteBuffer buffer) {
+            this.part = part;
+            this.sink = sink;
+            this.digest = digest;
+            this.onProgress = onProgress;
+            this.buffer = buffer;
+
+            limitToSegment();
+        }
+
+        @Override
+        protected void onResponseReceived(HttpResponse response) throws IOException {
+            SegmentedDownloader.checkSegmentResponse(response, part);
+        }
+
+        @Override
+        protected void onEntityEnclosed(HttpEntity entity, ContentType contentType) {
+            // The length of the entity was already checked together with the status
+        }
+
+        @Override
+        protected void onContentReceived(ContentDecoder decoder, IOControl ioControl) throws IOException {
+            long received = 0L;
+            int read;
+            while ((read = decoder.read(buffer)) > 0) {
+                received += read;
+                if (!buffer.hasRemaining()) {
+                    writeBuffer();
+                }
+            }
+
+            if (!buffer.hasRemaining() && !decoder.isCompleted()) {
+                // The segment is complete, but the server keeps sending
+                throw new IOException("Received more bytes than requested by: " + part.toRangeHeader());
+            }
+
+            long waitNanos = bandwidthLimiter.reserve(received);
+            if (waitNanos > 0) {
+                ioControl.suspendInput();
+                throttle.schedule(ioControl::requestInput, waitNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        @Override
+        protected Void buildResult(HttpContext context) throws IOException {
+            if (buffer.position() > 0) {
+                writeBuffer();
+            }
+            if (!part.isComplete()) {
+                throw new IOException("Segment is incomplete: " + part);
+            }
+            return null;
+        }
+
+        @Override
+        protected void releaseResources() {
+            // The buffer is released once the result was handed over
+        }
+
+        private void writeBuffer() throws IOException {
+            buffer.flip();
+            sink.write(buffer, part, digest, onProgress);
+            buffer.clear();
+            limitToSegment();
+        }
+
+        /**
+         * The buffer never takes more bytes than the segment is missing, so the bytes of the next segment are never
+         * written.
+         */
+        private void limitToSegment() {
+            buffer.limit((int) Math.min(buffer.capacity(), part.remaining()));
+        }
+    }
+}
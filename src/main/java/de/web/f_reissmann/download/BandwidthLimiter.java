@@ -0,0 +1,117 @@
+package de.web.f_reissmann.download;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.LocalTime;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * A token bucket which limits the bandwidth of all downloads together.
+ * <p>
+ * Every download calls {@link #acquire(long)} for the bytes it has read. A caller which must not block, like an I/O
+ * thread serving several connections, calls {@link #reserve(long)} instead and pauses its reading by itself. The rate
+ * is taken from a {@link BandwidthSchedule} and re-evaluated once per second, so a new window of the schedule also
+ * applies to the downloads which are already running.
+ * <p>
+ * Bytes are acquired in advance and the caller sleeps off the resulting debt. This keeps the lock short and the
+ * bandwidth fairly shared, since the callers are served in the order of their calls.
+ *
+ * @author Fabian Reißmann
+ * @since 14.03.2017
+ */
+class BandwidthLimiter {
+
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * The schedule is evaluated at most once in this interval.
+     */
+    private static final long SCHEDULE_CHECK_INTERVAL_NANOS = NANOS_PER_SECOND;
+
+    private final BandwidthSchedule schedule;
+    private final Supplier<LocalTime> clock;
+    private final LongSupplier nanoTime;
+
+    private long rate;
+    private long nextScheduleCheck;
+
+    /**
+     * The available bytes. Negative, if more bytes were acquired than the rate allows (a debt).
+     */
+    private double tokens;
+    private long lastRefill;
+
+    /**
+     * Ctor.
+     *
+     * @param schedule the schedule defining the rate
+     * @param clock    supplies the current time of day
+     */
+    BandwidthLimiter(BandwidthSchedule schedule, Supplier<LocalTime> clock) {
+        this(schedule, clock, System::nanoTime);
+    }
+
+    /**
+     * Ctor.
+     *
+     * @param schedule the schedule defining the rate
+     * @param clock    supplies the current time of day
+     * @param nanoTime supplies the time in nanos the bucket is refilled by, like {@link System#nanoTime()}
+     */
+    BandwidthLimiter(BandwidthSchedule schedule, Supplier<LocalTime> clock, LongSupplier nanoTime) {
+        this.schedule = schedule;
+        this.clock = clock;
+        this.nanoTime = nanoTime;
+        this.lastRefill = nanoTime.getAsLong();
+        this.nextScheduleCheck = lastRefill;
+    }
+
+    /**
+     * Acquires the given number of bytes. Blocks as long as necessary to keep the current rate.
+     *
+     * @param bytes the number of bytes which were read
+     * @throws IOException if the thread was interrupted while waiting
+     */
+    void acquire(long bytes) throws IOException {
+        long waitNanos = reserve(bytes);
+
+        if (waitNanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for bandwidth");
+            }
+        }
+    }
+
+    /**
+     * Acquires the given number of bytes without blocking.
+     *
+     * @param bytes the number of bytes which were read
+     * @return the nanos to wait until the reserved bytes are covered by the rate
+     */
+    synchronized long reserve(long bytes) {
+        long now = nanoTime.getAsLong();
+
+        if (now - nextScheduleCheck >= 0) {
+            rate = schedule.rateAt(clock.get());
+            nextScheduleCheck = now + SCHEDULE_CHECK_INTERVAL_NANOS;
+        }
+
+        if (rate == BandwidthSchedule.UNLIMITED) {
+            tokens = 0;
+            lastRefill = now;
+            return 0L;
+        }
+
+        // At most one second of bandwidth can be saved up as burst
+        tokens = Math.min(rate, tokens + (double) (now - lastRefill) * rate / NANOS_PER_SECOND);
+        lastRefill = now;
+        tokens -= bytes;
+
+        return tokens >= 0 ? 0L : (long) (-tokens * NANOS_PER_SECOND / rate);
+    }
+}
@@ -0,0 +1,147 @@
+package de.web.f_reissmann.download;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Defines the bandwidth available for downloads depending on the time of day.
+ * <p>
+ * A schedule consists of windows like "08:00-23:00@10M", which limits the bandwidth to 10 MB/s from 8 am to 11 pm.
+ * Several windows are separated by commas, a window may span midnight (e.g. "23:00-06:00@50M"). Outside of all
+ * windows the default limit applies. The first window containing a time wins.
+ * <p>
+ * Rates are given in bytes per second, optionally with one of the suffixes "K", "M" or "G" (base 1024).
+ * A rate of 0 means unlimited.
+ * <p>
+ * Instances of this class are <code>strictly immutable</code>.
+ *
+ * @author Fabian Reißmann
+ * @since 14.03.2017
+ */
+class BandwidthSchedule {
+
+    /**
+     * Used for rates which are not limited.
+     */
+    static final long UNLIMITED = 0L;
+
+    private static final Pattern WINDOW = Pattern.compile("^(\\d{1,2}:\\d{2})-(\\d{1,2}:\\d{2})@(.+)$");
+    private static final Pattern RATE = Pattern.compile("^(\\d+)([KMG]?)(?:B?/S)?$");
+
+    private final long defaultRate;
+    private final List<Window> windows;
+
+    private BandwidthSchedule(long defaultRate, List<Window> windows) {
+        this.defaultRate = defaultRate;
+        this.windows = windows;
+    }
+
+    /**
+     * Parses a schedule.
+     *
+     * @param defaultRate the rate outside of all windows, e.g. "0" or "2M"
+     * @param schedule    the windows, e.g. "08:00-23:00@10M, 23:00-01:00@50M". May be empty
+     * @return the parsed {@link BandwidthSchedule}
+     * @throws IllegalArgumentException if the rate or the schedule is not valid
+     */
+    static BandwidthSchedule parse(String defaultRate, String schedule) {
+        List<Window> windows = new ArrayList<>();
+
+        for (String window : StringUtils.split(StringUtils.defaultString(schedule), ',')) {
+            Matcher matcher = WINDOW.matcher(window.trim());
+            if (!matcher.matches()) {
+                throw new IllegalArgumentException("Not a valid bandwidth window: " + window);
+            }
+
+            try {
+                windows.add(new Window(LocalTime.parse(pad(matcher.group(1))),
+                        LocalTime.parse(pad(matcher.group(2))),
+                        parseRate(matcher.group(3))));
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("Not a valid bandwidth window: " + window, e);
+            }
+        }
+
+        return new BandwidthSchedule(parseRate(defaultRate), Collections.unmodifiableList(windows));
+    }
+
+    /**
+     * Returns the rate at the given time.
+     *
+     * @param time the time of day
+     * @return the rate in bytes per second, or {@link #UNLIMITED}
+     */
+    long rateAt(LocalTime time) {
+        for (Window window : windows) {
+            if (window.contains(time)) {
+                return window.rate;
+            }
+        }
+        return defaultRate;
+    }
+
+    /**
+     * Parses a rate like "512K", "10M" or "1G".
+     *
+     * @param rate the rate in bytes per second, optionally with a binary suffix
+     * @return the rate in bytes per second
+     * @throws IllegalArgumentException if the rate is not valid
+     */
+    static long parseRate(String rate) {
+        Matcher matcher = RATE.matcher(rate.trim().toUpperCase(Locale.ROOT));
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Not a valid bandwidth: " + rate);
+        }
+
+        long value = Long.parseLong(matcher.group(1));
+        switch (matcher.group(2)) {
+            case "G":
+                return value * 1024 * 1024 * 1024;
+            case "M":
+                return value * 1024 * 1024;
+            case "K":
+                return value * 1024;
+            default:
+                return value;
+        }
+    }
+
+    /**
+     * Allows "8:00" in addition to "08:00".
+     */
+    private static String pad(String time) {
+        return time.length() == 4 ? "0" + time : time;
+    }
+
+    /**
+     * A time window [from, to) with its rate.
+     */
+    private static class Window {
+
+        private final LocalTime from;
+        private final LocalTime to;
+        private final long rate;
+
+        private Window(LocalTime from, LocalTime to, long rate) {
+            this.from = from;
+            this.to = to;
+            this.rate = rate;
+        }
+
+        private boolean contains(LocalTime time) {
+            if (from.isBefore(to)) {
+                return !time.isBefore(from) && time.isBefore(to);
+            }
+            // Spans midnight
+            return !time.isBefore(from) || time.isBefore(to);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package de.web.f_reissmann.download;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A bounded pool of direct {@link ByteBuffer}s of the same size.
+ * <p>
+ * All buffers are allocated up front. So the memory used for buffering downloads is fixed, no matter how many
+ * downloads are running. If all buffers are in use, {@link #acquire()} blocks until one is released.
+ *
+ * @author Fabian Reißmann
+ * @since 12.03.2017
+ */
+class BufferPool {
+
+    private final BlockingQueue<ByteBuffer> buffers;
+
+    /**
+     * Ctor.
+     *
+     * @param count      the number of buffers
+     * @param bufferSize the size of one buffer in bytes
+     */
+    BufferPool(int count, int bufferSize) {
+        if (count < 1 || bufferSize < 1) {
+            throw new IllegalArgumentException(
+                    String.format("Invalid buffer pool: %d buffers of %d bytes", count, bufferSize));
+        }
+
+        this.buffers = new ArrayBlockingQueue<>(count);
+        for (int i = 0; i < count; i++) {
+            buffers.add(ByteBuffer.allocateDirect(bufferSize));
+        }
+    }
+
+    /**
+     * Takes a cleared buffer from the pool. Blocks until one is available.
+     *
+     * @return a cleared buffer, which must be given back using {@link #release(ByteBuffer)}
+     * @throws IOException if the thread was interrupted while waiting
+     */
+    ByteBuffer acquire() throws IOException {
+        try {
+            ByteBuffer buffer = buffers.take();
+            buffer.clear();
+            return buffer;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a buffer");
+        }
+    }
+
+    /**
+     * Gives a buffer back to the pool.
+     *
+     * @param buffer a buffer taken by {@link #acquire()}
+     */
+    void release(ByteBuffer buffer) {
+        buffers.offer(buffer);
+    }
+}
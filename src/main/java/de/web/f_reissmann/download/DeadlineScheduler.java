@@ -0,0 +1,155 @@
+package de.web.f_reissmann.download;
+
+import de.web.f_reissmann.recording.Recording;
+import de.web.f_reissmann.recording.RecordingUtil;
+import de.web.f_reissmann.recording.format.RecordingFormat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Orders the waiting downloads earliest-deadline-first, so that as few recordings as possible are deleted by save.tv
+ * before they were downloaded.
+ * <p>
+ * A recording must be downloaded before the end of its last day in the online-archive. Whenever the waiting
+ * recordings are {@link #replan(Collection) replanned}, their transfer times are estimated by the
+ * {@link TransferEstimator} and they are admitted in the order of their deadlines. If a recording would miss its
+ * deadline, the longest of the admitted ones is moved to the end instead (Moore-Hodgson), which minimizes the number
+ * of missed deadlines. The parallel downloads are treated as one download which is <code>parallelism</code> times
+ * faster.
+ * <p>
+ * The recordings moved to the end are logged as at risk. They are still downloaded, but only after all recordings
+ * which can make it.
+ *
+ * @author Fabian Reißmann
+ * @since 20.03.2017
+ */
+public class DeadlineScheduler implements Comparator<Recording> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DeadlineScheduler.class);
+
+    private final TransferEstimator estimator;
+    private final Function<Recording, RecordingFormat> formatSelection;
+    private final int parallelism;
+    private final Clock clock;
+
+    /**
+     * The deadlines are fixed when a recording is seen first, because its days left are relative to that listing.
+     */
+    private final Map<Long, Instant> deadlines = new ConcurrentHashMap<>();
+
+    private final Set<Long> atRisk = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Ctor.
+     *
+     * @param estimator       estimates the transfer time of a recording
+     * @param formatSelection selects the format in which a recording will be downloaded
+     * @param parallelism     the number of downloads which are running at once
+     * @param clock           the clock to take the current time from
+     */
+    public DeadlineScheduler(TransferEstimator estimator, Function<Recording, RecordingFormat> formatSelection,
+                             int parallelism, Clock clock) {
+        this.estimator = estimator;
+        this.formatSelection = formatSelection;
+        this.parallelism = parallelism;
+        this.clock = clock;
+    }
+
+    /**
+     * Recordings at risk come last, otherwise the earliest deadline comes first.
+     */
+    @Override
+    public int compare(Recording first, Recording second) {
+        int byRisk = Boolean.compare(isAtRisk(first), isAtRisk(second));
+
+        return byRisk != 0 ? byRisk : RecordingUtil.byDaysLeft().compare(first, second);
+    }
+
+    /**
+     * @param recording a waiting recording
+     * @return true, if the recording will probably miss its deadline according to the last plan
+     */
+    public boolean isAtRisk(Recording recording) {
+        return atRisk.contains(recording.getTelecastId());
+    }
+
+    /**
+     * Plans the given waiting recordings and logs the ones which will probably miss their deadline.
+     *
+     * @param waiting the recordings which are not downloaded yet
+     */
+    public void replan(Collection<Recording> waiting) {
+        List<Recording> byDeadline = new ArrayList<>(waiting);
+        byDeadline.sort(Comparator.comparing(this::deadlineOf));
+
+        PriorityQueue<Planned> admitted = new PriorityQueue<>(
+                Comparator.comparing((Planned planned) -> planned.duration).reversed());
+        List<Recording> late = new ArrayList<>();
+
+        Instant now = clock.instant();
+        Duration busy = Duration.ZERO;
+
+        for (Recording recording : byDeadline) {
+            Duration duration = estimator.estimateDuration(formatSelection.apply(recording)).dividedBy(parallelism);
+            admitted.add(new Planned(recording, duration));
+            busy = busy.plus(duration);
+
+            if (now.plus(busy).isAfter(deadlineOf(recording))) {
+                Planned longest = admitted.poll();
+                busy = busy.minus(longest.duration);
+                late.add(longest.recording);
+            }
+        }
+
+        Set<Long> waitingIds = new HashSet<>();
+        waiting.forEach(recording -> waitingIds.add(recording.getTelecastId()));
+        deadlines.keySet().retainAll(waitingIds);
+
+        atRisk.clear();
+        for (Recording recording : late) {
+            atRisk.add(recording.getTelecastId());
+            LOGGER.warn("Recording at risk, it will probably be deleted before it is downloaded: '{}' ({} days left)",
+                    recording.getTitle(), recording.getDaysLeft());
+        }
+
+        if (!late.isEmpty()) {
+            LOGGER.warn("{} of {} waiting recordings are at risk", late.size(), waiting.size());
+        }
+    }
+
+    private Instant deadlineOf(Recording recording) {
+        return deadlines.computeIfAbsent(recording.getTelecastId(), telecastId -> LocalDate.now(clock)
+                .plusDays(Math.max(0, recording.getDaysLeft()) + 1L)
+                .atStartOfDay(clock.getZone())
+                .toInstant());
+    }
+
+    /**
+     * A recording together with its estimated transfer time.
+     */
+    private static class Planned {
+
+        private final Recording recording;
+        private final Duration duration;
+
+        private Planned(Recording recording, Duration duration) {
+            this.recording = recording;
+            this.duration = duration;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package de.web.f_reissmann.download;
+
+import de.web.f_reissmann.metrics.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToLongFunction;
+
+/**
+ * Admits a download only if its missing bytes fit on the disk.
+ * <p>
+ * The usable space of the destination is reduced by a fixed headroom and by the bytes which the running downloads
+ * are still going to write. Every admitted download holds a {@link Reservation} of its missing bytes, which shrinks
+ * while they are written, since the written bytes are already missing from the usable space. So concurrent downloads
+ * can not together overfill the disk, although each of them alone would fit.
+ *
+ * @author Fabian Reißmann
+ * @since 30.03.2017
+ */
+class DiskSpaceGuard {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DiskSpaceGuard.class);
+
+    private final long headroom;
+
+    /**
+     * Returns the usable bytes of the filesystem of a directory, e.g. {@link File#getUsableSpace()}.
+     */
+    private final ToLongFunction<File> usableSpace;
+
+    private final Set<Reservation> reservations = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    /**
+     * Ctor.
+     *
+     * @param headroom    the bytes which are always left free
+     * @param usableSpace returns the usable bytes of the filesystem of a directory
+     */
+    DiskSpaceGuard(long headroom, ToLongFunction<File> usableSpace) {
+        this.headroom = headroom;
+        this.usableSpace = usableSpace;
+
+        Metrics.REGISTRY.gauge("savetv_disk_reserved_bytes", "Bytes reserved by the running downloads",
+                this::reserved);
+    }
+
+    /**
+     * Reserves the given bytes for a download, if they fit.
+     *
+     * @param file  the file which is going to be written
+     * @param bytes the bytes which are still missing from the file
+     * @return the {@link Reservation}, which has to be closed once the download is done
+     * @throws InsufficientDiskSpaceException if the bytes do not fit
+     */
+    synchronized Reservation reserve(File file, long bytes) throws InsufficientDiskSpaceException {
+        long available = Math.max(0L,
+                usableSpace.applyAsLong(file.getAbsoluteFile().getParentFile()) - headroom - reserved());
+
+        if (bytes > available) {
+            throw new InsufficientDiskSpaceException("Not enough space for '" + file.getName() + "': "
+                    + bytes + " bytes needed, " + available + " available", bytes, available);
+        }
+
+        LOGGER.debug("Reserved {} of {} available bytes for '{}'", bytes, available, file.getName());
+        Reservation reservation = new Reservation(bytes);
+        reservations.add(reservation);
+        return reservation;
+    }
+
+    private synchronized long reserved() {
+        long reserved = 0L;
+        for (Reservation reservation : reservations) {
+            reserved += reservation.outstanding.get();
+        }
+        return reserved;
+    }
+
+    private synchronized void release(Reservation reservation) {
+        reservations.remove(reservation);
+    }
+
+    /**
+     * The bytes reserved for one download, which are not written yet.
+     */
+    class Reservation implements AutoCloseable {
+
+        private final AtomicLong outstanding;
+
+        private Reservation(long bytes) {
+            this.outstanding = new AtomicLong(bytes);
+        }
+
+        /**
+         * Called whenever bytes were written, which are no longer part of the usable space.
+         *
+         * @param bytes the number of written bytes
+         */
+        void written(long bytes) {
+            outstanding.accumulateAndGet(bytes, (left, written) -> Math.max(0L, left - written));
+        }
+
+        /**
+         * Called once all blocks of the file were allocated, e.g. by writing zeros up front.
+         */
+        void allocated() {
+            outstanding.set(0L);
+        }
+
+        @Override
+        public void close() {
+            release(this);
+        }
+    }
+}
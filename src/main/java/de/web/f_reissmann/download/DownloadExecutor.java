@@ -0,0 +1,382 @@
+package de.web.f_reissmann.download;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import de.web.f_reissmann.metrics.Metrics;
+import de.web.f_reissmann.recording.Recording;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Runs the downloads of several {@link Recording}s concurrently using a fixed number of workers.
+ * <p>
+ * Waiting jobs are handed out to the workers according to the given order, e.g. recordings which will be removed soon
+ * first. Jobs which are equal according to that order are handed out in the order they were submitted. So recordings
+ * which are submitted late (e.g. from a later page of the archive) may still overtake waiting ones.
+ * <p>
+ * Every submitted job is tracked by its own {@link CompletableFuture}, which only completes normally if the download
+ * actually finished.
+ * <p>
+ * Optionally the next waiting recordings are announced whenever the head of the queue changes, so their downloads
+ * can be prepared (e.g. by resolving their download-urls) while the workers are still busy.
+ * <p>
+ * A download which fails with an {@link InsufficientDiskSpaceException} is deferred: it is queued again after a delay,
+ * so the workers continue with recordings which still fit. Only after the configured number of deferrals it fails.
+ *
+ * @author Fabian Reißmann
+ * @since 26.02.2017
+ */
+public class DownloadExecutor implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DownloadExecutor.class);
+
+    private static final long KEEP_ALIVE_NONE = 0L;
+
+    /**
+     * The workers which are executing the downloads.
+     */
+    private final ThreadPoolExecutor workers;
+
+    /**
+     * The action which downloads a single {@link Recording}.
+     */
+    private final Function<Recording, DownloadResult> downloadAction;
+
+    /**
+     * The order in which waiting jobs are handed out.
+     */
+    private final Comparator<Recording> order;
+
+    /**
+     * Used to keep the submission order for jobs which are equal according to {@link #order}.
+     */
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * The number of waiting recordings which are announced to {@link #onUpcoming}.
+     */
+    private final int lookahead;
+
+    /**
+     * Receives the next waiting recordings, in the order they are handed out.
+     */
+    private final Consumer<List<Recording>> onUpcoming;
+
+    /**
+     * How long a download which did not fit on the disk waits, before it is queued again.
+     */
+    private final Duration deferDelay;
+
+    /**
+     * How often one download is deferred, before it fails.
+     */
+    private final int maxDeferrals;
+
+    /**
+     * Queues the deferred jobs again once their delay passed. Created with the first deferral.
+     */
+    private ScheduledExecutorService deferrals;
+
+    /**
+     * The jobs which are not done yet. Used for waiting until all of them are done. Every one of them completes only
+     * once its result was counted, and is removed right after.
+     */
+    private final Set<CompletableFuture<DownloadResult>> unfinished = ConcurrentHashMap.newKeySet();
+
+    /**
+     * The number of jobs which finished successfully so far.
+     */
+    private final AtomicInteger succeeded = new AtomicInteger();
+
+    /**
+     * Ctor.
+     *
+     * @param parallelism    the number of downloads which are running at once
+     * @param downloadAction the action which downloads a single {@link Recording}
+     * @param order          the order in which waiting jobs are handed out to the workers
+     */
+    public DownloadExecutor(int parallelism,
+                            Function<Recording, DownloadResult> downloadAction,
+                            Comparator<Recording> order) {
+        this(parallelism, downloadAction, order, 0, upcoming -> {
+        });
+    }
+
+    /**
+     * Ctor.
+     *
+     * @param parallelism    the number of downloads which are running at once
+     * @param downloadAction the action which downloads a single {@link Recording}
+     * @param order          the order in which waiting jobs are handed out to the workers
+     * @param lookahead      the number of waiting recordings which are announced, 0 to announce none
+     * @param onUpcoming     receives the next waiting recordings whenever a download starts or the queue is reordered
+     */
+    public DownloadExecutor(int parallelism,
+                            Function<Recording, DownloadResult> downloadAction,
+                            Comparator<Recording> order,
+                            int lookahead,
+                            Consumer<List<Recording>> onUpcoming) {
+        this(parallelism, downloadAction, order, lookahead, onUpcoming, Duration.ZERO, 0);
+    }
+
+    /**
+     * Ctor.
+     *
+     * @param parallelism    the number of downloads which are running at once
+     * @param downloadAction the action which downloads a single {@link Recording}
+     * @param order          the order in which waiting jobs are handed out to the workers
+     * @param lookahead      the number of waiting recordings which are announced, 0 to announce none
+     * @param onUpcoming     receives the next waiting recordings whenever a download starts or the queue is reordered
+     * @param deferDelay     how long a download which did not fit on the disk waits, before it is queued again
+     * @param maxDeferrals   how often one download is deferred, before it fails. 0 to fail right away
+     */
+    public DownloadExecutor(int parallelism,
+                            Function<Recording, DownloadResult> downloadAction,
+                            Comparator<Recording> order,
+                            int lookahead,
+                            Consumer<List<Recording>> onUpcoming,
+                            Duration deferDelay,
+                            int maxDeferrals) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("The parallelism must at least be 1, but was: " + parallelism);
+        }
+
+        this.downloadAction = downloadAction;
+        this.order = order;
+        this.lookahead = lookahead;
+        this.onUpcoming = onUpcoming;
+        this.deferDelay = deferDelay;
+        this.maxDeferrals = maxDeferrals;
+        this.workers = new ThreadPoolExecutor(parallelism, parallelism,
+                KEEP_ALIVE_NONE, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<>(),
+                new ThreadFactoryBuilder().setNameFormat("download-%d").build());
+
+        Metrics.REGISTRY.gauge("savetv_downloads_waiting", "Downloads waiting for a worker",
+                () -> workers.getQueue().size());
+        Metrics.REGISTRY.gauge("savetv_downloads_running", "Downloads which are running",
+                workers::getActiveCount);
+    }
+
+    /**
+     * Queues the download of the given {@link Recording}.
+     *
+     * @param recording the {@link Recording} to download
+     * @param onSuccess called by the worker, but only if the download finished successfully
+     * @return a future which completes with the result once the recording was downloaded and <code>onSuccess</code>
+     * was executed, or exceptionally if either of them failed
+     */
+    public synchronized CompletableFuture<DownloadResult> submit(Recording recording,
+                                                                 Consumer<DownloadResult> onSuccess) {
+        DownloadJob job = new DownloadJob(recording, onSuccess, sequence.getAndIncrement());
+
+        CompletableFuture<DownloadResult> counted = job.result.whenComplete((downloaded, failure) -> {
+            if (failure != null) {
+                Metrics.DOWNLOADS_FAILED.increment();
+                LOGGER.error("Download failed: '{}' ({})", recording.getTitle(), recording.getTelecastId(), failure);
+            } else {
+                succeeded.incrementAndGet();
+                Metrics.DOWNLOADS_SUCCEEDED.increment();
+                observeThroughput(downloaded);
+            }
+        });
+        unfinished.add(counted);
+        counted.whenComplete((downloaded, failure) -> unfinished.remove(counted));
+
+        workers.execute(job);
+
+        // Only the first jobs can change the head of the queue, later ones are announced once it was reordered
+        if (workers.getQueue().size() <= lookahead) {
+            announceUpcoming();
+        }
+
+        return job.result;
+    }
+
+    private static void observeThroughput(DownloadResult downloaded) {
+        long millis = downloaded.getElapsed().toMillis();
+        if (millis > 0) {
+            Metrics.DOWNLOAD_THROUGHPUT.observe(downloaded.getTransferred() * 1000.0 / millis);
+        }
+    }
+
+    /**
+     * Sorts the waiting jobs again, e.g. because the given order depends on estimates which changed since they were
+     * submitted.
+     *
+     * @param replan called with the waiting recordings, before they are sorted again. Allows to update the order
+     */
+    public synchronized void reorder(Consumer<Collection<Recording>> replan) {
+        List<Runnable> waiting = new ArrayList<>();
+        workers.getQueue().drainTo(waiting);
+
+        List<Recording> recordings = new ArrayList<>(waiting.size());
+        for (Runnable job : waiting) {
+            recordings.add(((DownloadJob) job).recording);
+        }
+
+        try {
+            replan.accept(recordings);
+        } finally {
+            // The workers only take jobs from the queue, so they are handed out again once they are back
+            workers.getQueue().addAll(waiting);
+        }
+        announceUpcoming();
+    }
+
+    /**
+     * Announces the next {@link #lookahead} waiting recordings to {@link #onUpcoming}.
+     */
+    private void announceUpcoming() {
+        if (lookahead < 1) {
+            return;
+        }
+
+        List<Recording> upcoming = workers.getQueue().stream()
+                .map(job -> (DownloadJob) job)
+                .sorted()
+                .limit(lookahead)
+                .map(job -> job.recording)
+                .collect(Collectors.toList());
+
+        if (!upcoming.isEmpty()) {
+            try {
+                onUpcoming.accept(upcoming);
+            } catch (RuntimeException e) {
+                LOGGER.warn("Unable to announce the upcoming downloads", e);
+            }
+        }
+    }
+
+    /**
+     * Queues the given job again after {@link #deferDelay}.
+     *
+     * @return false, if the job may not be deferred anymore
+     */
+    private synchronized boolean defer(DownloadJob job) {
+        if (job.deferred >= maxDeferrals || workers.isShutdown()) {
+            return false;
+        }
+        job.deferred++;
+
+        if (deferrals == null) {
+            deferrals = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                    .setNameFormat("download-deferral-%d")
+                    .setDaemon(true)
+                    .build());
+        }
+        deferrals.schedule(() -> {
+            try {
+                workers.execute(job);
+            } catch (RejectedExecutionException e) {
+                job.result.completeExceptionally(e);
+            }
+        }, deferDelay.toMillis(), TimeUnit.MILLISECONDS);
+
+        Metrics.retries("download-deferred").increment();
+        return true;
+    }
+
+    /**
+     * Blocks until every job submitted so far is done, regardless whether it succeeded or failed.
+     *
+     * @return the number of jobs which finished successfully, since the executor was created
+     */
+    public int awaitCompletion() {
+        for (CompletableFuture<DownloadResult> job : new ArrayList<>(unfinished)) {
+            try {
+                job.join();
+            } catch (RuntimeException e) {
+                // Already logged when the job failed
+            }
+        }
+        return succeeded.get();
+    }
+
+    /**
+     * Stops the workers. Running downloads are finished, but no new jobs are accepted anymore.
+     */
+    @Override
+    public synchronized void close() {
+        workers.shutdown();
+        if (deferrals != null) {
+            // Jobs which are still deferred can not be queued anymore
+            deferrals.shutdownNow().forEach(Runnable::run);
+        }
+    }
+
+    private static <T extends Throwable> T findCause(Throwable failure, Class<T> type) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (type.isInstance(cause)) {
+                return type.cast(cause);
+            }
+            if (cause.getCause() == cause) {
+                break;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * One queued download. Ordered by {@link #order}, then by submission.
+     */
+    private class DownloadJob implements Runnable, Comparable<DownloadJob> {
+
+        private final Recording recording;
+        private final Consumer<DownloadResult> onSuccess;
+        private final long submissionIndex;
+        private final CompletableFuture<DownloadResult> result = new CompletableFuture<>();
+        private int deferred;
+
+        private DownloadJob(Recording recording, Consumer<DownloadResult> onSuccess, long submissionIndex) {
+            this.recording = recording;
+            this.onSuccess = onSuccess;
+            this.submissionIndex = submissionIndex;
+        }
+
+        @Override
+        public void run() {
+            announceUpcoming();
+            try {
+                DownloadResult downloaded = downloadAction.apply(recording);
+                onSuccess.accept(downloaded);
+                result.complete(downloaded);
+            } catch (RuntimeException e) {
+                InsufficientDiskSpaceException noSpace = findCause(e, InsufficientDiskSpaceException.class);
+
+                if (noSpace != null && defer(this)) {
+                    LOGGER.warn("Deferring '{}' for {} s ({} of {}): {}", recording.getTitle(),
+                            deferDelay.getSeconds(), deferred, maxDeferrals, noSpace.getMessage());
+                    return;
+                }
+                result.completeExceptionally(e);
+            }
+        }
+
+        @Override
+        public int compareTo(DownloadJob other) {
+            int byOrder = order.compare(recording, other.recording);
+
+            return byOrder != 0 ? byOrder : Long.compare(submissionIndex, other.submissionIndex);
+        }
+    }
+}
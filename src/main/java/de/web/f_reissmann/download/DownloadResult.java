@@ -0,0 +1,76 @@
+package de.web.f_reissmann.download;
+
+import de.web.f_reissmann.recording.Recording;
+import de.web.f_reissmann.recording.format.RecordingFormat;
+
+import java.io.File;
+import java.time.Duration;
+
+/**
+ * Pojo. Describes one {@link Recording} which was downloaded successfully.
+ * <p>
+ * Instances of this class are <code>strictly immutable</code>.
+ *
+ * @author Fabian Reißmann
+ * @since 08.03.2017
+ */
+public class DownloadResult {
+
+    private final Recording recording;
+    private final RecordingFormat format;
+    private final File file;
+    private final long size;
+    private final long transferred;
+    private final Duration elapsed;
+    private final String checksum;
+
+    /**
+     * Ctor.
+     *
+     * @param recording   the {@link Recording} which was downloaded
+     * @param format      the {@link RecordingFormat} in which it was downloaded
+     * @param file        the completely written file
+     * @param size        the size of the file in bytes
+     * @param transferred the number of bytes which were actually downloaded, less than the size if it was resumed
+     * @param elapsed     the time the download took
+     * @param checksum    the checksum of the file, see {@link InlineChecksum}
+     */
+    public DownloadResult(Recording recording, RecordingFormat format, File file, long size, long transferred,
+                          Duration elapsed, String checksum) {
+        this.recording = recording;
+        this.format = format;
+        this.file = file;
+        this.size = size;
+        this.transferred = transferred;
+        this.elapsed = elapsed;
+        this.checksum = checksum;
+    }
+
+    public Recording getRecording() {
+        return recording;
+    }
+
+    public RecordingFormat getFormat() {
+        return format;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getTransferred() {
+        return transferred;
+    }
+
+    public Duration getElapsed() {
+        return elapsed;
+    }
+
+    public String getChecksum() {
+        return checksum;
+    }
+}
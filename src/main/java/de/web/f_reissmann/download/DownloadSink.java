@@ -0,0 +1,223 @@
+package de.web.f_reissmann.download;
+
+import de.web.f_reissmann.metrics.Metrics;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+
+/**
+ * Writes the bytes of one download into its file, using a {@link FileChannel}.
+ * <p>
+ * The bytes are read into pooled direct buffers and written in blocks of the buffer size, using positional writes.
+ * So several segments may write concurrently, without any heap buffer per download.
+ * <p>
+ * Every read is accounted at the {@link BandwidthLimiter}, which throttles the reading if necessary. Every block is
+ * added to the digest of its segment before it is written, so the checksum needs no second read.
+ *
+ * @author Fabian Reißmann
+ * @since 12.03.2017
+ */
+class DownloadSink implements Closeable {
+
+    private static final int ZERO_FILL_BLOCK = 64 * 1024;
+
+    private final FileChannel channel;
+    private final BufferPool bufferPool;
+    private final FsyncPolicy fsyncPolicy;
+    private final BandwidthLimiter bandwidthLimiter;
+
+    /**
+     * Ctor.
+     *
+     * @param file             the file to write to. Is created if it does not exist, but not truncated
+     * @param bufferPool       the pool providing the buffers
+     * @param fsyncPolicy      defines when the written bytes are forced to the disk
+     * @param bandwidthLimiter limits the bandwidth of all downloads together
+     * @throws IOException if the file could not be opened
+     */
+    DownloadSink(Path file, BufferPool bufferPool, FsyncPolicy fsyncPolicy, BandwidthLimiter bandwidthLimiter)
+            throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        this.bufferPool = bufferPool;
+        this.fsyncPolicy = fsyncPolicy;
+        this.bandwidthLimiter = bandwidthLimiter;
+    }
+
+    /**
+     * Reserves the space of the complete file before the first byte is downloaded.
+     * Does nothing, if the file already has the given length (e.g. when a download is resumed).
+     *
+     * @param length        the length of the complete file
+     * @param preallocation how the space is reserved
+     * @throws IOException if the space could not be reserved
+     */
+    void preallocate(long length, Preallocation preallocation) throws IOException {
+        if (channel.size() >= length) {
+            return;
+        }
+
+        switch (preallocation) {
+            case NONE:
+                break;
+            case SIZE:
+                // Sets the length only. Most filesystems create a sparse file
+                channel.write(ByteBuffer.wrap(new byte[1]), length - 1);
+                break;
+            case FULL:
+                // Java offers no fallocate, so the blocks are allocated by writing zeros
+                ByteBuffer zeros = ByteBuffer.allocateDirect(ZERO_FILL_BLOCK);
+                for (long position = channel.size(); position < length; position += zeros.limit()) {
+                    zeros.clear().limit((int) Math.min(ZERO_FILL_BLOCK, length - position));
+                    while (zeros.hasRemaining()) {
+                        channel.write(zeros, position + zeros.position());
+                    }
+                }
+                break;
+            default:
+                throw new IllegalStateException("Should not be happen, since we are using enum here");
+        }
+    }
+
+    /**
+     * Transfers the stream into the file, starting at the next position of the segment, until either the stream
+     * ends or the segment is complete.
+     *
+     * @param in         the stream to read from
+     * @param part       the segment which is written. Its progress is updated after every written block
+     * @param digest     the digest of the segment, updated with every block
+     * @param onProgress called after every written block with the number of bytes written by it
+     * @throws IOException if reading or writing failed
+     */
+    void transfer(InputStream in, Segment part, MessageDigest digest, ProgressListener onProgress)
+            throws IOException {
+        ReadableByteChannel source = Channels.newChannel(in);
+        ByteBuffer buffer = bufferPool.acquire();
+
+        try {
+            boolean endOfStream = false;
+            while (!endOfStream && !part.isComplete()) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), part.remaining()));
+                endOfStream = fill(source, buffer);
+
+                buffer.flip();
+                write(buffer, part, digest, onProgress);
+            }
+        } finally {
+            bufferPool.release(buffer);
+        }
+    }
+
+    /**
+     * Writes one block at the next position of the segment.
+     *
+     * @param block      the bytes between the position and the limit are written
+     * @param part       the segment which is written. Its progress is updated
+     * @param digest     the digest of the segment, updated with the block
+     * @param onProgress called with the number of bytes written
+     * @throws IOException if writing failed
+     */
+    void write(ByteBuffer block, Segment part, MessageDigest digest, ProgressListener onProgress) throws IOException {
+        int length = block.remaining();
+        block.mark();
+        digest.update(block);
+        block.reset();
+
+        long started = System.nanoTime();
+        while (block.hasRemaining()) {
+            part.addWritten(channel.write(block, part.getNextPosition()));
+        }
+        Metrics.DISK_WRITE.observeSecondsSince(started);
+        Metrics.DOWNLOADED_BYTES.mark(length);
+        onProgress.written(length);
+    }
+
+    /**
+     * Reads until the buffer is full or the stream ends.
+     *
+     * @return true, if the stream ended
+     */
+    private boolean fill(ReadableByteChannel source, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = source.read(buffer);
+            if (read == -1) {
+                return true;
+            }
+            bandwidthLimiter.acquire(read);
+        }
+        return false;
+    }
+
+    /**
+     * Called before the progress of the download is stored.
+     *
+     * @throws IOException if the bytes could not be forced to the disk
+     */
+    void beforeCheckpoint() throws IOException {
+        if (fsyncPolicy == FsyncPolicy.CHECKPOINT) {
+            force(false);
+        }
+    }
+
+    /**
+     * Called after the last byte was written.
+     *
+     * @throws IOException if the bytes could not be forced to the disk
+     */
+    void beforeComplete() throws IOException {
+        if (fsyncPolicy != FsyncPolicy.NONE) {
+            force(true);
+        }
+    }
+
+    private void force(boolean metaData) throws IOException {
+        long started = System.nanoTime();
+        channel.force(metaData);
+        Metrics.DISK_FORCE.observeSecondsSince(started);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Receives the number of bytes written by one block.
+     */
+    @FunctionalInterface
+    interface ProgressListener {
+        void written(long bytes);
+    }
+
+    /**
+     * Defines when the written bytes are forced to the disk.
+     */
+    public enum FsyncPolicy {
+        // Leave it to the operating system. After a power loss, a resumed download might contain garbage
+        NONE,
+        // Once, before the completed file is renamed
+        COMPLETE,
+        // Before every stored progress and before the completed file is renamed
+        CHECKPOINT
+    }
+
+    /**
+     * Defines how the space for a download is reserved before it starts.
+     */
+    public enum Preallocation {
+        // Grow the file while writing
+        NONE,
+        // Set the final length up front, which creates a sparse file on most filesystems
+        SIZE,
+        // Write zeros up front, so the filesystem allocates all blocks at once. Costs one additional write
+        FULL
+    }
+}
@@ -0,0 +1,160 @@
+package de.web.f_reissmann.download;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Calculates the checksum of a download while its bytes are written, so the file is never read a second time.
+ * <p>
+ * Since the segments are written concurrently, every {@link Segment} has a SHA-256 digest of its own, which is only
+ * updated by the one thread fetching it. A file written in one segment gets its plain SHA-256 ("sha256:&lt;hex&gt;").
+ * Otherwise the checksum is the SHA-256 of the concatenated digests of the segments in the order of their offsets
+ * ("sha256x&lt;segments&gt;:&lt;hex&gt;"), like the ETag of a multipart upload.
+ * <p>
+ * If a checksum comparable with <code>sha256sum</code> is needed for every file, {@link #sha256Of(Path)} reads the
+ * complete file once more. This is an opt-in, see {@link de.web.f_reissmann.config.SaveTvConfig}.
+ * <p>
+ * The state of a digest can not be stored with the progress. So when a download is resumed, the bytes already
+ * written by every segment are read once to restore its digest.
+ *
+ * @author Fabian Reißmann
+ * @since 27.03.2017
+ */
+class InlineChecksum {
+
+    private static final String ALGORITHM = "SHA-256";
+    private static final int READ_BLOCK = 64 * 1024;
+
+    /**
+     * The segments ordered by their offsets.
+     */
+    private final List<Segment> parts;
+    private final Map<Segment, MessageDigest> digests = new IdentityHashMap<>();
+
+    /**
+     * Ctor.
+     *
+     * @param parts the segments of the download, none of them written yet
+     */
+    InlineChecksum(List<Segment> parts) {
+        this.parts = new ArrayList<>(parts);
+        this.parts.sort(Comparator.comparingLong(Segment::getStart));
+        for (Segment part : parts) {
+            digests.put(part, newDigest());
+        }
+    }
+
+    /**
+     * Creates the checksum of a resumed download, restoring the digests from the bytes already written.
+     *
+     * @param parts the segments of the download
+     * @param file  the ".part"-file containing the written bytes
+     * @return the {@link InlineChecksum} to continue with
+     * @throws IOException if the written bytes could not be read
+     */
+    static InlineChecksum resume(List<Segment> parts, Path file) throws IOException {
+        InlineChecksum checksum = new InlineChecksum(parts);
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            for (Segment part : checksum.parts) {
+                read(channel, part.getStart(), part.getNextPosition(), checksum.digestOf(part), file);
+            }
+        }
+        return checksum;
+    }
+
+    /**
+     * Calculates the plain SHA-256 of a complete file by reading it.
+     *
+     * @param file the file to read
+     * @return the checksum, e.g. "sha256:9f86d0..."
+     * @throws IOException if the file could not be read
+     */
+    static String sha256Of(Path file) throws IOException {
+        MessageDigest digest = newDigest();
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            read(channel, 0L, channel.size(), digest, file);
+        }
+        return "sha256:" + toHex(digest.digest());
+    }
+
+    /**
+     * @param part one of the segments of the download
+     * @return the digest of the segment, only to be updated by the thread writing it
+     */
+    MessageDigest digestOf(Segment part) {
+        MessageDigest digest = digests.get(part);
+        if (digest == null) {
+            throw new IllegalArgumentException("Not a segment of this download: " + part);
+        }
+        return digest;
+    }
+
+    /**
+     * @return true, if {@link #value()} is the plain SHA-256 of the file, since it was written in one segment
+     */
+    boolean isPlain() {
+        return parts.size() == 1;
+    }
+
+    /**
+     * Completes the checksum. Must only be called once, after all segments are complete.
+     *
+     * @return the checksum, e.g. "sha256x4:9f86d0..."
+     */
+    String value() {
+        if (isPlain()) {
+            return "sha256:" + toHex(digestOf(parts.get(0)).digest());
+        }
+
+        MessageDigest combined = newDigest();
+        for (Segment part : parts) {
+            combined.update(digestOf(part).digest());
+        }
+        return "sha256x" + parts.size() + ":" + toHex(combined.digest());
+    }
+
+    private static void read(FileChannel channel, long from, long to, MessageDigest digest, Path file)
+            throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(READ_BLOCK);
+        long position = from;
+
+        while (position < to) {
+            buffer.clear().limit((int) Math.min(READ_BLOCK, to - position));
+            int read = channel.read(buffer, position);
+            if (read == -1) {
+                throw new IOException("The file is shorter than expected: " + file);
+            }
+            buffer.flip();
+            digest.update(buffer);
+            position += read;
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Every Java platform has to support " + ALGORITHM, e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte value : bytes) {
+            hex.append(Character.forDigit((value >> 4) & 0xF, 16)).append(Character.forDigit(value & 0xF, 16));
+        }
+        return hex.toString();
+    }
+}
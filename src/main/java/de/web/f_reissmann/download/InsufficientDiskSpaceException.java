@@ -0,0 +1,40 @@
+package de.web.f_reissmann.download;
+
+import de.web.f_reissmann.resilience.PermanentFailureException;
+
+/**
+ * Thrown if a download does not fit into the free space of its destination. Nothing was written, so the download can
+ * be started again once there is enough space.
+ * <p>
+ * It is not repeated right away by the {@link de.web.f_reissmann.resilience.ResilientCaller}, since the space does
+ * not come back within seconds. Instead the {@link DownloadExecutor} defers the download.
+ *
+ * @author Fabian Reißmann
+ * @since 30.03.2017
+ */
+public class InsufficientDiskSpaceException extends PermanentFailureException {
+
+    private final long required;
+    private final long available;
+
+    /**
+     * Ctor.
+     *
+     * @param message   the detail message
+     * @param required  the bytes the download needs
+     * @param available the bytes which were available for it
+     */
+    public InsufficientDiskSpaceException(String message, long required, long available) {
+        super(message, null);
+        this.required = required;
+        this.available = available;
+    }
+
+    public long getRequired() {
+        return required;
+    }
+
+    public long getAvailable() {
+        return available;
+    }
+}
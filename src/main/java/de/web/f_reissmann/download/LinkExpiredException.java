@@ -0,0 +1,22 @@
+package de.web.f_reissmann.download;
+
+import java.io.IOException;
+
+/**
+ * Thrown if the server refuses a download-url with "403 Forbidden" or "410 Gone", since the url expired.
+ * The download can be resumed using a freshly resolved url.
+ *
+ * @author Fabian Reißmann
+ * @since 29.03.2017
+ */
+public class LinkExpiredException extends IOException {
+
+    /**
+     * Ctor.
+     *
+     * @param message the detail message, including the status
+     */
+    public LinkExpiredException(String message) {
+        super(message);
+    }
+}
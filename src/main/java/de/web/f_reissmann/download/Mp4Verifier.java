@@ -0,0 +1,104 @@
+package de.web.f_reissmann.download;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Utility-Class checking the structure of a downloaded MP4-file.
+ * <p>
+ * Only the headers of the top-level boxes are read, so the check costs a few small reads instead of a second pass
+ * over the file. A file is accepted if its first box is "ftyp", it contains a "moov" and a "mdat" box, and the sizes
+ * of all boxes add up to exactly the length of the file. A truncated download fails the last check, since the box
+ * it ends in claims more bytes than the file has.
+ *
+ * @author Fabian Reißmann
+ * @since 27.03.2017
+ */
+final class Mp4Verifier {
+
+    private static final int HEADER_SIZE = 8;
+    private static final int LARGE_HEADER_SIZE = 16;
+
+    /**
+     * A box of size 1 stores its real size as 64 bit value after the type.
+     */
+    private static final long LARGE_SIZE = 1L;
+
+    /**
+     * A box of size 0 extends to the end of the file.
+     */
+    private static final long TO_END_OF_FILE = 0L;
+
+    private Mp4Verifier() {
+        throw new UnsupportedOperationException("Utility-Class should not be instantiated.");
+    }
+
+    /**
+     * Walks the top-level boxes of the given file.
+     *
+     * @param file the file to check
+     * @throws IOException if the file could not be read, or it is not a complete MP4-file
+     */
+    static void verify(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long length = channel.size();
+            ByteBuffer header = ByteBuffer.allocate(LARGE_HEADER_SIZE);
+            Set<String> types = new HashSet<>();
+
+            long position = 0;
+            while (position < length) {
+                if (length - position < HEADER_SIZE) {
+                    throw new IOException("Trailing " + (length - position) + " bytes after the last box at "
+                            + position + ": " + file);
+                }
+
+                header.clear().limit((int) Math.min(LARGE_HEADER_SIZE, length - position));
+                while (header.hasRemaining()) {
+                    if (channel.read(header, position + header.position()) == -1) {
+                        throw new IOException("Unexpected end of file at " + position + ": " + file);
+                    }
+                }
+                header.flip();
+
+                long size = header.getInt() & 0xFFFFFFFFL;
+                String type = readType(header);
+                if (position == 0 && !"ftyp".equals(type)) {
+                    throw new IOException("Not an MP4-file, the first box is '" + type + "': " + file);
+                }
+
+                if (size == LARGE_SIZE) {
+                    if (header.remaining() < Long.BYTES) {
+                        throw new IOException("Truncated header of box '" + type + "' at " + position + ": " + file);
+                    }
+                    size = header.getLong();
+                } else if (size == TO_END_OF_FILE) {
+                    size = length - position;
+                }
+
+                if (size < HEADER_SIZE || size > length - position) {
+                    throw new IOException("Box '" + type + "' at " + position + " claims " + size + " bytes, but "
+                            + (length - position) + " are left: " + file);
+                }
+
+                types.add(type);
+                position += size;
+            }
+
+            if (!types.contains("moov") || !types.contains("mdat")) {
+                throw new IOException("Missing 'moov' or 'mdat' box, found only " + types + ": " + file);
+            }
+        }
+    }
+
+    private static String readType(ByteBuffer header) {
+        byte[] type = new byte[4];
+        header.get(type);
+        return new String(type, StandardCharsets.ISO_8859_1);
+    }
+}
@@ -0,0 +1,161 @@
+package de.web.f_reissmann.download;
+
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * The incomplete state of a download.
+ * <p>
+ * The bytes are written to "&lt;target&gt;.part". The progress of every {@link Segment} is stored next to it in a
+ * small sidecar "&lt;target&gt;.part.progress". Only after all bytes were written the ".part"-file is renamed to the
+ * target. So an existing target is always complete, and an interrupted download can be resumed from the sidecar.
+ *
+ * @author Fabian Reißmann
+ * @since 02.03.2017
+ */
+class PartFile {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PartFile.class);
+
+    private static final String PART_SUFFIX = ".part";
+    private static final String PROGRESS_SUFFIX = ".progress";
+
+    private static final String KEY_LENGTH = "length";
+    private static final String KEY_VALIDATOR = "validator";
+    private static final String KEY_SEGMENTS = "segments";
+    private static final String KEY_SEGMENT_PREFIX = "segment.";
+
+    private final File target;
+    private final File part;
+    private final File progress;
+
+    /**
+     * Ctor.
+     *
+     * @param target the file which is created once the download is complete
+     */
+    PartFile(File target) {
+        this.target = target;
+        this.part = new File(target.getPath() + PART_SUFFIX);
+        this.progress = new File(part.getPath() + PROGRESS_SUFFIX);
+    }
+
+    File getTarget() {
+        return target;
+    }
+
+    File getPart() {
+        return part;
+    }
+
+    /**
+     * Loads the segments of a previous, interrupted download.
+     *
+     * @param expectedLength    the length of the file which is going to be downloaded now
+     * @param expectedValidator the "ETag" or "Last-Modified"-date of the file, empty if the server sent neither
+     * @return the stored segments, or an empty list if there is nothing to resume or the stored progress belongs
+     * to a file of another length or validator
+     */
+    List<Segment> loadSegments(long expectedLength, String expectedValidator) {
+        if (!part.isFile() || !progress.isFile()) {
+            return Collections.emptyList();
+        }
+
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(progress.toPath())) {
+            properties.load(in);
+
+            if (Long.parseLong(properties.getProperty(KEY_LENGTH)) != expectedLength) {
+                LOGGER.info("Length of '{}' changed, not resuming", target.getName());
+                return Collections.emptyList();
+            }
+            // Progress stored without validator is resumed, as well as a download from a server sending none
+            String validator = properties.getProperty(KEY_VALIDATOR, "");
+            if (!validator.isEmpty() && !expectedValidator.isEmpty() && !validator.equals(expectedValidator)) {
+                LOGGER.info("File behind '{}' changed, not resuming", target.getName());
+                return Collections.emptyList();
+            }
+
+            int count = Integer.parseInt(properties.getProperty(KEY_SEGMENTS));
+            List<Segment> segments = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                segments.add(Segment.parse(properties.getProperty(KEY_SEGMENT_PREFIX + i)));
+            }
+            return segments;
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Unable to read progress of '{}', not resuming", target.getName(), e);
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Stores the progress of the given segments.
+     * The sidecar is forced to the disk and replaced atomically, so a crash while saving leaves the previous progress
+     * intact.
+     *
+     * @param length    the total length of the downloaded file
+     * @param validator the "ETag" or "Last-Modified"-date of the downloaded file, empty for none
+     * @param segments  the segments to store
+     * @throws IOException if the progress could not be written
+     */
+    synchronized void saveSegments(long length, String validator, List<Segment> segments) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty(KEY_LENGTH, String.valueOf(length));
+        properties.setProperty(KEY_VALIDATOR, validator);
+        properties.setProperty(KEY_SEGMENTS, String.valueOf(segments.size()));
+        for (int i = 0; i < segments.size(); i++) {
+            properties.setProperty(KEY_SEGMENT_PREFIX + i, segments.get(i).toString());
+        }
+
+        File temp = new File(progress.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            properties.store(out, "Download progress of " + target.getName());
+            // Otherwise a crash after the move may leave an empty sidecar behind
+            out.getChannel().force(true);
+        }
+        move(temp.toPath(), progress.toPath());
+    }
+
+    /**
+     * Removes the ".part"-file and its progress.
+     *
+     * @throws IOException if the files could not be removed
+     */
+    void discard() throws IOException {
+        Files.deleteIfExists(part.toPath());
+        Files.deleteIfExists(progress.toPath());
+    }
+
+    /**
+     * Renames the ".part"-file to the target and removes the progress.
+     *
+     * @throws IOException if the rename failed
+     */
+    void complete() throws IOException {
+        FileUtils.forceMkdirParent(target);
+        move(part.toPath(), target.toPath());
+        Files.deleteIfExists(progress.toPath());
+    }
+
+    private static void move(Path source, Path destination) throws IOException {
+        try {
+            Files.move(source, destination, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, destination, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package de.web.f_reissmann.download;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One inclusive byte range of a downloaded file, together with the number of bytes which are already written.
+ *
+ * @author Fabian Reißmann
+ * @since 02.03.2017
+ */
+class Segment {
+
+    private final long start;
+    private final long end;
+    private final AtomicLong written;
+
+    /**
+     * Ctor.
+     *
+     * @param start   the first byte of the range
+     * @param end     the last byte of the range (inclusive)
+     * @param written the number of bytes of this range which are already written
+     */
+    Segment(long start, long end, long written) {
+        this.start = start;
+        this.end = end;
+        this.written = new AtomicLong(written);
+    }
+
+    long getStart() {
+        return start;
+    }
+
+    long getEnd() {
+        return end;
+    }
+
+    long getWritten() {
+        return written.get();
+    }
+
+    /**
+     * The position of the next byte to be written.
+     *
+     * @return an absolute position in the file
+     */
+    long getNextPosition() {
+        return start + written.get();
+    }
+
+    long length() {
+        return end - start + 1;
+    }
+
+    long remaining() {
+        return length() - written.get();
+    }
+
+    boolean isComplete() {
+        return remaining() <= 0;
+    }
+
+    void addWritten(long bytes) {
+        written.addAndGet(bytes);
+    }
+
+    /**
+     * The value of the "Range"-header which requests the missing bytes of this segment.
+     *
+     * @return a range like "bytes=100-199"
+     */
+    String toRangeHeader() {
+        return "bytes=" + getNextPosition() + "-" + end;
+    }
+
+    @Override
+    public String toString() {
+        return start + "-" + end + ":" + written.get();
+    }
+
+    /**
+     * Parses the format created by {@link #toString()}.
+     *
+     * @param value the value to parse
+     * @return the parsed {@link Segment}
+     * @throws IllegalArgumentException if the value is not a valid segment
+     */
+    static Segment parse(String value) {
+        try {
+            int dash = value.indexOf('-');
+            int colon = value.indexOf(':');
+
+            return new Segment(Long.parseLong(value.substring(0, dash)),
+                    Long.parseLong(value.substring(dash + 1, colon)),
+                    Long.parseLong(value.substring(colon + 1)));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Not a valid segment: " + value, e);
+        }
+    }
+}
@@ -0,0 +1,597 @@
+package de.web.f_reissmann.download;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import de.web.f_reissmann.config.SaveTvConfig;
+import de.web.f_reissmann.metrics.Metrics;
+import de.web.f_reissmann.resilience.HttpStatusException;
+import de.web.f_reissmann.resilience.PermanentFailureException;
+import org.apache.commons.io.FileUtils;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.nio.client.HttpAsyncClient;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.security.MessageDigest;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Downloads a file using several parallel connections.
+ * <p>
+ * The size of the file is probed first. If the server supports HTTP-Range requests, the file is split into segments
+ * which are fetched concurrently and written directly to their position in the target file. Otherwise the file is
+ * downloaded using one single stream.
+ * <p>
+ * All requests are made using the given {@link HttpClient}, so the connections are pooled together with the ones
+ * of the save.tv-API. The bytes are written by a {@link DownloadSink}, using the buffers of one {@link BufferPool}
+ * and the bandwidth of one {@link BandwidthLimiter}, both shared by all downloads.
+ * <p>
+ * The bytes are written to a {@link PartFile}. If a previous download of the same file was interrupted, only the
+ * missing bytes of every segment are requested again.
+ * <p>
+ * Every download is verified before the ".part"-file becomes the target: every response must have the announced
+ * length, the checksum is calculated by an {@link InlineChecksum} while the bytes are written, and the structure of
+ * the complete file is checked by the {@link Mp4Verifier}.
+ * <p>
+ * If the server refuses the url with "403 Forbidden" or "410 Gone", a {@link LinkExpiredException} is thrown. The bytes
+ * written so far are kept, so the download can be resumed with a new url.
+ * <p>
+ * Before the first byte is written, the missing bytes are reserved by the {@link DiskSpaceGuard}. A download which does
+ * not fit fails with an {@link InsufficientDiskSpaceException} instead of filling the disk halfway.
+ * <p>
+ * The segments are transferred by one of two {@link Engine}s. The blocking engine uses one thread per segment, reading
+ * the response with the {@link HttpClient}. The async engine hands the segments to an {@link AsyncSegmentFetcher},
+ * so a few I/O threads serve all of them. The probe and single streams are always made by the {@link HttpClient}.
+ * <p>
+ * Closing the downloader stops the threads of the engine and closes the {@link HttpAsyncClient}. The
+ * {@link HttpClient} is shared with the save.tv-API and has to be closed by its owner.
+ *
+ * @author Fabian Reißmann
+ * @since 28.02.2017
+ */
+public class SegmentedDownloader implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SegmentedDownloader.class);
+
+    private static final long UNKNOWN_LENGTH = -1L;
+
+    /**
+     * Matches the total length of a "Content-Range"-header, e.g. "bytes 0-0/123456".
+     */
+    private static final Pattern CONTENT_RANGE_TOTAL = Pattern.compile("^bytes \\d+-\\d+/(\\d+)$");
+
+    /**
+     * The {@link HttpClient} used for all requests.
+     */
+    private final HttpClient client;
+
+    /**
+     * The maximum number of connections used for one file.
+     */
+    private final int segments;
+
+    /**
+     * Files are only split into segments which are at least this big.
+     */
+    private final long minSegmentSize;
+
+    /**
+     * The progress of a download is stored, whenever a segment has written this many bytes since the last time.
+     */
+    private final long checkpointInterval;
+
+    private final BufferPool bufferPool;
+    private final DownloadSink.FsyncPolicy fsyncPolicy;
+    private final DownloadSink.Preallocation preallocation;
+
+    /**
+     * Whether the plain SHA-256 of a file downloaded in several segments is calculated by reading it once more.
+     */
+    private final boolean fullChecksum;
+
+    /**
+     * Limits the bandwidth of all downloads together.
+     */
+    private final BandwidthLimiter bandwidthLimiter;
+
+    /**
+     * Admits the downloads which fit into the free space of the destination.
+     */
+    private final DiskSpaceGuard diskSpaceGuard;
+
+    /**
+     * The client of the async engine, or null if the blocking engine is used.
+     */
+    private final CloseableHttpAsyncClient asyncClient;
+
+    /**
+     * Fetches the segments of the async engine, or null if the blocking engine is used.
+     */
+    private final AsyncSegmentFetcher asyncFetcher;
+
+    /**
+     * Fetches the segments of the blocking engine. Shared by all downloads.
+     */
+    private final ExecutorService segmentWorkers = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+            .setNameFormat("segment-%d")
+            .setDaemon(true)
+            .build());
+
+    /**
+     * Ctor for the blocking {@link Engine}.
+     *
+     * @param client the {@link HttpClient} used for all requests
+     * @param config the config including the segment, buffer and disk settings
+     */
+    public SegmentedDownloader(HttpClient client, SaveTvConfig config) {
+        this(client, null, config);
+    }
+
+    /**
+     * Ctor for the async {@link Engine}, if an {@link HttpAsyncClient} is given.
+     *
+     * @param client      the {@link HttpClient} used for the probes and single streams
+     * @param asyncClient the started {@link HttpAsyncClient} used for the segments, closed by {@link #close()}. Null
+     *                    for the blocking engine
+     * @param config      the config including the segment, buffer and disk settings
+     */
+    public SegmentedDownloader(HttpClient client, CloseableHttpAsyncClient asyncClient, SaveTvConfig config) {
+        if (config.getDownloadSegments() < 1) {
+            throw new IllegalArgumentException(
+                    "The number of segments must at least be 1, but was: " + config.getDownloadSegments());
+        }
+
+        this.client = client;
+        this.segments = config.getDownloadSegments();
+        this.minSegmentSize = config.getDownloadSegmentMinSize();
+        this.checkpointInterval = config.getDownloadCheckpointInterval();
+        this.bufferPool = new BufferPool(config.getDownloadBufferCount(), config.getDownloadWriteBlockSize());
+        this.fsyncPolicy = DownloadSink.FsyncPolicy.valueOf(config.getDownloadFsyncPolicy());
+        this.preallocation = DownloadSink.Preallocation.valueOf(config.getDownloadPreallocation());
+        this.fullChecksum = config.shouldCalculateFullChecksum();
+        this.bandwidthLimiter = new BandwidthLimiter(BandwidthSchedule.parse(config.getDownloadBandwidthLimit(),
+                config.getDownloadBandwidthSchedule()), LocalTime::now);
+        this.diskSpaceGuard = new DiskSpaceGuard(config.getDownloadSpaceHeadroom(), File::getUsableSpace);
+        this.asyncClient = asyncClient;
+        this.asyncFetcher = asyncClient == null ? null
+                : new AsyncSegmentFetcher(asyncClient, bufferPool, bandwidthLimiter);
+    }
+
+    /**
+     * Stops the threads fetching the segments and closes the {@link HttpAsyncClient} of the async engine. Must only
+     * be called once no download is running anymore.
+     */
+    @Override
+    public void close() {
+        segmentWorkers.shutdown();
+
+        if (asyncClient != null) {
+            try {
+                asyncClient.close();
+            } catch (IOException e) {
+                LOGGER.warn("Unable to close the client of the async download-engine", e);
+            }
+        }
+    }
+
+    /**
+     * Downloads the file behind the given {@link URI} to the given target.
+     * <p>
+     * The target is only created once the download is complete and verified. If it fails, the bytes written so far
+     * are kept, so that calling this method again for the same target resumes the download. If the verification
+     * fails, they are discarded.
+     *
+     * @param url    the {@link URI} to download
+     * @param target the file to write to. Will be overwritten, if it already exists
+     * @return the {@link VerifiedTransfer} including the checksum of the file
+     * @throws LinkExpiredException           if the url is no longer accepted by the server
+     * @throws InsufficientDiskSpaceException if the missing bytes do not fit on the disk
+     * @throws IOException                    if the download failed or the file is not a complete MP4-file
+     */
+    public VerifiedTransfer download(URI url, File target) throws IOException {
+        PartFile partFile = new PartFile(target);
+        FileUtils.forceMkdirParent(partFile.getPart());
+
+        RangeProbe probe = probeRangeSupport(url);
+        VerifiedTransfer transfer;
+
+        if (probe.length == UNKNOWN_LENGTH) {
+            LOGGER.debug("Downloading using a single stream: '{}'", target.getName());
+            partFile.discard();
+            transfer = downloadSingleStream(url, partFile);
+        } else {
+            transfer = downloadSegments(url, partFile, probe);
+        }
+
+        verify(partFile);
+        partFile.complete();
+        return transfer;
+    }
+
+    /**
+     * A file which does not pass the {@link Mp4Verifier} is discarded, since resuming it would only keep the broken
+     * bytes.
+     */
+    private void verify(PartFile partFile) throws IOException {
+        try {
+            Mp4Verifier.verify(partFile.getPart().toPath());
+        } catch (IOException e) {
+            Metrics.VERIFICATIONS_FAILED.increment();
+            partFile.discard();
+            throw new PermanentFailureException("Verification failed: " + partFile.getTarget().getName(), e);
+        }
+    }
+
+    /**
+     * Asks the server for the first byte only. If it answers with "206 Partial Content" ranges are supported
+     * and the "Content-Range"-header includes the total length. If it answers with "200 OK", it ignored the range.
+     * <p>
+     * Any other answer or a failed request says nothing about the file, so it fails the download instead of
+     * discarding the bytes written so far.
+     *
+     * @return the total length and validator, or {@link #UNKNOWN_LENGTH} if ranges are not supported
+     * @throws LinkExpiredException if the url is no longer accepted
+     * @throws IOException          if the request failed or the server answered with an error
+     */
+    private RangeProbe probeRangeSupport(URI url) throws IOException {
+        HttpGet request = newRequest(url, "bytes=0-0");
+        try {
+            HttpResponse response = client.execute(request);
+            checkLinkExpired(response);
+            int status = response.getStatusLine().getStatusCode();
+
+            if (status == HttpStatus.SC_OK) {
+                // The server sends the whole file, so the connection must not be reused
+                request.abort();
+                return new RangeProbe(UNKNOWN_LENGTH, "");
+            }
+            if (status != HttpStatus.SC_PARTIAL_CONTENT) {
+                throw new HttpStatusException(status, "Unable to probe range support: " + response.getStatusLine());
+            }
+            EntityUtils.consume(response.getEntity());
+
+            Matcher matcher = CONTENT_RANGE_TOTAL.matcher(headerValue(response, HttpHeaders.CONTENT_RANGE));
+            long length = matcher.matches() ? Long.parseLong(matcher.group(1)) : UNKNOWN_LENGTH;
+
+            String validator = headerValue(response, HttpHeaders.ETAG);
+            return new RangeProbe(length, validator.isEmpty()
+                    ? headerValue(response, HttpHeaders.LAST_MODIFIED) : validator);
+        } catch (IOException e) {
+            request.abort();
+            throw e;
+        }
+    }
+
+    private List<Segment> split(long length) {
+        List<Segment> parts = new ArrayList<>();
+
+        long count = Math.max(1, Math.min(segments, length / Math.max(1, minSegmentSize)));
+        long segmentSize = length / count;
+
+        for (int i = 0; i < count; i++) {
+            long start = i * segmentSize;
+            long end = (i == count - 1) ? length - 1 : start + segmentSize - 1;
+            parts.add(new Segment(start, end, 0L));
+        }
+        return parts;
+    }
+
+    private VerifiedTransfer downloadSingleStream(URI url, PartFile partFile) throws IOException {
+        HttpGet request = newRequest(url, null);
+        try {
+            HttpResponse response = client.execute(request);
+            checkLinkExpired(response);
+            int status = response.getStatusLine().getStatusCode();
+
+            if (status != HttpStatus.SC_OK) {
+                throw new HttpStatusException(status, "Unexpected status: " + response.getStatusLine());
+            }
+
+            long announced = announcedLength(response);
+            Segment whole = new Segment(0L, Long.MAX_VALUE - 1, 0L);
+            InlineChecksum checksum = new InlineChecksum(Collections.singletonList(whole));
+
+            // Without a length only the headroom is checked
+            try (DiskSpaceGuard.Reservation reservation = diskSpaceGuard.reserve(partFile.getPart(),
+                    Math.max(0L, announced));
+                 InputStream in = contentOf(response);
+                 DownloadSink sink = openSink(partFile)) {
+                sink.transfer(in, whole, checksum.digestOf(whole), reservation::written);
+
+                if (announced != UNKNOWN_LENGTH && whole.getWritten() != announced) {
+                    throw new IOException("Received " + whole.getWritten() + " of " + announced + " bytes");
+                }
+                sink.beforeComplete();
+            }
+            return new VerifiedTransfer(whole.getWritten(), checksum.value());
+        } catch (IOException e) {
+            request.abort();
+            throw e;
+        }
+    }
+
+    private VerifiedTransfer downloadSegments(URI url, PartFile partFile, RangeProbe probe) throws IOException {
+        long length = probe.length;
+        List<Segment> parts = partFile.loadSegments(length, probe.validator);
+        InlineChecksum checksum = parts.isEmpty() ? null : resumeChecksum(partFile, parts);
+
+        if (checksum == null) {
+            partFile.discard();
+            parts = split(length);
+            checksum = new InlineChecksum(parts);
+        } else {
+            long missing = parts.stream().mapToLong(Segment::remaining).sum();
+            LOGGER.info("Resuming '{}', {} of {} bytes missing", partFile.getTarget().getName(), missing, length);
+            Metrics.retries("download").increment();
+        }
+        LOGGER.debug("Downloading {} bytes in {} segments: '{}'", length, parts.size(), partFile.getTarget().getName());
+
+        try (DiskSpaceGuard.Reservation reservation = diskSpaceGuard.reserve(partFile.getPart(),
+                missingBytes(partFile, parts, length));
+             DownloadSink sink = openSink(partFile)) {
+            sink.preallocate(length, preallocation);
+            if (preallocation == DownloadSink.Preallocation.FULL) {
+                reservation.allocated();
+            }
+            Checkpoint checkpoint = new Checkpoint(partFile, sink, probe, parts, reservation);
+
+            List<CompletableFuture<Void>> fetches = new ArrayList<>();
+            for (Segment part : parts) {
+                if (!part.isComplete()) {
+                    fetches.add(fetchSegment(url, sink, part, checksum.digestOf(part), checkpoint));
+                }
+            }
+
+            try {
+                CompletableFuture.allOf(fetches.toArray(new CompletableFuture<?>[0])).join();
+            } catch (CompletionException e) {
+                checkpoint.save();
+                if (e.getCause() instanceof LinkExpiredException) {
+                    throw (LinkExpiredException) e.getCause();
+                }
+                throw new IOException("Unable to download all segments of: " + url, e.getCause());
+            }
+            sink.beforeComplete();
+            return new VerifiedTransfer(checkpoint.transferred.get(), checksumOf(checksum, partFile));
+        }
+    }
+
+    /**
+     * @return the checksum calculated while writing, or the plain SHA-256 read from the file if it is configured
+     */
+    private String checksumOf(InlineChecksum checksum, PartFile partFile) throws IOException {
+        if (fullChecksum && !checksum.isPlain()) {
+            return InlineChecksum.sha256Of(partFile.getPart().toPath());
+        }
+        return checksum.value();
+    }
+
+    /**
+     * @return the bytes which the download is still going to allocate on the disk
+     */
+    private long missingBytes(PartFile partFile, List<Segment> parts, long length) {
+        if (preallocation == DownloadSink.Preallocation.FULL && partFile.getPart().length() >= length) {
+            // All blocks were allocated by the interrupted download already
+            return 0L;
+        }
+        return parts.stream().mapToLong(Segment::remaining).sum();
+    }
+
+    /**
+     * @return the checksum restored from the bytes already written, or null if they could not be read
+     */
+    private static InlineChecksum resumeChecksum(PartFile partFile, List<Segment> parts) {
+        try {
+            return InlineChecksum.resume(parts, partFile.getPart().toPath());
+        } catch (IOException e) {
+            LOGGER.warn("Unable to restore the checksum of '{}', not resuming", partFile.getTarget().getName(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Starts fetching the missing bytes of the segment, using the configured {@link Engine}.
+     *
+     * @return completed once the segment is complete, or exceptionally with the cause of the failure
+     */
+    private CompletableFuture<Void> fetchSegment(URI url, DownloadSink sink, Segment part, MessageDigest digest,
+                                                 Checkpoint checkpoint) {
+        if (asyncFetcher == null) {
+            return CompletableFuture.runAsync(() -> transferSegment(url, sink, part, digest, checkpoint),
+                    segmentWorkers);
+        }
+
+        try {
+            return asyncFetcher.fetch(newRequest(url, part.toRangeHeader()), part, sink, digest, checkpoint::written);
+        } catch (IOException e) {
+            CompletableFuture<Void> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+    }
+
+    private void transferSegment(URI url, DownloadSink sink, Segment part, MessageDigest digest,
+                                 Checkpoint checkpoint) {
+        HttpGet request = newRequest(url, part.toRangeHeader());
+        try {
+            HttpResponse response = client.execute(request);
+            checkSegmentResponse(response, part);
+
+            try (InputStream in = contentOf(response)) {
+                sink.transfer(in, part, digest, checkpoint::written);
+            }
+
+            if (!part.isComplete()) {
+                throw new IOException("Segment is incomplete: " + part);
+            }
+        } catch (IOException e) {
+            request.abort();
+            throw new CompletionException(e);
+        }
+    }
+
+    /**
+     * Checks that the response of a range request delivers exactly the missing bytes of the segment.
+     *
+     * @param response the response of the range request
+     * @param part     the requested segment
+     * @throws LinkExpiredException if the url is no longer accepted
+     * @throws IOException          if the server ignored the range or announced another length
+     */
+    static void checkSegmentResponse(HttpResponse response, Segment part) throws IOException {
+        checkLinkExpired(response);
+
+        if (response.getStatusLine().getStatusCode() != HttpStatus.SC_PARTIAL_CONTENT) {
+            throw new HttpStatusException(response.getStatusLine().getStatusCode(),
+                    "Server ignored the range request. Status: " + response.getStatusLine());
+        }
+
+        long announced = announcedLength(response);
+        if (announced != UNKNOWN_LENGTH && announced != part.remaining()) {
+            throw new IOException("Server announced " + announced + " bytes for: " + part.toRangeHeader());
+        }
+    }
+
+    /**
+     * The caller has to abort the request, if the exception is thrown.
+     */
+    private static void checkLinkExpired(HttpResponse response) throws LinkExpiredException {
+        int status = response.getStatusLine().getStatusCode();
+
+        if (status == HttpStatus.SC_FORBIDDEN || status == HttpStatus.SC_GONE) {
+            throw new LinkExpiredException("The download-url was refused. Status: " + response.getStatusLine());
+        }
+    }
+
+    private DownloadSink openSink(PartFile partFile) throws IOException {
+        return new DownloadSink(partFile.getPart().toPath(), bufferPool, fsyncPolicy, bandwidthLimiter);
+    }
+
+    private static HttpGet newRequest(URI url, String range) {
+        HttpGet request = new HttpGet(url);
+        if (range != null) {
+            request.setHeader(HttpHeaders.RANGE, range);
+        }
+        return request;
+    }
+
+    private static InputStream contentOf(HttpResponse response) throws IOException {
+        HttpEntity entity = response.getEntity();
+        if (entity == null) {
+            throw new IOException("The response did not include an entity");
+        }
+        return entity.getContent();
+    }
+
+    /**
+     * @return the value of the "Content-Length"-header, or {@link #UNKNOWN_LENGTH} if there is none
+     */
+    private static long announcedLength(HttpResponse response) {
+        HttpEntity entity = response.getEntity();
+        return entity == null || entity.getContentLength() < 0 ? UNKNOWN_LENGTH : entity.getContentLength();
+    }
+
+    private static String headerValue(HttpResponse response, String name) {
+        return response.containsHeader(name) ? response.getFirstHeader(name).getValue().trim() : "";
+    }
+
+    /**
+     * Stores the progress of all segments of one download, whenever {@link #checkpointInterval} bytes were written
+     * since the last time.
+     */
+    private class Checkpoint {
+
+        private final PartFile partFile;
+        private final DownloadSink sink;
+        private final RangeProbe probe;
+        private final List<Segment> parts;
+        private final DiskSpaceGuard.Reservation reservation;
+        private final AtomicLong sinceLastSave = new AtomicLong();
+        private final AtomicLong transferred = new AtomicLong();
+
+        private Checkpoint(PartFile partFile, DownloadSink sink, RangeProbe probe, List<Segment> parts,
+                           DiskSpaceGuard.Reservation reservation) {
+            this.partFile = partFile;
+            this.sink = sink;
+            this.probe = probe;
+            this.parts = parts;
+            this.reservation = reservation;
+        }
+
+        private void written(long bytes) {
+            transferred.addAndGet(bytes);
+            reservation.written(bytes);
+            if (sinceLastSave.addAndGet(bytes) >= checkpointInterval) {
+                sinceLastSave.set(0L);
+                save();
+            }
+        }
+
+        /**
+         * Depending on the {@link DownloadSink.FsyncPolicy}, the written bytes are forced to the disk before the
+         * progress is stored. Therefore the progress is captured before, so it never claims bytes which were not
+         * forced.
+         */
+        private void save() {
+            List<Segment> snapshot = new ArrayList<>(parts.size());
+            for (Segment part : parts) {
+                snapshot.add(new Segment(part.getStart(), part.getEnd(), part.getWritten()));
+            }
+
+            try {
+                sink.beforeCheckpoint();
+                partFile.saveSegments(probe.length, probe.validator, snapshot);
+            } catch (IOException e) {
+                LOGGER.warn("Unable to store progress of '{}'", partFile.getTarget().getName(), e);
+            }
+        }
+    }
+
+    /**
+     * What the server told about the file while probing its range support.
+     */
+    private static class RangeProbe {
+
+        private final long length;
+
+        /**
+         * The "ETag", or the "Last-Modified"-date if there is none. Empty if the server sent neither.
+         */
+        private final String validator;
+
+        private RangeProbe(long length, String validator) {
+            this.length = length;
+            this.validator = validator;
+        }
+    }
+
+    /**
+     * Defines how the segments are transferred.
+     */
+    public enum Engine {
+        // One thread per segment, which blocks while reading its response
+        BLOCKING,
+        // A few non-blocking I/O threads, which transfer all segments of all downloads
+        ASYNC
+    }
+}
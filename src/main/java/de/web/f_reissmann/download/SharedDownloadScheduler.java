@@ -0,0 +1,301 @@
+package de.web.f_reissmann.download;
+
+import de.web.f_reissmann.recording.Recording;
+import de.web.f_reissmann.recording.RecordingUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Runs the downloads of several save.tv-accounts using one {@link DownloadExecutor}, so all accounts share the same
+ * number of workers. If they also share one {@link SegmentedDownloader}, they share its bandwidth and disk space, too.
+ * <p>
+ * Every account is {@link #register registered} with its own download action and {@link DeadlineScheduler}. Which
+ * account gets the next free worker is decided by the {@link Arbitration}:
+ * <ul>
+ * <li>FAIR_SHARE: the workers are shared in proportion to the weights of the accounts. Every waiting recording is
+ * tagged with the share its account would use once it runs: (running downloads + rank in the account + 1) / weight.
+ * The lowest tag comes first, so the accounts take turns, and an account which uses less than its share catches up.
+ * Within an account, the recordings keep the order of its {@link DeadlineScheduler}.</li>
+ * <li>DEADLINE: the recordings of all accounts are ordered by their deadlines, as if they belonged to one account.
+ * Recordings at risk come last, as judged by the {@link DeadlineScheduler} of their account.</li>
+ * </ul>
+ * The order is computed whenever the waiting recordings are {@link Account#replan() replanned}, e.g. after every
+ * finished download. Until then, new recordings are queued behind the planned ones.
+ * <p>
+ * Two accounts may list the same telecast. So the recordings are assigned to their account by identity, which is
+ * kept by the {@link DownloadExecutor} from the submission until the download is done.
+ *
+ * @author Fabian Reißmann
+ * @since 30.03.2017
+ */
+public class SharedDownloadScheduler implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SharedDownloadScheduler.class);
+
+    private static final double UNPLANNED = Double.POSITIVE_INFINITY;
+
+    private final Arbitration arbitration;
+    private final DownloadExecutor executor;
+    private final List<Account> accounts = new CopyOnWriteArrayList<>();
+
+    /**
+     * The submitted recordings which are not done yet.
+     */
+    private final Map<Recording, Waiting> submitted = Collections.synchronizedMap(new IdentityHashMap<>());
+
+    /**
+     * Ctor.
+     *
+     * @param arbitration  decides which account gets the next free worker
+     * @param parallelism  the number of downloads which are running at once, for all accounts together
+     * @param lookahead    the number of waiting recordings which are announced, 0 to announce none
+     * @param deferDelay   how long a download which did not fit on the disk waits, before it is queued again
+     * @param maxDeferrals how often one download is deferred, before it fails. 0 to fail right away
+     */
+    public SharedDownloadScheduler(Arbitration arbitration, int parallelism, int lookahead, Duration deferDelay,
+                                   int maxDeferrals) {
+        this.arbitration = arbitration;
+        this.executor = new DownloadExecutor(parallelism, this::download, this::compare, lookahead, this::announce,
+                deferDelay, maxDeferrals);
+    }
+
+    /**
+     * Registers an account.
+     *
+     * @param name           the name of the account, used for logging
+     * @param weight         the share of the workers, relative to the other accounts. Only used by FAIR_SHARE
+     * @param downloadAction the action which downloads a single {@link Recording} of the account
+     * @param onUpcoming     receives the next waiting recordings of the account, e.g. to prefetch their urls
+     * @param scheduler      orders the recordings of the account and tells which of them are at risk
+     * @return the {@link Account}, which takes the downloads of the account
+     */
+    public Account register(String name, int weight, Function<Recording, DownloadResult> downloadAction,
+                            Consumer<List<Recording>> onUpcoming, DeadlineScheduler scheduler) {
+        if (weight < 1) {
+            throw new IllegalArgumentException("The weight of account '" + name + "' must at least be 1, but was: "
+                    + weight);
+        }
+
+        Account account = new Account(name, weight, downloadAction, onUpcoming, scheduler);
+        accounts.add(account);
+        return account;
+    }
+
+    private DownloadResult download(Recording recording) {
+        Account account = ownerOf(recording);
+
+        int running = account.running.incrementAndGet();
+        LOGGER.debug("Starting '{}' of account '{}', {} of its downloads running", recording.getTitle(),
+                account.name, running);
+        try {
+            return account.downloadAction.apply(recording);
+        } finally {
+            account.running.decrementAndGet();
+        }
+    }
+
+    /**
+     * Equal recordings are handed out in the order of their submission by the {@link DownloadExecutor}.
+     */
+    private int compare(Recording first, Recording second) {
+        switch (arbitration) {
+            case FAIR_SHARE:
+                return Double.compare(waitingOf(first).tag, waitingOf(second).tag);
+            case DEADLINE:
+                int byRisk = Boolean.compare(ownerOf(first).scheduler.isAtRisk(first),
+                        ownerOf(second).scheduler.isAtRisk(second));
+
+                return byRisk != 0 ? byRisk : RecordingUtil.byDaysLeft().compare(first, second);
+            default:
+                throw new IllegalStateException("Should not be happen, since we are using enum here");
+        }
+    }
+
+    /**
+     * Hands the upcoming recordings to their accounts, keeping their order.
+     */
+    private void announce(List<Recording> upcoming) {
+        for (Map.Entry<Account, List<Recording>> byAccount : groupByAccount(upcoming).entrySet()) {
+            if (!byAccount.getValue().isEmpty()) {
+                byAccount.getKey().onUpcoming.accept(byAccount.getValue());
+            }
+        }
+    }
+
+    /**
+     * Replans the waiting recordings of every account by its {@link DeadlineScheduler}, then tags them by their rank.
+     */
+    private void replan(Collection<Recording> waiting) {
+        for (Map.Entry<Account, List<Recording>> byAccount : groupByAccount(waiting).entrySet()) {
+            Account account = byAccount.getKey();
+            List<Recording> recordings = byAccount.getValue();
+
+            account.scheduler.replan(recordings);
+            recordings.sort(account.scheduler);
+
+            int running = account.running.get();
+            for (int rank = 0; rank < recordings.size(); rank++) {
+                waitingOf(recordings.get(rank)).tag = (running + rank + 1) / (double) account.weight;
+            }
+        }
+    }
+
+    private Map<Account, List<Recording>> groupByAccount(Collection<Recording> recordings) {
+        Map<Account, List<Recording>> byAccount = new LinkedHashMap<>();
+        for (Account account : accounts) {
+            byAccount.put(account, new ArrayList<>());
+        }
+        for (Recording recording : recordings) {
+            byAccount.get(ownerOf(recording)).add(recording);
+        }
+        return byAccount;
+    }
+
+    private Account ownerOf(Recording recording) {
+        return waitingOf(recording).account;
+    }
+
+    private Waiting waitingOf(Recording recording) {
+        Waiting waiting = submitted.get(recording);
+        if (waiting == null) {
+            throw new IllegalStateException("Recording was not submitted by an account: '" + recording.getTitle()
+                    + "' (" + recording.getTelecastId() + ")");
+        }
+        return waiting;
+    }
+
+    /**
+     * Stops the workers. Running downloads are finished, but no new ones are accepted anymore.
+     */
+    @Override
+    public void close() {
+        executor.close();
+    }
+
+    /**
+     * Decides which account gets the next free worker.
+     */
+    public enum Arbitration {
+        // The accounts share the workers in proportion to their weights
+        FAIR_SHARE,
+        // The earliest deadline of all accounts comes first
+        DEADLINE
+    }
+
+    /**
+     * A submitted recording together with its account.
+     */
+    private static class Waiting {
+
+        private final Account account;
+
+        /**
+         * The share of its account once it runs, see FAIR_SHARE. Lower tags come first.
+         */
+        private volatile double tag = UNPLANNED;
+
+        private Waiting(Account account) {
+            this.account = account;
+        }
+    }
+
+    /**
+     * One registered account, which takes its downloads.
+     */
+    public class Account {
+
+        private final String name;
+        private final int weight;
+        private final Function<Recording, DownloadResult> downloadAction;
+        private final Consumer<List<Recording>> onUpcoming;
+        private final DeadlineScheduler scheduler;
+        private final AtomicInteger running = new AtomicInteger();
+
+        /**
+         * The downloads of this account which are not done yet, see {@link DownloadExecutor#awaitCompletion()}.
+         */
+        private final Set<CompletableFuture<DownloadResult>> unfinished = ConcurrentHashMap.newKeySet();
+
+        /**
+         * The number of downloads of this account which finished successfully so far.
+         */
+        private final AtomicInteger succeeded = new AtomicInteger();
+
+        private Account(String name, int weight, Function<Recording, DownloadResult> downloadAction,
+                        Consumer<List<Recording>> onUpcoming, DeadlineScheduler scheduler) {
+            this.name = name;
+            this.weight = weight;
+            this.downloadAction = downloadAction;
+            this.onUpcoming = onUpcoming;
+            this.scheduler = scheduler;
+        }
+
+        /**
+         * Queues the download of the given {@link Recording} of this account.
+         *
+         * @param recording the {@link Recording} to download
+         * @param onSuccess called by the worker, but only if the download finished successfully
+         * @return a future which completes with the result once the recording was downloaded and
+         * <code>onSuccess</code> was executed, or exceptionally if either of them failed
+         */
+        public CompletableFuture<DownloadResult> submit(Recording recording, Consumer<DownloadResult> onSuccess) {
+            submitted.put(recording, new Waiting(this));
+
+            CompletableFuture<DownloadResult> job = executor.submit(recording, onSuccess);
+            CompletableFuture<DownloadResult> counted = job.whenComplete((downloaded, failure) -> {
+                submitted.remove(recording);
+                if (failure == null) {
+                    succeeded.incrementAndGet();
+                }
+            });
+            unfinished.add(counted);
+            counted.whenComplete((downloaded, failure) -> unfinished.remove(counted));
+
+            return job;
+        }
+
+        /**
+         * Replans the waiting recordings of all accounts, e.g. because the estimates of this account changed.
+         */
+        public void replan() {
+            executor.reorder(SharedDownloadScheduler.this::replan);
+        }
+
+        /**
+         * Blocks until every download of this account submitted so far is done, regardless whether it succeeded or
+         * failed.
+         *
+         * @return the number of downloads of this account which finished successfully, since it was registered
+         */
+        public int awaitCompletion() {
+            for (CompletableFuture<DownloadResult> job : new ArrayList<>(unfinished)) {
+                try {
+                    job.join();
+                } catch (RuntimeException e) {
+                    // Already logged when the job failed
+                }
+            }
+            return succeeded.get();
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package de.web.f_reissmann.download;
+
+import de.web.f_reissmann.recording.format.RecordingFormat;
+import de.web.f_reissmann.recording.format.RecordingFormat.Quality;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Estimates how long the download of a {@link RecordingFormat} takes, based on the finished downloads.
+ * <p>
+ * The size is estimated as the mean size of the downloaded files of the same {@link Quality}. Until the first file of
+ * a {@link Quality} was downloaded, a rough default is used. The throughput of one download is the exponentially
+ * weighted moving average of the finished downloads, starting with the configured estimate.
+ *
+ * @author Fabian Reißmann
+ * @since 20.03.2017
+ */
+public class TransferEstimator {
+
+    private static final long MB = 1024L * 1024L;
+
+    /**
+     * The weight of the latest download in the moving average of the throughput.
+     */
+    private static final double THROUGHPUT_WEIGHT = 0.3;
+
+    /**
+     * Downloads which transferred less than this are ignored for the throughput, their timing is dominated by the
+     * requests and not by the transfer.
+     */
+    private static final long MIN_TRANSFER_FOR_THROUGHPUT = 4 * MB;
+
+    private static final Map<Quality, Long> DEFAULT_SIZES = new EnumMap<>(Quality.class);
+
+    static {
+        DEFAULT_SIZES.put(Quality.MOBILE, 300 * MB);
+        DEFAULT_SIZES.put(Quality.SD, 1024 * MB);
+        DEFAULT_SIZES.put(Quality.HD, 3072 * MB);
+    }
+
+    private final Map<Quality, long[]> observedSizes = new EnumMap<>(Quality.class);
+    private double bytesPerSecond;
+
+    /**
+     * Ctor.
+     *
+     * @param initialThroughput the throughput of one download until the first download finished, e.g. "2M" for
+     *                          2 MiB per second
+     */
+    public TransferEstimator(String initialThroughput) {
+        this.bytesPerSecond = BandwidthSchedule.parseRate(initialThroughput);
+
+        if (bytesPerSecond <= 0) {
+            throw new IllegalArgumentException("The estimated throughput must be positive: " + initialThroughput);
+        }
+    }
+
+    /**
+     * Learns from a finished download.
+     *
+     * @param downloaded the result of the download
+     */
+    public synchronized void record(DownloadResult downloaded) {
+        long[] sizes = observedSizes.computeIfAbsent(qualityOf(downloaded.getFormat()), quality -> new long[2]);
+        sizes[0] += downloaded.getSize();
+        sizes[1]++;
+
+        double seconds = downloaded.getElapsed().toMillis() / 1000.0;
+        if (downloaded.getTransferred() >= MIN_TRANSFER_FOR_THROUGHPUT && seconds > 0) {
+            double measured = downloaded.getTransferred() / seconds;
+            bytesPerSecond = THROUGHPUT_WEIGHT * measured + (1 - THROUGHPUT_WEIGHT) * bytesPerSecond;
+        }
+    }
+
+    /**
+     * @param format the format which will be downloaded
+     * @return the estimated size in bytes
+     */
+    public synchronized long estimateSize(RecordingFormat format) {
+        Quality quality = qualityOf(format);
+        long[] sizes = observedSizes.get(quality);
+
+        return sizes == null ? DEFAULT_SIZES.get(quality) : sizes[0] / sizes[1];
+    }
+
+    /**
+     * @param format the format which will be downloaded
+     * @return the estimated time one download of that format takes
+     */
+    public synchronized Duration estimateDuration(RecordingFormat format) {
+        return Duration.ofMillis((long) (estimateSize(format) * 1000 / bytesPerSecond));
+    }
+
+    private static Quality qualityOf(RecordingFormat format) {
+        return Quality.valueOf(format.getQualityName());
+    }
+}
@@ -0,0 +1,34 @@
+package de.web.f_reissmann.download;
+
+/**
+ * Pojo. Describes one file which was downloaded and verified by the {@link SegmentedDownloader}.
+ * <p>
+ * Instances of this class are <code>strictly immutable</code>.
+ *
+ * @author Fabian Reißmann
+ * @since 27.03.2017
+ */
+public class VerifiedTransfer {
+
+    private final long transferred;
+    private final String checksum;
+
+    /**
+     * Ctor.
+     *
+     * @param transferred the number of bytes which were actually downloaded, less than the file if it was resumed
+     * @param checksum    the checksum of the complete file, calculated while it was written
+     */
+    public VerifiedTransfer(long transferred, String checksum) {
+        this.transferred = transferred;
+        this.checksum = checksum;
+    }
+
+    public long getTransferred() {
+        return transferred;
+    }
+
+    public String getChecksum() {
+        return checksum;
+    }
+}
@@ -0,0 +1,57 @@
+package de.web.f_reissmann.file;
+
+import de.web.f_reissmann.recording.Recording;
+import de.web.f_reissmann.recording.format.RecordingFormat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+
+/**
+ * Assigns every downloaded recording its own file in the download destination, so no download overwrites another one.
+ * <p>
+ * If the {@link FilenameTemplate} includes the telecast-id, every name is unique by itself. Otherwise every name gets
+ * the telecast-id as suffix. The name therefore only depends on the recording, so the same recording always ends up
+ * with the same name and the same ".part"-file, no matter in which order the recordings are downloaded or which files
+ * already exist.
+ *
+ * @author Fabian Reißmann
+ * @since 30.03.2017
+ */
+public class DownloadFilenames {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DownloadFilenames.class);
+
+    private static final String EXTENSION = ".mp4";
+
+    private final File destination;
+    private final FilenameTemplate template;
+
+    /**
+     * Ctor.
+     *
+     * @param destination the folder the recordings are downloaded to
+     * @param template    creates the names of the files
+     */
+    public DownloadFilenames(File destination, FilenameTemplate template) {
+        this.destination = destination;
+        this.template = template;
+
+        if (!template.containsTelecastId()) {
+            LOGGER.info("The filename-template '{}' does not include the telecast-id, adding it as suffix", template);
+        }
+    }
+
+    /**
+     * Returns the file the given recording is downloaded to.
+     *
+     * @param recording the {@link Recording} to download
+     * @param format    the downloaded {@link RecordingFormat}
+     * @return the file, which is not used by any other recording
+     */
+    public File fileOf(Recording recording, RecordingFormat format) {
+        String suffix = template.containsTelecastId() ? "" : "-" + recording.getTelecastId();
+
+        return new File(destination, template.render(recording, format, suffix) + EXTENSION);
+    }
+}
@@ -0,0 +1,301 @@
+package de.web.f_reissmann.file;
+
+import de.web.f_reissmann.recording.Recording;
+import de.web.f_reissmann.recording.format.RecordingFormat;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Creates the names of the downloaded files from a template like "{title}/{title}-S{episode}-{quality}-{telecastId}".
+ * <p>
+ * The template is compiled once into its folders and their parts. Every part is a field of the {@link Recording} or
+ * its {@link RecordingFormat}, together with the text in front of it. If a field is empty, the text in front of it is
+ * left out as well, so "-{episode}" adds nothing for a recording without episode. A "/" starts a subfolder.
+ * <p>
+ * The fields are sanitized while they are appended, according to the {@link FilesystemProfile}. A name which is too
+ * long for the filesystem is shortened by cutting the longest text field (title, sub-title or episode), so the
+ * telecast-id at the end stays intact. Room is left for the ".mp4"-extension and the suffixes of the ".part"-files.
+ * <p>
+ * Instances of this class are <code>strictly immutable</code>.
+ *
+ * @author Fabian Reißmann
+ * @since 30.03.2017
+ */
+public final class FilenameTemplate {
+
+    /**
+     * The names used so far: "Title-Episode-SubTitle-QUALITY-telecastId".
+     */
+    public static final String DEFAULT = "{title}-{episode}-{subTitle}-{quality}-{telecastId}";
+
+    /**
+     * The longest suffix appended to the name of a file: the extension and the suffixes of the ".part"-files.
+     */
+    private static final int RESERVED_SUFFIX_LENGTH = ".mp4.part.progress.tmp".length();
+
+    private static final Pattern PLACEHOLDER = Pattern.compile("\\{(\\w+)}");
+
+    private final String template;
+    private final FilesystemProfile profile;
+    private final List<Folder> folders;
+
+    private FilenameTemplate(String template, FilesystemProfile profile, List<Folder> folders) {
+        this.template = template;
+        this.profile = profile;
+        this.folders = Collections.unmodifiableList(folders);
+    }
+
+    /**
+     * Compiles the given template.
+     *
+     * @param template the template, e.g. {@link #DEFAULT}
+     * @param profile  the rules of the filesystem the files are written to
+     * @return the compiled {@link FilenameTemplate}
+     * @throws IllegalArgumentException if the template is empty or contains an unknown field
+     */
+    public static FilenameTemplate compile(String template, FilesystemProfile profile) {
+        if (StringUtils.isBlank(template)) {
+            throw new IllegalArgumentException("The filename-template must not be empty");
+        }
+
+        List<Folder> folders = new ArrayList<>();
+        for (String folder : template.split("/")) {
+            if (!folder.isEmpty()) {
+                folders.add(compileFolder(folder, template, profile));
+            }
+        }
+        if (folders.isEmpty()) {
+            throw new IllegalArgumentException("The filename-template contains no name: '" + template + "'");
+        }
+        return new FilenameTemplate(template, profile, folders);
+    }
+
+    private static Folder compileFolder(String folder, String template, FilesystemProfile profile) {
+        List<Part> parts = new ArrayList<>();
+        Matcher matcher = PLACEHOLDER.matcher(folder);
+
+        int literalStart = 0;
+        while (matcher.find()) {
+            Field field = Field.named(matcher.group(1), template);
+            parts.add(new Part(sanitized(folder.substring(literalStart, matcher.start()), profile), field));
+            literalStart = matcher.end();
+        }
+        return new Folder(parts, sanitized(folder.substring(literalStart), profile));
+    }
+
+    private static String sanitized(String literal, FilesystemProfile profile) {
+        StringBuilder builder = new StringBuilder(literal.length());
+        profile.appendSanitized(builder, literal);
+        return builder.toString();
+    }
+
+    /**
+     * @return true, if the name of the file includes the telecast-id, which makes it unique
+     */
+    public boolean containsTelecastId() {
+        for (Part part : folders.get(folders.size() - 1).parts) {
+            if (part.field == Field.TELECAST_ID) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Creates the path of the file for the given recording, relative to the download destination and without
+     * extension.
+     *
+     * @param recording the downloaded {@link Recording}
+     * @param format    the downloaded {@link RecordingFormat}
+     * @param suffix    appended to the name of the file, e.g. to make it unique. Empty for none
+     * @return the relative path, using "/" between the folders
+     */
+    public String render(Recording recording, RecordingFormat format, String suffix) {
+        StringBuilder path = new StringBuilder(128);
+
+        for (int i = 0; i < folders.size(); i++) {
+            boolean isFile = i == folders.size() - 1;
+            if (i > 0) {
+                path.append('/');
+            }
+
+            int budget = profile.getMaxLength() - (isFile ? RESERVED_SUFFIX_LENGTH : 0);
+            folders.get(i).render(path, recording, format, isFile ? suffix : "", budget, profile);
+        }
+        return path.toString();
+    }
+
+    @Override
+    public String toString() {
+        return template + " (" + profile + ")";
+    }
+
+    /**
+     * One folder, or the name of the file itself.
+     */
+    private static class Folder {
+
+        private final List<Part> parts;
+
+        /**
+         * The text after the last field.
+         */
+        private final String trailing;
+
+        private Folder(List<Part> parts, String trailing) {
+            this.parts = parts;
+            this.trailing = trailing;
+        }
+
+        private void render(StringBuilder path, Recording recording, RecordingFormat format, String suffix,
+                            int budget, FilesystemProfile profile) {
+            int nameStart = path.length();
+            int[] starts = new int[parts.size()];
+            int[] ends = new int[parts.size()];
+
+            for (int i = 0; i < parts.size(); i++) {
+                Part part = parts.get(i);
+                if (part.field.isEmpty(recording, format)) {
+                    starts[i] = ends[i] = path.length();
+                    continue;
+                }
+
+                path.append(part.literal);
+                starts[i] = path.length();
+                part.field.append(path, recording, format, profile);
+                ends[i] = path.length();
+            }
+            path.append(trailing);
+            profile.appendSanitized(path, suffix);
+
+            shorten(path, nameStart, starts, ends, budget, profile);
+
+            profile.finish(path, nameStart);
+        }
+
+        /**
+         * Cuts the end of the longest text field, until the name fits into the budget or there is nothing left to cut.
+         */
+        private void shorten(StringBuilder path, int nameStart, int[] starts, int[] ends, int budget,
+                             FilesystemProfile profile) {
+            int excess = profile.length(path, nameStart, path.length()) - budget;
+
+            while (excess > 0) {
+                int longest = -1;
+                for (int i = 0; i < parts.size(); i++) {
+                    if (parts.get(i).field.truncatable && ends[i] - starts[i] > 1
+                            && (longest < 0 || ends[i] - starts[i] > ends[longest] - starts[longest])) {
+                        longest = i;
+                    }
+                }
+                if (longest < 0) {
+                    return;
+                }
+
+                // Cut one char, or a whole surrogate pair
+                int cut = Character.isLowSurrogate(path.charAt(ends[longest] - 1))
+                        && ends[longest] - starts[longest] > 2 ? 2 : 1;
+                excess -= profile.length(path, ends[longest] - cut, ends[longest]);
+                path.delete(ends[longest] - cut, ends[longest]);
+
+                ends[longest] -= cut;
+                for (int i = longest + 1; i < parts.size(); i++) {
+                    starts[i] -= cut;
+                    ends[i] -= cut;
+                }
+            }
+        }
+    }
+
+    /**
+     * A field together with the text in front of it.
+     */
+    private static class Part {
+
+        private final String literal;
+        private final Field field;
+
+        private Part(String literal, Field field) {
+            this.literal = literal;
+            this.field = field;
+        }
+    }
+
+    /**
+     * The fields which can be used in a template.
+     */
+    private enum Field {
+        TITLE("title", true),
+        SUB_TITLE("subTitle", true),
+        EPISODE("episode", true),
+        QUALITY("quality", false),
+        CUT("cut", false),
+        TELECAST_ID("telecastId", false);
+
+        private final String placeholder;
+
+        /**
+         * Whether the field may be shortened, if the name is too long.
+         */
+        private final boolean truncatable;
+
+        Field(String placeholder, boolean truncatable) {
+            this.placeholder = placeholder;
+            this.truncatable = truncatable;
+        }
+
+        private static Field named(String placeholder, String template) {
+            for (Field field : values()) {
+                if (field.placeholder.equals(placeholder)) {
+                    return field;
+                }
+            }
+            throw new IllegalArgumentException("Unknown field '{" + placeholder + "}' in filename-template: '"
+                    + template + "'");
+        }
+
+        private boolean isEmpty(Recording recording, RecordingFormat format) {
+            switch (this) {
+                case TITLE:
+                    return StringUtils.isEmpty(recording.getTitle());
+                case SUB_TITLE:
+                    return StringUtils.isEmpty(recording.getSubTitle());
+                case EPISODE:
+                    return StringUtils.isEmpty(recording.getEpisode());
+                default:
+                    return false;
+            }
+        }
+
+        private void append(StringBuilder name, Recording recording, RecordingFormat format,
+                            FilesystemProfile profile) {
+            switch (this) {
+                case TITLE:
+                    profile.appendSanitized(name, recording.getTitle());
+                    break;
+                case SUB_TITLE:
+                    profile.appendSanitized(name, recording.getSubTitle());
+                    break;
+                case EPISODE:
+                    profile.appendSanitized(name, recording.getEpisode());
+                    break;
+                case QUALITY:
+                    name.append(format.getQualityName());
+                    break;
+                case CUT:
+                    name.append(format.isCut() ? "cut" : "uncut");
+                    break;
+                case TELECAST_ID:
+                    name.append(recording.getTelecastId());
+                    break;
+                default:
+                    throw new IllegalStateException("Should not be happen, since we are using enum here");
+            }
+        }
+    }
+}
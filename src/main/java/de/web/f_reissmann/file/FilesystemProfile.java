@@ -0,0 +1,206 @@
+package de.web.f_reissmann.file;
+
+import java.util.Locale;
+
+/**
+ * The rules of a filesystem for the names of files and folders: the allowed chars, the maximum length and whether
+ * names differing in case only are the same.
+ * <p>
+ * Every char of a name is checked exactly once while it is appended by {@link #appendSanitized}, so no intermediate
+ * strings are created.
+ *
+ * @author Fabian Reißmann
+ * @since 30.03.2017
+ */
+public enum FilesystemProfile {
+
+    // Only ASCII letters, digits, '.', '-' and '_'. German "Umlaute" are transliterated. Safe on every filesystem
+    PORTABLE(255, false, true),
+    // Linux and other unix-like filesystems: anything but '/' and control chars, 255 bytes in UTF-8
+    POSIX(255, true, false),
+    // macOS: like POSIX, but ':' is not allowed and names are case-insensitive
+    MAC(255, true, true),
+    // NTFS: no '<>:"/\|?*', no trailing dots or spaces, no reserved device names, 255 UTF-16 chars
+    WINDOWS(255, false, true);
+
+    /**
+     * The replacement of every char which is not allowed.
+     */
+    private static final char REPLACEMENT = '_';
+
+    private static final String WINDOWS_FORBIDDEN = "<>:\"/\\|?*";
+
+    private static final String[] WINDOWS_RESERVED = {"CON", "PRN", "AUX", "NUL",
+            "COM1", "COM2", "COM3", "COM4", "COM5", "COM6", "COM7", "COM8", "COM9",
+            "LPT1", "LPT2", "LPT3", "LPT4", "LPT5", "LPT6", "LPT7", "LPT8", "LPT9"};
+
+    private final int maxLength;
+
+    /**
+     * Whether {@link #maxLength} counts the bytes in UTF-8, or the chars (in UTF-16).
+     */
+    private final boolean lengthInBytes;
+
+    private final boolean caseInsensitive;
+
+    FilesystemProfile(int maxLength, boolean lengthInBytes, boolean caseInsensitive) {
+        this.maxLength = maxLength;
+        this.lengthInBytes = lengthInBytes;
+        this.caseInsensitive = caseInsensitive;
+    }
+
+    /**
+     * @return the maximum length of one name, as measured by {@link #length(CharSequence, int, int)}
+     */
+    public int getMaxLength() {
+        return maxLength;
+    }
+
+    /**
+     * Appends the given value to the name, replacing every char which is not allowed.
+     *
+     * @param name  the name to append to
+     * @param value the raw value, e.g. the title of a recording
+     */
+    public void appendSanitized(StringBuilder name, CharSequence value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+
+            if (c < ' ' || c == '\u007f' || c == '/') {
+                name.append(REPLACEMENT);
+                continue;
+            }
+
+            switch (this) {
+                case PORTABLE:
+                    appendPortable(name, c);
+                    break;
+                case MAC:
+                    name.append(c == ':' ? REPLACEMENT : c);
+                    break;
+                case WINDOWS:
+                    name.append(WINDOWS_FORBIDDEN.indexOf(c) >= 0 ? REPLACEMENT : c);
+                    break;
+                default:
+                    name.append(c);
+            }
+        }
+    }
+
+    private static void appendPortable(StringBuilder name, char c) {
+        if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                || c == '.' || c == '-' || c == '_') {
+            name.append(c);
+            return;
+        }
+
+        switch (c) {
+            case 'Ä':
+                name.append("Ae");
+                break;
+            case 'Ö':
+                name.append("Oe");
+                break;
+            case 'Ü':
+                name.append("Ue");
+                break;
+            case 'ä':
+                name.append("ae");
+                break;
+            case 'ö':
+                name.append("oe");
+                break;
+            case 'ü':
+                name.append("ue");
+                break;
+            case 'ß':
+                name.append("ss");
+                break;
+            default:
+                name.append(REPLACEMENT);
+        }
+    }
+
+    /**
+     * Fixes the parts of a complete name which are only invalid as a whole, e.g. a trailing dot on Windows. An empty
+     * name and the names "." and ".." are replaced as well.
+     *
+     * @param path  the path ending with the sanitized name
+     * @param start the index of the first char of the name
+     */
+    public void finish(StringBuilder path, int start) {
+        int length = path.length() - start;
+        if (length == 0 || (length <= 2 && path.charAt(start) == '.' && path.charAt(path.length() - 1) == '.')) {
+            path.setLength(start);
+            path.append(REPLACEMENT);
+            return;
+        }
+        if (this != WINDOWS) {
+            return;
+        }
+
+        int last = path.length() - 1;
+        if (path.charAt(last) == '.' || path.charAt(last) == ' ') {
+            path.setCharAt(last, REPLACEMENT);
+        }
+
+        int baseEnd = path.indexOf(".", start);
+        int baseLength = (baseEnd < 0 ? path.length() : baseEnd) - start;
+        for (String reserved : WINDOWS_RESERVED) {
+            if (reserved.length() == baseLength && startsWithIgnoreCase(path, start, reserved)) {
+                path.insert(start, REPLACEMENT);
+                return;
+            }
+        }
+    }
+
+    private static boolean startsWithIgnoreCase(StringBuilder path, int start, String prefix) {
+        for (int i = 0; i < prefix.length(); i++) {
+            if (Character.toUpperCase(path.charAt(start + i)) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Measures a part of a name the way this filesystem limits it.
+     *
+     * @param name  the name
+     * @param start the index of the first char
+     * @param end   the index after the last char
+     * @return the length in bytes or chars, see {@link #getMaxLength()}
+     */
+    public int length(CharSequence name, int start, int end) {
+        if (!lengthInBytes) {
+            return end - start;
+        }
+
+        int bytes = 0;
+        for (int i = start; i < end; i++) {
+            char c = name.charAt(i);
+            if (c < 0x80) {
+                bytes += 1;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c)) {
+                // Together with the following low surrogate
+                bytes += 4;
+                i++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns the key under which two names are the same file on this filesystem.
+     *
+     * @param path the path of a file
+     * @return the path itself, or its lower-case form if names are case-insensitive
+     */
+    public String identityOf(String path) {
+        return caseInsensitive ? path.toLowerCase(Locale.ROOT) : path;
+    }
+}
@@ -0,0 +1,213 @@
+package de.web.f_reissmann.ledger;
+
+import de.web.f_reissmann.download.DownloadResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Remembers which recordings were already downloaded, so they are not downloaded again.
+ * <p>
+ * The ledger is an append-only log with one {@link LedgerEntry} per line. It is read completely on startup and every
+ * successful download appends one line. If the log does not exist yet, it is bootstrapped by scanning the download
+ * destination for files which end with the telecast-id, as they are named by the default
+ * {@link de.web.f_reissmann.file.FilenameTemplate}. Subfolders are scanned as well.
+ * <p>
+ * Every recorded download carries the checksum calculated while it was written, so the files can be audited later.
+ * Bootstrapped entries have no checksum and count as not verified.
+ *
+ * @author Fabian Reißmann
+ * @since 08.03.2017
+ */
+public class DownloadLedger {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DownloadLedger.class);
+
+    private static final String HEADER = "# telecastId\tcut\tquality\tsize\tchecksum\tfile";
+
+    /**
+     * Matches files like "Title-1-Sub-HD-123456.mp4", capturing the quality and the telecast-id.
+     */
+    private static final Pattern DOWNLOADED_FILE = Pattern.compile("^.*?(?:-(MOBILE|SD|HD))?-(\\d+)\\.mp4$");
+
+    private final Path log;
+    private final Map<Long, LedgerEntry> entries = new ConcurrentHashMap<>();
+
+    private DownloadLedger(Path log) {
+        this.log = log;
+    }
+
+    /**
+     * Opens the ledger stored in the given file.
+     * If the file does not exist yet, it is bootstrapped from the files in the download destination.
+     *
+     * @param ledgerFile          the file of the ledger
+     * @param downloadDestination the folder where the recordings are downloaded to
+     * @return the opened {@link DownloadLedger}
+     * @throws IllegalStateException if the ledger could not be read or created
+     */
+    public static DownloadLedger open(File ledgerFile, File downloadDestination) {
+        DownloadLedger ledger = new DownloadLedger(ledgerFile.toPath());
+
+        try {
+            if (ledgerFile.isFile()) {
+                ledger.load();
+            } else {
+                ledger.bootstrap(downloadDestination.toPath());
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to open download ledger: " + ledgerFile, e);
+        }
+
+        LOGGER.info("Download ledger contains {} recordings", ledger.entries.size());
+        return ledger;
+    }
+
+    /**
+     * Checks whether the recording was already downloaded.
+     *
+     * @param telecastId the id of the recording
+     * @return true, if it was already downloaded; false, otherwise
+     */
+    public boolean contains(long telecastId) {
+        return entries.containsKey(telecastId);
+    }
+
+    /**
+     * Checks whether the recording was downloaded and verified, so it may be deleted from the online-archive.
+     *
+     * @param telecastId the id of the recording
+     * @return true, if it was downloaded and has a checksum; false, otherwise
+     */
+    public boolean isVerified(long telecastId) {
+        LedgerEntry entry = entries.get(telecastId);
+        return entry != null && entry.isVerified();
+    }
+
+    /**
+     * Records a successful download.
+     *
+     * @param result the successful download
+     * @throws IllegalStateException if the entry could not be written
+     */
+    public void record(DownloadResult result) {
+        LedgerEntry entry = LedgerEntry.of(result);
+
+        try {
+            append(entry);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to record download in ledger: " + entry, e);
+        }
+        entries.put(entry.getTelecastId(), entry);
+    }
+
+    /**
+     * Every complete entry ends with a newline. If the downloader was killed while appending, the last line may be
+     * written partially: it is ignored and terminated, so the next entry starts on a new line.
+     */
+    private void load() throws IOException {
+        List<String> lines = Files.readAllLines(log, StandardCharsets.UTF_8);
+
+        if (!endsWithNewline(log) && !lines.isEmpty()) {
+            String torn = lines.remove(lines.size() - 1);
+            LOGGER.warn("Ignoring partially written last line of download ledger: '{}'", torn);
+            Files.write(log, System.lineSeparator().getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        }
+
+        for (String line : lines) {
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+
+            try {
+                LedgerEntry entry = LedgerEntry.parse(line);
+                entries.put(entry.getTelecastId(), entry);
+            } catch (IllegalArgumentException e) {
+                LOGGER.warn("Ignoring invalid line of download ledger: '{}'", line, e);
+            }
+        }
+    }
+
+    private static boolean endsWithNewline(Path file) throws IOException {
+        try (SeekableByteChannel channel = Files.newByteChannel(file)) {
+            if (channel.size() == 0) {
+                return true;
+            }
+
+            ByteBuffer last = ByteBuffer.allocate(1);
+            channel.position(channel.size() - 1).read(last);
+            return last.get(0) == '\n';
+        }
+    }
+
+    private void bootstrap(Path downloadDestination) throws IOException {
+        if (Files.isDirectory(downloadDestination)) {
+            List<LedgerEntry> found;
+            try (Stream<Path> files = Files.walk(downloadDestination)) {
+                found = files.filter(Files::isRegularFile)
+                        .map(this::fromExistingFile)
+                        .filter(entry -> entry != null)
+                        .collect(Collectors.toList());
+            }
+
+            for (LedgerEntry entry : found) {
+                entries.put(entry.getTelecastId(), entry);
+            }
+            LOGGER.info("Bootstrapped download ledger from {} existing files in '{}'", found.size(),
+                    downloadDestination);
+        }
+
+        Files.createDirectories(log.toAbsolutePath().getParent());
+        try (BufferedWriter writer = Files.newBufferedWriter(log, StandardCharsets.UTF_8)) {
+            writer.write(HEADER);
+            writer.newLine();
+            for (LedgerEntry entry : entries.values()) {
+                writer.write(entry.toString());
+                writer.newLine();
+            }
+        }
+    }
+
+    private LedgerEntry fromExistingFile(Path file) {
+        Matcher matcher = DOWNLOADED_FILE.matcher(file.getFileName().toString());
+        if (!matcher.matches()) {
+            return null;
+        }
+
+        try {
+            return new LedgerEntry(Long.parseLong(matcher.group(2)),
+                    LedgerEntry.UNKNOWN,
+                    matcher.group(1) == null ? LedgerEntry.UNKNOWN : matcher.group(1),
+                    Files.size(file),
+                    LedgerEntry.UNKNOWN,
+                    file.toString());
+        } catch (IOException | NumberFormatException e) {
+            LOGGER.warn("Unable to add existing file to the download ledger: '{}'", file, e);
+            return null;
+        }
+    }
+
+    private synchronized void append(LedgerEntry entry) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(log, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            writer.write(entry.toString());
+            writer.newLine();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package de.web.f_reissmann.ledger;
+
+import de.web.f_reissmann.download.DownloadResult;
+
+/**
+ * Pojo. One line of the {@link DownloadLedger}.
+ * <p>
+ * Instances of this class are <code>strictly immutable</code>.
+ *
+ * @author Fabian Reißmann
+ * @since 08.03.2017
+ */
+class LedgerEntry {
+
+    /**
+     * Used for values which are not known, e.g. for entries bootstrapped from existing files.
+     */
+    static final String UNKNOWN = "-";
+
+    private static final String SEPARATOR = "\t";
+    private static final int NUMBER_OF_FIELDS = 6;
+
+    private final long telecastId;
+    private final String cut;
+    private final String quality;
+    private final long size;
+    private final String checksum;
+    private final String file;
+
+    LedgerEntry(long telecastId, String cut, String quality, long size, String checksum, String file) {
+        this.telecastId = telecastId;
+        this.cut = cut;
+        this.quality = quality;
+        this.size = size;
+        this.checksum = checksum;
+        this.file = file;
+    }
+
+    /**
+     * Creates the entry for a successful download.
+     *
+     * @param result the successful download
+     * @return the corresponding {@link LedgerEntry}
+     */
+    static LedgerEntry of(DownloadResult result) {
+        return new LedgerEntry(result.getRecording().getTelecastId(),
+                String.valueOf(result.getFormat().isCut()),
+                result.getFormat().getQualityName(),
+                result.getSize(),
+                result.getChecksum(),
+                result.getFile().getPath());
+    }
+
+    /**
+     * Parses one line created by {@link #toString()}.
+     *
+     * @param line the line to parse
+     * @return the parsed {@link LedgerEntry}
+     * @throws IllegalArgumentException if the line is not a valid entry
+     */
+    static LedgerEntry parse(String line) {
+        String[] fields = line.split(SEPARATOR, NUMBER_OF_FIELDS);
+        if (fields.length != NUMBER_OF_FIELDS) {
+            throw new IllegalArgumentException("Not a valid ledger entry: " + line);
+        }
+
+        try {
+            return new LedgerEntry(Long.parseLong(fields[0]), fields[1], fields[2], Long.parseLong(fields[3]),
+                    fields[4], fields[5]);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a valid ledger entry: " + line, e);
+        }
+    }
+
+    long getTelecastId() {
+        return telecastId;
+    }
+
+    /**
+     * @return true, if the file was verified and its checksum is known; false, e.g. for bootstrapped entries
+     */
+    boolean isVerified() {
+        return !UNKNOWN.equals(checksum);
+    }
+
+    @Override
+    public String toString() {
+        return String.join(SEPARATOR,
+                String.valueOf(telecastId),
+                cut,
+                quality,
+                String.valueOf(size),
+                checksum,
+                file);
+    }
+}
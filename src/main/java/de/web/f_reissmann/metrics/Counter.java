@@ -0,0 +1,29 @@
+package de.web.f_reissmann.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A value which only increases, e.g. the number of failed requests.
+ *
+ * @author Fabian Reißmann
+ * @since 22.03.2017
+ */
+public class Counter {
+
+    private final LongAdder value = new LongAdder();
+
+    Counter() {
+    }
+
+    public void increment() {
+        value.increment();
+    }
+
+    public void add(long amount) {
+        value.add(amount);
+    }
+
+    public long get() {
+        return value.sum();
+    }
+}
@@ -0,0 +1,80 @@
+package de.web.f_reissmann.metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts observed values into fixed buckets, e.g. the latencies of requests.
+ * <p>
+ * Every bucket counts the values which are less than or equal to its upper bound, but greater than the bound of the
+ * previous bucket. The values above the last bound are only contained in the total count.
+ *
+ * @author Fabian Reißmann
+ * @since 22.03.2017
+ */
+public class Histogram {
+
+    private final double[] upperBounds;
+    private final AtomicLongArray buckets;
+    private final LongAdder count = new LongAdder();
+    private final DoubleAdder sum = new DoubleAdder();
+
+    Histogram(double[] upperBounds) {
+        this.upperBounds = upperBounds.clone();
+        Arrays.sort(this.upperBounds);
+        this.buckets = new AtomicLongArray(upperBounds.length);
+    }
+
+    /**
+     * @param value the observed value
+     */
+    public void observe(double value) {
+        int bucket = Arrays.binarySearch(upperBounds, value);
+        if (bucket < 0) {
+            bucket = -bucket - 1;
+        }
+
+        if (bucket < upperBounds.length) {
+            buckets.incrementAndGet(bucket);
+        }
+        count.increment();
+        sum.add(value);
+    }
+
+    /**
+     * Observes the time passed since the given start.
+     *
+     * @param startNanos the start, taken from {@link System#nanoTime()}
+     */
+    public void observeSecondsSince(long startNanos) {
+        observe((System.nanoTime() - startNanos) / 1e9);
+    }
+
+    double[] getUpperBounds() {
+        return upperBounds.clone();
+    }
+
+    /**
+     * @return the number of observed values per bucket, cumulated like the "le"-buckets of Prometheus
+     */
+    long[] getCumulativeCounts() {
+        long[] cumulative = new long[upperBounds.length];
+        long total = 0;
+
+        for (int i = 0; i < cumulative.length; i++) {
+            total += buckets.get(i);
+            cumulative[i] = total;
+        }
+        return cumulative;
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public double getSum() {
+        return sum.sum();
+    }
+}
@@ -0,0 +1,66 @@
+package de.web.f_reissmann.metrics;
+
+/**
+ * Utility-Class holding the metrics of the downloader, which are updated by the instrumented code.
+ *
+ * @author Fabian Reißmann
+ * @since 22.03.2017
+ */
+public final class Metrics {
+
+    public static final MetricsRegistry REGISTRY = new MetricsRegistry();
+
+    private static final double KB = 1024;
+    private static final double MB = 1024 * KB;
+
+    private static final double[] LATENCY_SECONDS = {0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30};
+    private static final double[] DISK_SECONDS = {0.0001, 0.0005, 0.001, 0.005, 0.01, 0.05, 0.1, 0.5, 1, 5};
+    private static final double[] BYTES_PER_SECOND = {256 * KB, MB, 2 * MB, 4 * MB, 8 * MB, 16 * MB, 32 * MB,
+            64 * MB, 128 * MB};
+
+    public static final RateMeter DOWNLOADED_BYTES = REGISTRY.rateMeter("savetv_download_bytes",
+            "Bytes downloaded by all downloads");
+    public static final Histogram DOWNLOAD_THROUGHPUT = REGISTRY.histogram("savetv_download_throughput_bytes_per_second",
+            "Throughput of the finished downloads", BYTES_PER_SECOND);
+    public static final Counter DOWNLOADS_SUCCEEDED = REGISTRY.counter("savetv_downloads_succeeded_total",
+            "Recordings which were downloaded");
+    public static final Counter DOWNLOADS_FAILED = REGISTRY.counter("savetv_downloads_failed_total",
+            "Downloads which failed");
+    public static final Counter VERIFICATIONS_FAILED = REGISTRY.counter("savetv_verifications_failed_total",
+            "Downloaded files which were discarded, since they were not complete MP4-files");
+    public static final Histogram DISK_WRITE = REGISTRY.histogram("savetv_disk_write_seconds",
+            "Time for writing one block to the disk", DISK_SECONDS);
+    public static final Histogram DISK_FORCE = REGISTRY.histogram("savetv_disk_force_seconds",
+            "Time for forcing the written bytes to the disk", DISK_SECONDS);
+
+    private Metrics() {
+        throw new UnsupportedOperationException("Utility-Class should not be instantiated.");
+    }
+
+    /**
+     * @param endpoint the called endpoint of save.tv, e.g. "login" or "VideoArchiveApi"
+     * @return the latency of the requests to that endpoint
+     */
+    public static Histogram apiLatency(String endpoint) {
+        return REGISTRY.histogram("savetv_api_request_seconds", "Latency of the requests to the save.tv-API",
+                LATENCY_SECONDS, "endpoint", endpoint);
+    }
+
+    /**
+     * @param endpoint the called endpoint of save.tv, e.g. "login" or "VideoArchiveApi"
+     * @return the number of failed requests to that endpoint
+     */
+    public static Counter apiErrors(String endpoint) {
+        return REGISTRY.counter("savetv_api_errors_total", "Failed requests to the save.tv-API",
+                "endpoint", endpoint);
+    }
+
+    /**
+     * @param operation the repeated operation, e.g. "download" for a resumed download
+     * @return the number of times the operation was repeated after it failed
+     */
+    public static Counter retries(String operation) {
+        return REGISTRY.counter("savetv_retries_total", "Operations which were repeated after they failed",
+                "operation", operation);
+    }
+}
@@ -0,0 +1,102 @@
+package de.web.f_reissmann.metrics;
+
+import com.sun.net.httpserver.HttpServer;
+import de.web.f_reissmann.config.SaveTvConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Exposes the {@link Metrics} via JMX and a local HTTP-endpoint in the text-format of Prometheus.
+ *
+ * @author Fabian Reißmann
+ * @since 22.03.2017
+ */
+public class MetricsExporter implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MetricsExporter.class);
+
+    private static final String OBJECT_NAME = "de.web.f_reissmann:type=Metrics";
+    private static final String PATH = "/metrics";
+    private static final int DISABLED = 0;
+
+    private final ObjectName objectName;
+    private final HttpServer server;
+
+    private MetricsExporter(ObjectName objectName, HttpServer server) {
+        this.objectName = objectName;
+        this.server = server;
+    }
+
+    /**
+     * Starts the exporters which are enabled in the given config.
+     *
+     * @param config the config including the metrics settings
+     * @return the started {@link MetricsExporter}, which has to be closed in the end
+     * @throws IllegalStateException if an exporter could not be started
+     */
+    public static MetricsExporter start(SaveTvConfig config) {
+        ObjectName objectName = null;
+        HttpServer server = null;
+
+        try {
+            if (config.isMetricsJmxEnabled()) {
+                objectName = new ObjectName(OBJECT_NAME);
+                MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+                if (!mBeanServer.isRegistered(objectName)) {
+                    mBeanServer.registerMBean(new MetricsMBean(Metrics.REGISTRY), objectName);
+                }
+            }
+
+            if (config.getMetricsHttpPort() != DISABLED) {
+                server = startHttpServer(config.getMetricsHttpPort());
+                LOGGER.info("Serving metrics on http://localhost:{}{}", config.getMetricsHttpPort(), PATH);
+            }
+        } catch (JMException | IOException e) {
+            throw new IllegalStateException("Unable to start the metrics exporter", e);
+        }
+
+        return new MetricsExporter(objectName, server);
+    }
+
+    private static HttpServer startHttpServer(int port) throws IOException {
+        // Only bound to the loopback interface, the metrics are not meant to be public
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+
+        server.createContext(PATH, exchange -> {
+            byte[] body = Metrics.REGISTRY.toPrometheusText().getBytes(StandardCharsets.UTF_8);
+
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        return server;
+    }
+
+    @Override
+    public void close() {
+        if (server != null) {
+            server.stop(0);
+        }
+
+        if (objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (JMException e) {
+                LOGGER.debug("Unable to unregister the metrics MBean", e);
+            }
+        }
+    }
+}
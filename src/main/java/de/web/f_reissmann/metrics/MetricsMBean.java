@@ -0,0 +1,75 @@
+package de.web.f_reissmann.metrics;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import java.util.Map;
+
+/**
+ * Exposes every value of a {@link MetricsRegistry#snapshot()} as read-only JMX-attribute.
+ *
+ * @author Fabian Reißmann
+ * @since 22.03.2017
+ */
+class MetricsMBean implements DynamicMBean {
+
+    private final MetricsRegistry registry;
+
+    MetricsMBean(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public Object getAttribute(String name) throws AttributeNotFoundException {
+        Double value = registry.snapshot().get(name);
+        if (value == null) {
+            throw new AttributeNotFoundException(name);
+        }
+        return value;
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] names) {
+        Map<String, Double> snapshot = registry.snapshot();
+        AttributeList attributes = new AttributeList();
+
+        for (String name : names) {
+            if (snapshot.containsKey(name)) {
+                attributes.add(new Attribute(name, snapshot.get(name)));
+            }
+        }
+        return attributes;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) {
+        throw new UnsupportedOperationException("Metrics are read-only");
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) {
+        throw new UnsupportedOperationException("Metrics do not provide operations");
+    }
+
+    /**
+     * The attributes are created anew every time, because metrics with new labels may have been added.
+     */
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        MBeanAttributeInfo[] attributes = registry.snapshot().keySet().stream()
+                .map(name -> new MBeanAttributeInfo(name, Double.class.getName(), name, true, false, false))
+                .toArray(MBeanAttributeInfo[]::new);
+
+        return new MBeanInfo(getClass().getName(), "Metrics of the save.tv-Downloader", attributes, null,
+                new MBeanOperationInfo[0], null);
+    }
+}
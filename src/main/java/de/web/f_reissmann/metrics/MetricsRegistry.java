@@ -0,0 +1,210 @@
+package de.web.f_reissmann.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.DoubleSupplier;
+import java.util.function.Function;
+
+/**
+ * Holds all metrics of the downloader and renders them for the exporters.
+ * <p>
+ * A metric is identified by its name and optionally one label, e.g. the API-endpoint of a request latency. Asking for
+ * the same name and label twice returns the same metric.
+ *
+ * @author Fabian Reißmann
+ * @since 22.03.2017
+ */
+public class MetricsRegistry {
+
+    private static final String NO_LABEL = "";
+
+    private final Map<String, Family> families = new LinkedHashMap<>();
+
+    public Counter counter(String name, String help) {
+        return counter(name, help, NO_LABEL, NO_LABEL);
+    }
+
+    public Counter counter(String name, String help, String labelName, String labelValue) {
+        return metric(name, help, Type.COUNTER, label(labelName, labelValue), labels -> new Counter());
+    }
+
+    public Histogram histogram(String name, String help, double[] upperBounds) {
+        return histogram(name, help, upperBounds, NO_LABEL, NO_LABEL);
+    }
+
+    public Histogram histogram(String name, String help, double[] upperBounds, String labelName, String labelValue) {
+        return metric(name, help, Type.HISTOGRAM, label(labelName, labelValue), labels -> new Histogram(upperBounds));
+    }
+
+    /**
+     * Registers a {@link RateMeter}. It is exported as counter "&lt;name&gt;_total" of its total and as gauge
+     * "&lt;name&gt;_per_second" of its rate.
+     */
+    public RateMeter rateMeter(String name, String help) {
+        return metric(name, help, Type.RATE, NO_LABEL, labels -> new RateMeter());
+    }
+
+    /**
+     * Registers a value which is read whenever the metrics are exported, e.g. the size of a queue. Replaces a
+     * previously registered gauge of the same name.
+     */
+    public synchronized void gauge(String name, String help, DoubleSupplier value) {
+        Family family = new Family(help, Type.GAUGE);
+        family.children.put(NO_LABEL, value);
+        families.put(name, family);
+    }
+
+    /**
+     * Renders all metrics in the text-format of Prometheus.
+     *
+     * @return the rendered metrics
+     */
+    public synchronized String toPrometheusText() {
+        StringBuilder text = new StringBuilder();
+
+        families.forEach((name, family) -> {
+            if (family.type == Type.RATE) {
+                appendRate(text, name, family);
+                return;
+            }
+
+            appendHeader(text, name, family.help, family.type.prometheusType);
+            family.children.forEach((labels, metric) -> {
+                if (family.type == Type.HISTOGRAM) {
+                    appendHistogram(text, name, labels, (Histogram) metric);
+                } else {
+                    appendSample(text, name, labels, valueOf(metric));
+                }
+            });
+        });
+        return text.toString();
+    }
+
+    /**
+     * Flattens all metrics to single values, e.g. for JMX. Histograms are flattened to their count, sum and mean.
+     *
+     * @return the values by their name including the label
+     */
+    public synchronized Map<String, Double> snapshot() {
+        Map<String, Double> values = new LinkedHashMap<>();
+
+        families.forEach((name, family) -> family.children.forEach((labels, metric) -> {
+            String suffix = labels.isEmpty() ? "" : "{" + labels + "}";
+
+            switch (family.type) {
+                case HISTOGRAM:
+                    Histogram histogram = (Histogram) metric;
+                    values.put(name + "_count" + suffix, (double) histogram.getCount());
+                    values.put(name + "_sum" + suffix, histogram.getSum());
+                    values.put(name + "_mean" + suffix,
+                            histogram.getCount() == 0 ? 0.0 : histogram.getSum() / histogram.getCount());
+                    break;
+                case RATE:
+                    values.put(name + "_total" + suffix, (double) ((RateMeter) metric).getTotal());
+                    values.put(name + "_per_second" + suffix, ((RateMeter) metric).getRate());
+                    break;
+                default:
+                    values.put(name + suffix, valueOf(metric));
+            }
+        }));
+        return values;
+    }
+
+    @SuppressWarnings("unchecked")
+    private synchronized <T> T metric(String name, String help, Type type, String labels,
+                                      Function<String, T> create) {
+        Family family = families.computeIfAbsent(name, key -> new Family(help, type));
+        if (family.type != type) {
+            throw new IllegalArgumentException("Metric '" + name + "' is already registered as " + family.type);
+        }
+        return (T) family.children.computeIfAbsent(labels, create);
+    }
+
+    private static String label(String labelName, String labelValue) {
+        return labelName.isEmpty() ? NO_LABEL : labelName + "=\"" + labelValue.replace("\"", "\\\"") + "\"";
+    }
+
+    private static double valueOf(Object metric) {
+        if (metric instanceof Counter) {
+            return ((Counter) metric).get();
+        }
+        return ((DoubleSupplier) metric).getAsDouble();
+    }
+
+    private static void appendHeader(StringBuilder text, String name, String help, String type) {
+        text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        text.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    /**
+     * A {@link RateMeter} is rendered as counter "&lt;name&gt;_total" and gauge "&lt;name&gt;_per_second".
+     */
+    private static void appendRate(StringBuilder text, String name, Family family) {
+        appendHeader(text, name + "_total", family.help, "counter");
+        family.children.forEach((labels, metric) -> appendSample(text, name + "_total", labels,
+                ((RateMeter) metric).getTotal()));
+
+        appendHeader(text, name + "_per_second", family.help + " per second", "gauge");
+        family.children.forEach((labels, metric) -> appendSample(text, name + "_per_second", labels,
+                ((RateMeter) metric).getRate()));
+    }
+
+    private static void appendHistogram(StringBuilder text, String name, String labels, Histogram histogram) {
+        String separator = labels.isEmpty() ? "" : ",";
+        double[] upperBounds = histogram.getUpperBounds();
+        long[] counts = histogram.getCumulativeCounts();
+
+        for (int i = 0; i < upperBounds.length; i++) {
+            appendSample(text, name + "_bucket", labels + separator + "le=\"" + format(upperBounds[i]) + "\"",
+                    counts[i]);
+        }
+        appendSample(text, name + "_bucket", labels + separator + "le=\"+Inf\"", histogram.getCount());
+        appendSample(text, name + "_sum", labels, histogram.getSum());
+        appendSample(text, name + "_count", labels, histogram.getCount());
+    }
+
+    private static void appendSample(StringBuilder text, String name, String labels, double value) {
+        text.append(name);
+        if (!labels.isEmpty()) {
+            text.append('{').append(labels).append('}');
+        }
+        text.append(' ').append(format(value)).append('\n');
+    }
+
+    private static String format(double value) {
+        return value == Math.rint(value) && !Double.isInfinite(value)
+                ? String.valueOf((long) value)
+                : Double.toString(value);
+    }
+
+    /**
+     * The kind of a metric and how it is called by Prometheus.
+     */
+    private enum Type {
+        COUNTER("counter"),
+        HISTOGRAM("histogram"),
+        RATE("counter"),
+        GAUGE("gauge");
+
+        private final String prometheusType;
+
+        Type(String prometheusType) {
+            this.prometheusType = prometheusType;
+        }
+    }
+
+    /**
+     * All metrics of the same name, by their label.
+     */
+    private static class Family {
+
+        private final String help;
+        private final Type type;
+        private final Map<String, Object> children = new LinkedHashMap<>();
+
+        private Family(String help, Type type) {
+            this.help = help;
+            this.type = type;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package de.web.f_reissmann.metrics;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts an amount, e.g. downloaded bytes, and derives its current rate per second.
+ * <p>
+ * The rate is the average over the last {@link #WINDOW_SECONDS} seconds, or since the previous time it was asked for,
+ * if that was longer ago.
+ *
+ * @author Fabian Reißmann
+ * @since 22.03.2017
+ */
+public class RateMeter {
+
+    private static final long WINDOW_SECONDS = 10L;
+
+    private final LongAdder total = new LongAdder();
+
+    /**
+     * Pairs of {@link System#nanoTime()} and the total at that time.
+     */
+    private final Deque<long[]> samples = new ArrayDeque<>();
+
+    RateMeter() {
+    }
+
+    public void mark(long amount) {
+        total.add(amount);
+    }
+
+    public long getTotal() {
+        return total.sum();
+    }
+
+    /**
+     * @return the amount per second
+     */
+    public synchronized double getRate() {
+        long now = System.nanoTime();
+        long current = total.sum();
+        samples.addLast(new long[]{now, current});
+
+        // Keeps the latest sample which is older than the window, so the rate always covers at least the window
+        long windowStart = now - TimeUnit.SECONDS.toNanos(WINDOW_SECONDS);
+        while (samples.size() > 1) {
+            Iterator<long[]> oldestFirst = samples.iterator();
+            oldestFirst.next();
+
+            if (oldestFirst.next()[0] > windowStart) {
+                break;
+            }
+            samples.removeFirst();
+        }
+
+        long[] oldest = samples.getFirst();
+        long elapsed = now - oldest[0];
+        return elapsed <= 0 ? 0.0 : (current - oldest[1]) * 1e9 / elapsed;
+    }
+}
@@ -1,19 +1,28 @@
 package de.web.f_reissmann.parser;
 
-import com.google.common.collect.ComparisonChain;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import de.web.f_reissmann.recording.Recording;
+import de.web.f_reissmann.recording.RecordingUtil;
 import de.web.f_reissmann.recording.format.RecordingFormat;
 import org.apache.http.Header;
 import org.apache.http.HttpResponse;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
@@ -57,6 +66,22 @@ public class SaveTvResponseParser {
         return jsonObject.get("DOWNLOADURL").getAsString();
     }
 
+    /**
+     * Checks whether save.tv accepted the deletion of a recording.
+     *
+     * @param responseForDeletion the response of the deletion
+     * @return false, if the response contains an error or "SUCCESS" is false; true, otherwise
+     * @throws IllegalStateException if the response is not a JSON-Object
+     */
+    public boolean hasDeletedCorrectly(String responseForDeletion) {
+        JsonObject jsonObject = toJsonObject(responseForDeletion);
+
+        if (jsonObject.has("ERROR")) {
+            return false;
+        }
+        return !jsonObject.has("SUCCESS") || jsonObject.get("SUCCESS").getAsBoolean();
+    }
+
     /**
      * Extracts a list of {@link Recording}s from the response.
      *
@@ -67,6 +92,48 @@ public class SaveTvResponseParser {
         return toRecordings(extractArchiveEntries(response));
     }
 
+    /**
+     * Extracts a list of {@link Recording}s directly from the response-stream.
+     * <p>
+     * Same as {@link #extractRecordings(String)}, but neither the whole response nor a JSON-tree of it is kept in
+     * memory.
+     *
+     * @param response the content of the response to parse. Is not closed by this method
+     * @return list of {@link Recording}s
+     * @throws IOException if the stream could not be read
+     */
+    public List<Recording> extractRecordings(InputStream response) throws IOException {
+        List<Recording> recordings = new ArrayList<>();
+
+        streamRecordings(response, recordings::add);
+        recordings.sort(sortRecordings());
+
+        return recordings;
+    }
+
+    /**
+     * Parses the response-stream and hands every {@link Recording} to the given consumer, as soon as it was read.
+     * <p>
+     * The recordings are emitted in the order of the response and are not sorted.
+     *
+     * @param response the content of the response to parse. Is not closed by this method
+     * @param consumer receives the parsed {@link Recording}s one at a time
+     * @throws IOException if the stream could not be read
+     */
+    public void streamRecordings(InputStream response, Consumer<Recording> consumer) throws IOException {
+        JsonReader reader = new JsonReader(new InputStreamReader(response, StandardCharsets.UTF_8));
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if ("ARRVIDEOARCHIVEENTRIES".equals(reader.nextName())) {
+                readArchiveEntries(reader, consumer);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
     private boolean containsErrorCode49(String locationHeader) {
         return locationHeader.toLowerCase()
                 .contains("errorcodeid_49");
@@ -94,10 +161,7 @@ public class SaveTvResponseParser {
     }
 
     private Comparator<? super Recording> sortRecordings() {
-
-        return (recording1, recording2) -> ComparisonChain.start()
-                .compare(recording1.getDaysLeft(), recording2.getDaysLeft())
-                .result();
+        return RecordingUtil.byDaysLeft();
     }
 
     private Recording toRecording(JsonObject json) {
@@ -136,7 +200,104 @@ public class SaveTvResponseParser {
         int recordFormatId = json.get("RECORDINGFORMATID").getAsInt();
         RecordingFormat.Quality quality = RecordingFormat.Quality.fromCode(recordFormatId);
 
-        return new RecordingFormat(isCut, quality);
+        return RecordingFormat.of(isCut, quality);
+    }
+
+    private void readArchiveEntries(JsonReader reader, Consumer<Recording> consumer) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if ("STRTELECASTENTRY".equals(reader.nextName())) {
+                    consumer.accept(readRecording(reader));
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+        reader.endArray();
+    }
+
+    private Recording readRecording(JsonReader reader) throws IOException {
+        Recording.Builder builder = new Recording.Builder();
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "ITELECASTID":
+                    builder.withTelecastId(new BigDecimal(reader.nextString()).longValue());
+                    break;
+                case "STITLE":
+                    builder.withTitle(nextStringOrNull(reader));
+                    break;
+                case "SSUBTITLE":
+                    builder.withSubTitle(nextStringOrNull(reader));
+                    break;
+                case "SFOLGE":
+                    builder.withEpisode(nextStringOrNull(reader));
+                    break;
+                case "IDAYSLEFTBEFOREDELETE":
+                    builder.withDaysLeft(reader.nextInt());
+                    break;
+                case "ARRALLOWDDOWNLOADFORMATS":
+                    builder.withAvailableFormats(readAvailableFormats(reader));
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        return builder.build();
+    }
+
+    private Set<RecordingFormat> readAvailableFormats(JsonReader reader) throws IOException {
+        Set<RecordingFormat> formats = new HashSet<>();
+
+        reader.beginArray();
+        while (reader.hasNext()) {
+            boolean isCut = false;
+            int recordFormatId = 0;
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "BADCUTENABLED":
+                        isCut = nextBoolean(reader);
+                        break;
+                    case "RECORDINGFORMATID":
+                        recordFormatId = reader.nextInt();
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            formats.add(RecordingFormat.of(isCut, RecordingFormat.Quality.fromCode(recordFormatId)));
+        }
+        reader.endArray();
+
+        return formats;
+    }
+
+    /**
+     * Reads a boolean the same way {@link JsonElement#getAsBoolean()} does, which also accepts strings.
+     */
+    private boolean nextBoolean(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.BOOLEAN) {
+            return reader.nextBoolean();
+        }
+        return Boolean.parseBoolean(reader.nextString());
+    }
+
+    private String nextStringOrNull(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        return reader.nextString();
     }
 
     private JsonObject toJsonObject(String json) {
@@ -27,18 +27,41 @@ public class Recording {
     private final int daysLeft;
     private final Set<RecordingFormat> availableFormats;
 
+    /**
+     * The search term of the listing which contained the recording. Empty, if the listing was not filtered.
+     */
+    private final String searchTerm;
+
+    /**
+     * The available formats as bitmask, see {@link RecordingFormat#getIndex()}.
+     */
+    private final int availableFormatMask;
+
     private Recording(long telecastId,
                       String title,
                       String subTitle,
                       String episode,
                       int daysLeft,
-                      Set<RecordingFormat> availableFormats) {
+                      Set<RecordingFormat> availableFormats,
+                      String searchTerm) {
         this.telecastId = telecastId;
         this.title = title;
         this.subTitle = subTitle;
         this.episode = episode;
         this.daysLeft = daysLeft;
         this.availableFormats = availableFormats;
+        this.searchTerm = searchTerm;
+        this.availableFormatMask = toMask(availableFormats);
+    }
+
+    private static int toMask(Set<RecordingFormat> formats) {
+        int mask = 0;
+        if (formats != null) {
+            for (RecordingFormat format : formats) {
+                mask |= 1 << format.getIndex();
+            }
+        }
+        return mask;
     }
 
     public long getTelecastId() {
@@ -65,6 +88,33 @@ public class Recording {
         return new ArrayList<>(availableFormats);
     }
 
+    /**
+     * @return the available formats as bitmask, in which the bit <code>1 &lt;&lt; index</code> is set for every
+     * available {@link RecordingFormat}
+     */
+    public int getAvailableFormatMask() {
+        return availableFormatMask;
+    }
+
+    /**
+     * @return the search term of the listing which contained the recording, or an empty string if the whole
+     * online-archive was listed
+     */
+    public String getSearchTerm() {
+        // Recordings queued by a previous version were stored without a search term
+        return searchTerm == null ? "" : searchTerm;
+    }
+
+    /**
+     * Creates a copy of this recording, which was listed by the given search term.
+     *
+     * @param searchTerm the search term of the listing
+     * @return the copy of this {@link Recording}
+     */
+    public Recording foundBy(String searchTerm) {
+        return new Recording(telecastId, title, subTitle, episode, daysLeft, availableFormats, searchTerm);
+    }
+
     /**
      * This builder is used to create a {@link Recording} in a fluent way.
      * <p>
@@ -79,6 +129,7 @@ public class Recording {
         private String episode;
         private int daysLeft;
         private Set<RecordingFormat> availableFormats;
+        private String searchTerm = "";
 
         /**
          * Adds the unique id to the {@link Recording} to be built.
@@ -153,13 +204,25 @@ public class Recording {
             return this;
         }
 
+        /**
+         * Adds the search term of the listing, which contained the {@link Recording} to be built.
+         *
+         * @param searchTerm the search term, or an empty string if the listing was not filtered
+         * @return <code>this</code>, for fluent style
+         */
+        public Builder withSearchTerm(String searchTerm) {
+            this.searchTerm = searchTerm;
+
+            return this;
+        }
+
         /**
          * Builds the {@link Recording} with the defined values.
          *
          * @return the built {@link Recording}
          */
         public Recording build() {
-            return new Recording(telecastId, title, subTitle, episode, daysLeft, availableFormats);
+            return new Recording(telecastId, title, subTitle, episode, daysLeft, availableFormats, searchTerm);
         }
 
     }
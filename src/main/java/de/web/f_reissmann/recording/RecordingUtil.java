@@ -1,10 +1,9 @@
 package de.web.f_reissmann.recording;
 
-import de.web.f_reissmann.recording.format.RecordingFormat;
-import org.apache.commons.lang3.StringUtils;
+import java.util.Comparator;
 
 /**
- * Utility-Class used for formatting a recording as raw-filename String.
+ * Utility-Class for handling recordings.
  *
  * @author Fabian Reißmann
  * @since 23.02.2017
@@ -16,32 +15,13 @@ public final class RecordingUtil {
     }
 
     /**
-     * Uses the given {@link Recording} to create a raw filename String.
+     * The order in which recordings should be downloaded.
      * <p>
-     * Attention:
-     * Raw means, that there might be characters which are not allowed to be present in a filename
+     * Recordings which will be removed soon come first, to not loose recordings due to automatic deletion.
      *
-     * @param recording the {@link Recording} to use for creating the filename
-     * @param format    the {@link RecordingFormat} to use for creating the filename
-     * @return a raw filename String
+     * @return a {@link Comparator} ordering by the days left before deletion
      */
-    public static String toFilename(Recording recording, RecordingFormat format) {
-        StringBuilder builder = new StringBuilder()
-                .append(recording.getTitle());
-
-        tryAppend(builder, recording.getEpisode());
-        tryAppend(builder, recording.getSubTitle());
-        tryAppend(builder, format.getQualityName());
-        tryAppend(builder, String.valueOf(recording.getTelecastId()));
-
-        return builder.toString()
-                .replaceAll(" ", "_");
-    }
-
-    private static void tryAppend(StringBuilder builder, String title) {
-        if (StringUtils.isNotEmpty(title)) {
-            builder.append('-');
-            builder.append(title);
-        }
+    public static Comparator<Recording> byDaysLeft() {
+        return Comparator.comparingInt(Recording::getDaysLeft);
     }
 }
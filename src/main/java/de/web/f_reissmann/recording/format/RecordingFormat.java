@@ -1,20 +1,35 @@
 package de.web.f_reissmann.recording.format;
 
 import de.web.f_reissmann.recording.Recording;
-import de.web.f_reissmann.recording.format.selection.SelectionStrategyFactory;
 
-import java.util.stream.Stream;
 
 /**
  * Represents one possible format in which a {@link Recording} can be downloaded.
  * <p>
  * Instances of this class are <code>strictly immutable</code>.
+ * <p>
+ * There are only six formats, so every format has a fixed {@link #getIndex() index}. A set of formats can therefore be
+ * represented by a bitmask, and {@link #of(boolean, Quality)} returns shared instances instead of creating new ones.
  *
  * @author Fabian Reißmann
  * @since 19.02.2017
  */
 public class RecordingFormat {
 
+    /**
+     * The number of different formats. Every index is below this count.
+     */
+    public static final int COUNT = 2 * Quality.VALUES.length;
+
+    private static final RecordingFormat[] BY_INDEX = new RecordingFormat[COUNT];
+
+    static {
+        for (Quality quality : Quality.VALUES) {
+            BY_INDEX[indexOf(false, quality)] = new RecordingFormat(false, quality);
+            BY_INDEX[indexOf(true, quality)] = new RecordingFormat(true, quality);
+        }
+    }
+
     /**
      * Whether or not the downloaded {@link Recording} will be cut (which means is free of ads).
      */
@@ -53,11 +68,45 @@ public class RecordingFormat {
         return quality.name();
     }
 
-    public static RecordingFormat getPreferredFormat(Recording recording, String formatSelection) {
-        SelectionStrategyFactory.Order selectionOrder = SelectionStrategyFactory.Order.valueOf(formatSelection);
+    /**
+     * The index of this format, from 0 to {@link #COUNT} (exclusive). The bit <code>1 &lt;&lt; index</code> stands
+     * for this format within a bitmask of formats.
+     *
+     * @return the index
+     */
+    public int getIndex() {
+        return indexOf(isCut, quality);
+    }
+
+    /**
+     * Returns the shared instance of the given format.
+     *
+     * @param isCut   if the format is without advertisement.
+     * @param quality the quality of the format
+     * @return the {@link RecordingFormat}
+     */
+    public static RecordingFormat of(boolean isCut, Quality quality) {
+        return BY_INDEX[indexOf(isCut, quality)];
+    }
 
-        return SelectionStrategyFactory.create(selectionOrder)
-                .selectFormat(recording);
+    /**
+     * Returns the shared instance of the format with the given index.
+     *
+     * @param index the index of the format
+     * @return the {@link RecordingFormat}
+     * @throws ArrayIndexOutOfBoundsException if there is no format with that index
+     */
+    public static RecordingFormat ofIndex(int index) {
+        return BY_INDEX[index];
+    }
+
+    private static int indexOf(boolean isCut, Quality quality) {
+        return (isCut ? Quality.VALUES.length : 0) + quality.ordinal();
+    }
+
+    @Override
+    public String toString() {
+        return (isCut ? "cut " : "uncut ") + quality.name();
     }
 
     /**
@@ -73,6 +122,8 @@ public class RecordingFormat {
         SD(5),
         HD(6);
 
+        private static final Quality[] VALUES = values();
+
         private final int formatCode;
 
         Quality(int formatCode) {
@@ -91,10 +142,12 @@ public class RecordingFormat {
          * @throws IllegalArgumentException if there is no {@link Quality} for that code
          */
         public static Quality fromCode(int codeToCheck) {
-            return Stream.of(Quality.values())
-                    .filter(quality -> quality.getFormatCode() == codeToCheck)
-                    .findFirst()
-                    .orElseThrow(IllegalArgumentException::new);
+            for (Quality quality : VALUES) {
+                if (quality.getFormatCode() == codeToCheck) {
+                    return quality;
+                }
+            }
+            throw new IllegalArgumentException("Unknown quality-code: " + codeToCheck);
         }
     }
 }
@@ -0,0 +1,225 @@
+package de.web.f_reissmann.recording.format.selection;
+
+import de.web.f_reissmann.recording.Recording;
+import de.web.f_reissmann.recording.format.RecordingFormat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Selects the preferred {@link RecordingFormat} of a {@link Recording}, as defined by a preference rule.
+ * <p>
+ * A rule lists the preferred formats first, separated by "&gt;" (or ","), e.g. "cut HD &gt; cut SD &gt; uncut HD".
+ * Every clause consists of the words "cut", "uncut", "HD", "SD", "MOBILE" or "any" and matches all formats which
+ * fit all of its words, so "cut" matches every ad-free format. A clause starting with "never" excludes the formats it
+ * matches, e.g. "cut &gt; never MOBILE". Formats matched by the same clause, and formats which are not mentioned at all,
+ * follow in the order of {@link Order#CUT_BEST_QUALITY}. The names of the {@link Order}s are accepted as rules, too.
+ * <p>
+ * The rule is compiled once into a table, which holds the selected format for every possible set of available formats.
+ * Selecting a format therefore only looks up the {@link Recording#getAvailableFormatMask() bitmask} of the recording.
+ * <p>
+ * Instances of this class are <code>strictly immutable</code>.
+ *
+ * @author Fabian Reißmann
+ * @since 30.03.2017
+ */
+public final class FormatPreference {
+
+    private static final Pattern CLAUSE_SEPARATOR = Pattern.compile("[>,]");
+    private static final Pattern WORD_SEPARATOR = Pattern.compile("\\s+");
+    private static final String NEVER = "never";
+
+    /**
+     * The selected format for every bitmask of available formats, or null if none of them is allowed.
+     */
+    private final RecordingFormat[] selected = new RecordingFormat[1 << RecordingFormat.COUNT];
+
+    /**
+     * The allowed formats, the preferred one first.
+     */
+    private final List<RecordingFormat> ranking;
+
+    private final String rule;
+
+    private FormatPreference(String rule, List<RecordingFormat> ranking) {
+        this.rule = rule;
+        this.ranking = Collections.unmodifiableList(ranking);
+
+        for (int mask = 0; mask < selected.length; mask++) {
+            for (RecordingFormat format : ranking) {
+                if ((mask & (1 << format.getIndex())) != 0) {
+                    selected[mask] = format;
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Compiles the given rule, or the rule of the {@link Order} with the given name.
+     *
+     * @param rule the rule, e.g. "cut HD &gt; cut SD &gt; never MOBILE", or the name of an {@link Order}
+     * @return the compiled {@link FormatPreference}
+     * @throws IllegalArgumentException if the rule is invalid or excludes every format
+     */
+    public static FormatPreference compile(String rule) {
+        String trimmed = rule == null ? "" : rule.trim();
+        for (Order order : Order.values()) {
+            if (order.name().equals(trimmed)) {
+                return compileRule(order.name(), order.rule);
+            }
+        }
+        return compileRule(trimmed, trimmed);
+    }
+
+    private static FormatPreference compileRule(String name, String rule) {
+        List<RecordingFormat> ranking = new ArrayList<>();
+        int excluded = 0;
+
+        for (String clause : CLAUSE_SEPARATOR.split(rule)) {
+            List<String> words = new ArrayList<>();
+            for (String word : WORD_SEPARATOR.split(clause.trim())) {
+                if (!word.isEmpty()) {
+                    words.add(word.toLowerCase(Locale.ROOT));
+                }
+            }
+
+            boolean never = !words.isEmpty() && NEVER.equals(words.get(0));
+            int matched = matchClause(never ? words.subList(1, words.size()) : words, clause, rule);
+
+            if (never) {
+                excluded |= matched;
+            } else {
+                addInDefaultOrder(ranking, matched);
+            }
+        }
+        addInDefaultOrder(ranking, -1);
+
+        int allowedExcluded = excluded;
+        ranking.removeIf(format -> (allowedExcluded & (1 << format.getIndex())) != 0);
+        if (ranking.isEmpty()) {
+            throw new IllegalArgumentException("The format-rule excludes every format: '" + rule + "'");
+        }
+        return new FormatPreference(name, ranking);
+    }
+
+    /**
+     * @return the bitmask of the formats matching all given words
+     */
+    private static int matchClause(List<String> words, String clause, String rule) {
+        if (words.isEmpty()) {
+            throw new IllegalArgumentException("Empty clause '" + clause.trim() + "' in format-rule: '" + rule + "'");
+        }
+
+        Boolean cut = null;
+        RecordingFormat.Quality quality = null;
+        for (String word : words) {
+            switch (word) {
+                case "cut":
+                case "uncut":
+                    boolean wantsCut = "cut".equals(word);
+                    if (cut != null && cut != wantsCut) {
+                        throw new IllegalArgumentException("Contradicting clause '" + clause.trim()
+                                + "' in format-rule: '" + rule + "'");
+                    }
+                    cut = wantsCut;
+                    break;
+                case "any":
+                    break;
+                default:
+                    RecordingFormat.Quality named = toQuality(word, clause, rule);
+                    if (quality != null && quality != named) {
+                        throw new IllegalArgumentException("Contradicting clause '" + clause.trim()
+                                + "' in format-rule: '" + rule + "'");
+                    }
+                    quality = named;
+            }
+        }
+
+        int matched = 0;
+        for (boolean isCut : new boolean[]{true, false}) {
+            for (RecordingFormat.Quality each : RecordingFormat.Quality.values()) {
+                if ((cut == null || cut == isCut) && (quality == null || quality == each)) {
+                    matched |= 1 << RecordingFormat.of(isCut, each).getIndex();
+                }
+            }
+        }
+        return matched;
+    }
+
+    private static RecordingFormat.Quality toQuality(String word, String clause, String rule) {
+        try {
+            return RecordingFormat.Quality.valueOf(word.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown word '" + word + "' in clause '" + clause.trim()
+                    + "' of format-rule: '" + rule + "'", e);
+        }
+    }
+
+    /**
+     * Adds the formats of the given bitmask which are not ranked yet: cut first, then the best quality first.
+     */
+    private static void addInDefaultOrder(List<RecordingFormat> ranking, int mask) {
+        for (boolean cut : new boolean[]{true, false}) {
+            RecordingFormat.Quality[] qualities = RecordingFormat.Quality.values();
+            for (int i = qualities.length - 1; i >= 0; i--) {
+                RecordingFormat format = RecordingFormat.of(cut, qualities[i]);
+                if ((mask & (1 << format.getIndex())) != 0 && !ranking.contains(format)) {
+                    ranking.add(format);
+                }
+            }
+        }
+    }
+
+    /**
+     * Selects the preferred format of the given {@link Recording}.
+     *
+     * @param recording the {@link Recording} to select the format from
+     * @return the preferred {@link RecordingFormat}
+     * @throws IllegalStateException if none of the available formats is allowed
+     */
+    public RecordingFormat select(Recording recording) {
+        RecordingFormat format = selected[recording.getAvailableFormatMask()];
+        if (format == null) {
+            throw new IllegalStateException("None of the formats of '" + recording.getTitle()
+                    + "' is allowed by the format-rule: '" + rule + "'");
+        }
+        return format;
+    }
+
+    /**
+     * @return the allowed formats, the preferred one first
+     */
+    public List<RecordingFormat> getRanking() {
+        return ranking;
+    }
+
+    @Override
+    public String toString() {
+        return rule + " (" + ranking.stream().map(RecordingFormat::toString).collect(Collectors.joining(" > ")) + ")";
+    }
+
+    /**
+     * The predefined rules.
+     */
+    public enum Order {
+        // At first cut and with best possible quality
+        CUT_BEST_QUALITY("cut HD > cut SD > cut MOBILE > uncut HD > uncut SD > uncut MOBILE"),
+        // At first cut and with lowest possible quality
+        CUT_LOWEST_QUALITY("cut MOBILE > cut SD > cut HD > uncut MOBILE > uncut SD > uncut HD");
+
+        private final String rule;
+
+        Order(String rule) {
+            this.rule = rule;
+        }
+
+        public String getRule() {
+            return rule;
+        }
+    }
+}
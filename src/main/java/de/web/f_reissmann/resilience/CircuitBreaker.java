@@ -0,0 +1,98 @@
+package de.web.f_reissmann.resilience;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Stops calling an endpoint of save.tv for a while, once it failed several times in a row.
+ * <p>
+ * While the breaker is closed, every call passes. After the configured number of consecutive failures it opens and
+ * rejects every call with a {@link CircuitOpenException}. Once the open duration passed, it lets one trial call pass
+ * ("half-open"): if it succeeds the breaker closes, otherwise it opens again.
+ *
+ * @author Fabian Reißmann
+ * @since 30.03.2017
+ */
+class CircuitBreaker {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    private final String endpoint;
+    private final int failureThreshold;
+    private final long openMillis;
+    private final LongSupplier currentMillis;
+
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean open;
+    private boolean trialRunning;
+
+    /**
+     * Ctor.
+     *
+     * @param endpoint         the endpoint which is protected, used for logging
+     * @param failureThreshold the number of consecutive failures which open the breaker
+     * @param openMillis       how long the breaker stays open before a trial call is let through
+     * @param currentMillis    the source of the time, e.g. {@link System#currentTimeMillis()}
+     */
+    CircuitBreaker(String endpoint, int failureThreshold, long openMillis, LongSupplier currentMillis) {
+        this.endpoint = endpoint;
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+        this.currentMillis = currentMillis;
+    }
+
+    /**
+     * Must be called before every call.
+     *
+     * @throws CircuitOpenException if the call must not be made
+     */
+    synchronized void acquirePermission() throws CircuitOpenException {
+        if (!open) {
+            return;
+        }
+
+        long remaining = openedAt + openMillis - currentMillis.getAsLong();
+        if (remaining > 0 || trialRunning) {
+            throw new CircuitOpenException(endpoint, Math.max(remaining, 0));
+        }
+        trialRunning = true;
+    }
+
+    /**
+     * Must be called after a call which succeeded.
+     */
+    synchronized void onSuccess() {
+        if (open) {
+            LOGGER.info("Circuit breaker of '{}' closed again", endpoint);
+        }
+        open = false;
+        trialRunning = false;
+        consecutiveFailures = 0;
+    }
+
+    /**
+     * Must be called after a call which failed due to save.tv or the network.
+     */
+    synchronized void onFailure() {
+        consecutiveFailures++;
+
+        if (trialRunning || (!open && consecutiveFailures >= failureThreshold)) {
+            LOGGER.warn("Circuit breaker of '{}' opened for {} ms after {} consecutive failures", endpoint,
+                    openMillis, consecutiveFailures);
+            open = true;
+            trialRunning = false;
+            openedAt = currentMillis.getAsLong();
+        }
+    }
+
+    /**
+     * Must be called after a call which failed for a reason which does not tell anything about the endpoint, e.g.
+     * a wrong request. Only releases the trial call.
+     */
+    synchronized void onIgnoredFailure() {
+        trialRunning = false;
+    }
+}
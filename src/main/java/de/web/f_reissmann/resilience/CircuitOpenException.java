@@ -0,0 +1,29 @@
+package de.web.f_reissmann.resilience;
+
+import java.io.IOException;
+
+/**
+ * Thrown instead of calling an endpoint, whose {@link CircuitBreaker} is open.
+ *
+ * @author Fabian Reißmann
+ * @since 30.03.2017
+ */
+public class CircuitOpenException extends IOException {
+
+    private final long remainingMillis;
+
+    /**
+     * Ctor.
+     *
+     * @param endpoint        the endpoint which was not called
+     * @param remainingMillis the time until the circuit breaker lets a trial call pass
+     */
+    CircuitOpenException(String endpoint, long remainingMillis) {
+        super("Circuit breaker of '" + endpoint + "' is open for another " + remainingMillis + " ms");
+        this.remainingMillis = remainingMillis;
+    }
+
+    public long getRemainingMillis() {
+        return remainingMillis;
+    }
+}
@@ -0,0 +1,28 @@
+package de.web.f_reissmann.resilience;
+
+/**
+ * The kinds of errors, which decide whether a failed call is repeated.
+ *
+ * @author Fabian Reißmann
+ * @since 30.03.2017
+ */
+public enum ErrorClass {
+    // The network failed, e.g. a timeout, a refused or reset connection. Retried
+    TRANSIENT(true),
+    // save.tv failed with a status of 5xx or 429. Retried and counted by the circuit breaker
+    SERVER(true),
+    // The credentials or the session were refused. Not retried, the session handling already tried to login again
+    AUTH(false),
+    // The request itself is wrong (4xx) or the result is unusable, so repeating it does not help
+    PERMANENT(false);
+
+    private final boolean retryable;
+
+    ErrorClass(boolean retryable) {
+        this.retryable = retryable;
+    }
+
+    public boolean isRetryable() {
+        return retryable;
+    }
+}
@@ -0,0 +1,71 @@
+package de.web.f_reissmann.resilience;
+
+import org.apache.http.HttpStatus;
+
+import javax.net.ssl.SSLHandshakeException;
+import javax.net.ssl.SSLPeerUnverifiedException;
+import java.io.IOException;
+
+/**
+ * Utility-Class deciding to which {@link ErrorClass} a failure belongs.
+ * <p>
+ * The chain of causes is examined, so a failure wrapped e.g. by a {@link java.util.concurrent.CompletionException}
+ * is classified by its origin.
+ *
+ * @author Fabian Reißmann
+ * @since 30.03.2017
+ */
+public final class ErrorClassifier {
+
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    private ErrorClassifier() {
+        throw new UnsupportedOperationException("Utility-Class should not be instantiated.");
+    }
+
+    /**
+     * Classifies the given failure.
+     *
+     * @param failure the failure of a call
+     * @return the {@link ErrorClass} of the failure
+     */
+    public static ErrorClass classify(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof HttpStatusException) {
+                return classifyStatus(((HttpStatusException) cause).getStatus());
+            }
+            if (cause instanceof PermanentFailureException
+                    || cause instanceof SSLHandshakeException
+                    || cause instanceof SSLPeerUnverifiedException) {
+                return ErrorClass.PERMANENT;
+            }
+            if (cause instanceof CircuitOpenException) {
+                return ErrorClass.SERVER;
+            }
+            if (cause.getCause() == null || cause.getCause() == cause) {
+                // Timeouts, refused and reset connections or streams ending too early
+                return cause instanceof IOException ? ErrorClass.TRANSIENT : ErrorClass.PERMANENT;
+            }
+        }
+        return ErrorClass.PERMANENT;
+    }
+
+    /**
+     * Classifies a received HTTP-status.
+     *
+     * @param status the HTTP-status
+     * @return the {@link ErrorClass} of the status
+     */
+    public static ErrorClass classifyStatus(int status) {
+        if (status >= HttpStatus.SC_INTERNAL_SERVER_ERROR || status == TOO_MANY_REQUESTS) {
+            return ErrorClass.SERVER;
+        }
+        if (status == HttpStatus.SC_UNAUTHORIZED || status == HttpStatus.SC_FORBIDDEN) {
+            return ErrorClass.AUTH;
+        }
+        if (status == HttpStatus.SC_REQUEST_TIMEOUT) {
+            return ErrorClass.TRANSIENT;
+        }
+        return status >= HttpStatus.SC_BAD_REQUEST ? ErrorClass.PERMANENT : ErrorClass.TRANSIENT;
+    }
+}
@@ -0,0 +1,29 @@
+package de.web.f_reissmann.resilience;
+
+import java.io.IOException;
+
+/**
+ * Thrown if a request was answered with an unexpected HTTP-status. The status is used by the {@link ErrorClassifier}.
+ *
+ * @author Fabian Reißmann
+ * @since 30.03.2017
+ */
+public class HttpStatusException extends IOException {
+
+    private final int status;
+
+    /**
+     * Ctor.
+     *
+     * @param status  the received status
+     * @param message the detail message
+     */
+    public HttpStatusException(int status, String message) {
+        super(message);
+        this.status = status;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+}
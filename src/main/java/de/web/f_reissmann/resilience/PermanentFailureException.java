@@ -0,0 +1,22 @@
+package de.web.f_reissmann.resilience;
+
+import java.io.IOException;
+
+/**
+ * Thrown if a call failed in a way which repeating it can not fix, e.g. a downloaded file which is broken on the server.
+ *
+ * @author Fabian Reißmann
+ * @since 30.03.2017
+ */
+public class PermanentFailureException extends IOException {
+
+    /**
+     * Ctor.
+     *
+     * @param message the detail message
+     * @param cause   the cause of the failure
+     */
+    public PermanentFailureException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,133 @@
+package de.web.f_reissmann.resilience;
+
+import de.web.f_reissmann.config.SaveTvConfig;
+import de.web.f_reissmann.metrics.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Makes the calls to save.tv resilient against temporary failures.
+ * <p>
+ * Every failure is classified by the {@link ErrorClassifier}. Transient and server errors are retried according to
+ * the {@link RetryPolicy}, all others are thrown right away. Every endpoint has its own {@link CircuitBreaker}, which
+ * is opened by consecutive server and network errors. While it is open, the calls to the endpoint wait until the
+ * breaker lets a trial call pass, instead of adding load to a failing service.
+ *
+ * @author Fabian Reißmann
+ * @since 30.03.2017
+ */
+public class ResilientCaller {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ResilientCaller.class);
+
+    private final RetryPolicy retryPolicy;
+    private final int failureThreshold;
+    private final long openMillis;
+    private final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+    /**
+     * Ctor.
+     *
+     * @param retryPolicy      defines how often and after which delays a call is repeated
+     * @param failureThreshold the number of consecutive failures which open the circuit breaker of an endpoint
+     * @param openMillis       how long a circuit breaker stays open before a trial call is let through
+     */
+    public ResilientCaller(RetryPolicy retryPolicy, int failureThreshold, long openMillis) {
+        this.retryPolicy = retryPolicy;
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+    }
+
+    /**
+     * Creates the {@link ResilientCaller} configured by the given {@link SaveTvConfig}.
+     *
+     * @param config the config including the retry and circuit breaker settings
+     * @return a new {@link ResilientCaller}
+     */
+    public static ResilientCaller from(SaveTvConfig config) {
+        RetryPolicy retryPolicy = new RetryPolicy(config.getRetryAttempts(), config.getRetryInitialBackoffMillis(),
+                config.getRetryMaxBackoffMillis(), config.getRetryBackoffMultiplier(), config.getRetryJitter());
+
+        return new ResilientCaller(retryPolicy, config.getCircuitFailureThreshold(),
+                TimeUnit.SECONDS.toMillis(config.getCircuitOpenSeconds()));
+    }
+
+    /**
+     * Makes the given call, repeating it if it failed temporarily.
+     *
+     * @param endpoint the called endpoint, e.g. "VideoArchiveApi". Every endpoint has its own circuit breaker
+     * @param call     the call to make
+     * @param <T>      the type of the result
+     * @return the result of the first successful attempt
+     * @throws IOException the failure of the last attempt, or the first failure which is not retried
+     */
+    public <T> T call(String endpoint, Call<T> call) throws IOException {
+        CircuitBreaker breaker = breakers.computeIfAbsent(endpoint,
+                name -> new CircuitBreaker(name, failureThreshold, openMillis, System::currentTimeMillis));
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                breaker.acquirePermission();
+                T result = call.call();
+                breaker.onSuccess();
+                return result;
+            } catch (CircuitOpenException e) {
+                if (attempt >= retryPolicy.getMaxAttempts()) {
+                    throw e;
+                }
+                LOGGER.debug("{}, waiting", e.getMessage());
+                sleep(Math.max(e.getRemainingMillis(), backoffMillis(attempt)));
+            } catch (IOException e) {
+                ErrorClass errorClass = ErrorClassifier.classify(e);
+                if (errorClass == ErrorClass.SERVER || errorClass == ErrorClass.TRANSIENT) {
+                    breaker.onFailure();
+                } else {
+                    breaker.onIgnoredFailure();
+                }
+
+                if (!errorClass.isRetryable() || attempt >= retryPolicy.getMaxAttempts()) {
+                    throw e;
+                }
+
+                long backoff = backoffMillis(attempt);
+                LOGGER.warn("Call of '{}' failed ({}: {}), attempt {} of {}, retrying in {} ms", endpoint, errorClass,
+                        e.getMessage(), attempt, retryPolicy.getMaxAttempts(), backoff);
+                Metrics.retries(endpoint).increment();
+                sleep(backoff);
+            } catch (RuntimeException e) {
+                breaker.onIgnoredFailure();
+                throw e;
+            }
+        }
+    }
+
+    private long backoffMillis(int retry) {
+        return retryPolicy.backoffMillis(retry, ThreadLocalRandom.current().nextDouble());
+    }
+
+    private static void sleep(long millis) throws InterruptedIOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to retry");
+        }
+    }
+
+    /**
+     * One call to save.tv.
+     *
+     * @param <T> the type of the result
+     */
+    @FunctionalInterface
+    public interface Call<T> {
+        T call() throws IOException;
+    }
+}
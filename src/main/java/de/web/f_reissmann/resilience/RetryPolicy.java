@@ -0,0 +1,63 @@
+package de.web.f_reissmann.resilience;
+
+/**
+ * Defines how often and after which delays a failed call is repeated.
+ * <p>
+ * The delays grow exponentially from the initial backoff up to the maximum backoff. A part of every delay is
+ * randomized ("jitter"), so that concurrent downloads which failed together do not retry in lockstep.
+ * <p>
+ * Instances of this class are <code>strictly immutable</code>.
+ *
+ * @author Fabian Reißmann
+ * @since 30.03.2017
+ */
+public class RetryPolicy {
+
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final double multiplier;
+    private final double jitter;
+
+    /**
+     * Ctor.
+     *
+     * @param maxAttempts          the number of attempts in total, 1 to never repeat a call
+     * @param initialBackoffMillis the delay before the first repetition
+     * @param maxBackoffMillis     the longest delay
+     * @param multiplier           the factor by which the delay grows with every repetition
+     * @param jitter               the randomized fraction of every delay, between 0 (fixed) and 1 (fully random)
+     */
+    public RetryPolicy(int maxAttempts, long initialBackoffMillis, long maxBackoffMillis, double multiplier,
+                       double jitter) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("At least one attempt is necessary, but was: " + maxAttempts);
+        }
+        if (jitter < 0 || jitter > 1) {
+            throw new IllegalArgumentException("The jitter must be between 0 and 1, but was: " + jitter);
+        }
+
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.multiplier = multiplier;
+        this.jitter = jitter;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * The delay before the given repetition.
+     *
+     * @param retry  the number of the repetition, starting at 1
+     * @param random a random value between 0 and 1
+     * @return the delay in milliseconds
+     */
+    public long backoffMillis(int retry, double random) {
+        double backoff = Math.min(maxBackoffMillis, initialBackoffMillis * Math.pow(multiplier, retry - 1));
+
+        return Math.round(backoff * (1 - jitter * random));
+    }
+}
@@ -0,0 +1,210 @@
+package de.web.f_reissmann.deletion;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests the {@link DeletionPipeline}, especially confirming the sent deletions against a listing.
+ *
+ * @author Fabian Reißmann
+ * @since 05.04.2017
+ */
+public class DeletionPipelineTest {
+
+    private static final long TIMEOUT_SECONDS = 5L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final BlockingQueue<Long> deleted = new LinkedBlockingQueue<>();
+
+    private File journal;
+    private DeletionPipeline pipeline;
+
+    @After
+    public void close() {
+        if (pipeline != null) {
+            pipeline.close();
+            pipeline = null;
+        }
+    }
+
+    @Test
+    public void confirmsDeletionsWhichAreNoLongerListed() throws InterruptedException {
+        pipeline = open(0L);
+        pipeline.request(1, "");
+        pipeline.request(2, "");
+        assertEquals(Long.valueOf(1), nextDeleted());
+        assertEquals(Long.valueOf(2), nextDeleted());
+        awaitSent();
+
+        pipeline.confirm(Collections.singleton(3L));
+        close();
+
+        assertTrue(DeletionJournal.open(journal).pending().isEmpty());
+    }
+
+    @Test
+    public void sendsDeletionAgainIfStillListed() throws InterruptedException {
+        pipeline = open(0L);
+        pipeline.request(1, "");
+        pipeline.request(2, "");
+        nextDeleted();
+        nextDeleted();
+        awaitSent();
+
+        pipeline.confirm(new HashSet<>(Arrays.asList(2L, 3L)));
+
+        assertEquals(Long.valueOf(2), nextDeleted());
+        close();
+        assertNull(deleted.poll());
+        assertEquals(Collections.singleton(2L), DeletionJournal.open(journal).pending());
+    }
+
+    @Test
+    public void confirmsDeletionWhichWasNotSentYet() {
+        pipeline = open(TimeUnit.HOURS.toMillis(1));
+        pipeline.request(1, "");
+
+        pipeline.confirm(Collections.emptySet());
+        close();
+
+        assertNull(deleted.poll());
+        assertTrue(DeletionJournal.open(journal).pending().isEmpty());
+    }
+
+    @Test
+    public void keepsFailedDeletionPendingAndSendsItAgain() throws InterruptedException {
+        AtomicBoolean failing = new AtomicBoolean(true);
+        BlockingQueue<Long> failed = new LinkedBlockingQueue<>();
+        journal = new File(folder.getRoot(), "deletions.journal");
+        pipeline = new DeletionPipeline(journal, telecastId -> {
+            if (failing.getAndSet(false)) {
+                failed.add(telecastId);
+                throw new IllegalStateException("save.tv did not accept the deletion of " + telecastId);
+            }
+            deleted.add(telecastId);
+        }, 1000.0, 0L);
+
+        pipeline.request(1, "");
+        assertEquals(Long.valueOf(1), failed.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        awaitSent();
+        assertNull(deleted.poll());
+
+        pipeline.confirm(Collections.singleton(1L));
+
+        assertEquals(Long.valueOf(1), nextDeleted());
+    }
+
+    @Test
+    public void holdsBackDeletionsWhilePaused() throws InterruptedException {
+        pipeline = open(0L);
+
+        pipeline.pause();
+        try {
+            pipeline.request(1, "");
+            assertNull(deleted.poll(200, TimeUnit.MILLISECONDS));
+        } finally {
+            pipeline.resume();
+        }
+        assertEquals(Long.valueOf(1), nextDeleted());
+    }
+
+    @Test
+    public void confirmsAgainstFilteredListingIfSearchTermIsConfigured() throws InterruptedException {
+        pipeline = open(0L);
+        pipeline.request(1, "Tatort");
+        pipeline.request(2, "Tatort");
+        nextDeleted();
+        nextDeleted();
+        awaitSent();
+
+        pipeline.confirmFiltered(Collections.singleton(2L), Collections.singletonList("Tatort"), () -> {
+            fail("Every deletion is covered by the search terms, so the complete listing is not needed");
+            return Collections.emptySet();
+        });
+
+        assertEquals(Collections.singleton(2L), DeletionJournal.open(journal).pending());
+    }
+
+    @Test
+    public void retrievesCompleteListingForSearchTermsNoLongerConfigured() throws InterruptedException {
+        pipeline = open(0L);
+        pipeline.request(1, "Tatort");
+        pipeline.request(2, "Polizeiruf");
+        pipeline.request(3, "");
+        nextDeleted();
+        nextDeleted();
+        nextDeleted();
+        awaitSent();
+
+        AtomicBoolean retrieved = new AtomicBoolean();
+        pipeline.confirmFiltered(Collections.emptySet(), Collections.singletonList("Tatort"), () -> {
+            retrieved.set(true);
+            return Collections.singleton(2L);
+        });
+        close();
+
+        assertTrue(retrieved.get());
+        assertEquals(Collections.singleton(2L), DeletionJournal.open(journal).pending());
+    }
+
+    @Test
+    public void survivesRestart() {
+        pipeline = open(TimeUnit.HOURS.toMillis(1));
+        pipeline.request(1, "");
+        pipeline.request(2, "");
+        pipeline.confirm(Collections.singleton(2L));
+
+        assertEquals(Collections.singleton(2L), DeletionJournal.open(journal).pending());
+    }
+
+    @Test
+    public void keepsSearchTermsAcrossRestart() {
+        pipeline = open(TimeUnit.HOURS.toMillis(1));
+        pipeline.request(1, "Tatort");
+        pipeline.request(2, "");
+
+        DeletionJournal reopened = DeletionJournal.open(journal);
+        assertEquals(new HashSet<>(Arrays.asList(1L, 2L)), reopened.pending());
+        assertEquals("Tatort", reopened.searchTermOf(1L));
+        assertEquals("", reopened.searchTermOf(2L));
+    }
+
+    private DeletionPipeline open(long batchDelayMillis) {
+        journal = new File(folder.getRoot(), "deletions.journal");
+        return new DeletionPipeline(journal, deleted::add, 1000.0, batchDelayMillis);
+    }
+
+    /**
+     * A deletion counts as sent once the delete action returned. Pausing waits for the deletions being sent.
+     */
+    private void awaitSent() {
+        pipeline.pause();
+        pipeline.resume();
+    }
+
+    private Long nextDeleted() throws InterruptedException {
+        Long telecastId = deleted.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        if (telecastId == null) {
+            fail("No deletion was sent within " + TIMEOUT_SECONDS + " seconds");
+        }
+        return telecastId;
+    }
+}
@@ -0,0 +1,93 @@
+package de.web.f_reissmann.download;
+
+import org.junit.Test;
+
+import java.time.LocalTime;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests the {@link BandwidthLimiter} with a fake clock, so no test has to wait.
+ *
+ * @author Fabian Reißmann
+ * @since 05.04.2017
+ */
+public class BandwidthLimiterTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final AtomicLong nanos = new AtomicLong(1000L * SECOND);
+    private final AtomicReference<LocalTime> time = new AtomicReference<>(LocalTime.of(12, 0));
+
+    @Test
+    public void waitsForTheDebtOfReservedBytes() {
+        BandwidthLimiter limiter = limiter("1000", "");
+
+        assertEquals(SECOND / 2, limiter.reserve(500));
+        assertEquals(SECOND, limiter.reserve(500));
+    }
+
+    @Test
+    public void refillsWithTheRate() {
+        BandwidthLimiter limiter = limiter("1000", "");
+        limiter.reserve(1000);
+
+        nanos.addAndGet(SECOND * 3 / 2);
+        assertEquals(SECOND / 2, limiter.reserve(1000));
+
+        nanos.addAndGet(SECOND * 3 / 2);
+        assertEquals(0L, limiter.reserve(500));
+    }
+
+    @Test
+    public void savesUpAtMostOneSecondAsBurst() {
+        BandwidthLimiter limiter = limiter("1000", "");
+
+        nanos.addAndGet(60 * SECOND);
+        assertEquals(0L, limiter.reserve(1000));
+        assertEquals(SECOND, limiter.reserve(1000));
+    }
+
+    @Test
+    public void neverWaitsIfUnlimited() {
+        BandwidthLimiter limiter = limiter("0", "");
+
+        assertEquals(0L, limiter.reserve(Long.MAX_VALUE / 2));
+        assertEquals(0L, limiter.reserve(Long.MAX_VALUE / 2));
+    }
+
+    @Test
+    public void appliesNewWindowToRunningDownloads() {
+        time.set(LocalTime.of(7, 59));
+        BandwidthLimiter limiter = limiter("0", "08:00-23:00@1000");
+        assertEquals(0L, limiter.reserve(1_000_000));
+
+        time.set(LocalTime.of(8, 0));
+        nanos.addAndGet(SECOND);
+        assertEquals(2 * SECOND, limiter.reserve(3000));
+
+        time.set(LocalTime.of(23, 0));
+        nanos.addAndGet(SECOND);
+        assertEquals(0L, limiter.reserve(1_000_000));
+    }
+
+    @Test
+    public void checksScheduleOncePerSecondOnly() {
+        BandwidthLimiter limiter = limiter("1000", "13:00-14:00@0");
+        limiter.reserve(1000);
+
+        time.set(LocalTime.of(13, 0));
+        nanos.addAndGet(SECOND / 2);
+        assertEquals(SECOND * 3 / 2, limiter.reserve(1000));
+
+        nanos.addAndGet(SECOND / 2);
+        assertEquals(0L, limiter.reserve(1000));
+    }
+
+    private BandwidthLimiter limiter(String defaultRate, String schedule) {
+        return new BandwidthLimiter(BandwidthSchedule.parse(defaultRate, schedule), time::get, nanos::get);
+    }
+}
@@ -0,0 +1,69 @@
+package de.web.f_reissmann.download;
+
+import org.junit.Test;
+
+import java.time.LocalTime;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests parsing a {@link BandwidthSchedule} and finding the rate of its windows.
+ *
+ * @author Fabian Reißmann
+ * @since 05.04.2017
+ */
+public class BandwidthScheduleTest {
+
+    private static final long MB = 1024 * 1024;
+
+    @Test
+    public void usesWindowContainingTheTime() {
+        BandwidthSchedule schedule = BandwidthSchedule.parse("2M", "08:00-23:00@10M, 23:00-1:00@50M");
+
+        assertEquals(2 * MB, schedule.rateAt(LocalTime.of(7, 59)));
+        assertEquals(10 * MB, schedule.rateAt(LocalTime.of(8, 0)));
+        assertEquals(10 * MB, schedule.rateAt(LocalTime.of(22, 59, 59)));
+        assertEquals(50 * MB, schedule.rateAt(LocalTime.of(23, 0)));
+        assertEquals(50 * MB, schedule.rateAt(LocalTime.MIDNIGHT));
+        assertEquals(50 * MB, schedule.rateAt(LocalTime.of(0, 59)));
+        assertEquals(2 * MB, schedule.rateAt(LocalTime.of(1, 0)));
+    }
+
+    @Test
+    public void firstWindowWins() {
+        BandwidthSchedule schedule = BandwidthSchedule.parse("0", "08:00-12:00@1K,10:00-14:00@2K");
+
+        assertEquals(1024, schedule.rateAt(LocalTime.of(11, 0)));
+        assertEquals(2048, schedule.rateAt(LocalTime.of(12, 0)));
+        assertEquals(BandwidthSchedule.UNLIMITED, schedule.rateAt(LocalTime.of(14, 0)));
+    }
+
+    @Test
+    public void usesDefaultWithoutWindows() {
+        assertEquals(512 * 1024, BandwidthSchedule.parse("512K", null).rateAt(LocalTime.NOON));
+        assertEquals(512 * 1024, BandwidthSchedule.parse("512K", "").rateAt(LocalTime.NOON));
+    }
+
+    @Test
+    public void parsesRatesWithBinarySuffixes() {
+        assertEquals(100, BandwidthSchedule.parseRate("100"));
+        assertEquals(1024, BandwidthSchedule.parseRate(" 1k "));
+        assertEquals(10 * MB, BandwidthSchedule.parseRate("10MB/s"));
+        assertEquals(1024 * MB, BandwidthSchedule.parseRate("1G"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsInvalidRate() {
+        BandwidthSchedule.parseRate("10X");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsWindowWithoutRate() {
+        BandwidthSchedule.parse("0", "08:00-23:00");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsInvalidTime() {
+        BandwidthSchedule.parse("0", "08:00-25:00@1M");
+    }
+}
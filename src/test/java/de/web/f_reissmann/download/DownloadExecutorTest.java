@@ -0,0 +1,202 @@
+package de.web.f_reissmann.download;
+
+import de.web.f_reissmann.recording.Recording;
+import de.web.f_reissmann.recording.RecordingUtil;
+import de.web.f_reissmann.recording.format.RecordingFormat;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests the {@link DownloadExecutor}: the order in which the jobs are handed out, that <code>onSuccess</code> is only
+ * called for finished downloads, and the deferral of downloads which do not fit on the disk.
+ *
+ * @author Fabian Reißmann
+ * @since 06.04.2017
+ */
+public class DownloadExecutorTest {
+
+    private static final long TIMEOUT_SECONDS = 5L;
+
+    private static final RecordingFormat FORMAT = RecordingFormat.of(false, RecordingFormat.Quality.SD);
+
+    /**
+     * The telecast-ids in the order their downloads finished.
+     */
+    private final List<Long> downloaded = Collections.synchronizedList(new ArrayList<>());
+
+    /**
+     * The telecast-ids <code>onSuccess</code> was called for.
+     */
+    private final List<Long> succeeded = Collections.synchronizedList(new ArrayList<>());
+
+    private DownloadExecutor executor;
+
+    @After
+    public void close() {
+        if (executor != null) {
+            executor.close();
+        }
+    }
+
+    @Test
+    public void handsOutRecordingsRemovedSoonFirst() {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        executor = new DownloadExecutor(1, recording -> {
+            if (recording.getTelecastId() == 1L) {
+                started.countDown();
+                await(release);
+            }
+            return download(recording);
+        }, RecordingUtil.byDaysLeft());
+
+        // Occupies the only worker, so the others are waiting while they are submitted
+        executor.submit(recording(1, 1), this::onSuccess);
+        await(started);
+        executor.submit(recording(2, 30), this::onSuccess);
+        executor.submit(recording(3, 7), this::onSuccess);
+        executor.submit(recording(4, 2), this::onSuccess);
+        executor.submit(recording(5, 7), this::onSuccess);
+        release.countDown();
+
+        assertEquals(5, executor.awaitCompletion());
+        assertEquals(Arrays.asList(1L, 4L, 3L, 5L, 2L), downloaded);
+    }
+
+    @Test
+    public void callsOnSuccessOnlyForFinishedDownloads() throws Exception {
+        executor = new DownloadExecutor(2, recording -> {
+            if (recording.getTelecastId() == 2L) {
+                throw new IllegalStateException("Connection reset");
+            }
+            return download(recording);
+        }, RecordingUtil.byDaysLeft());
+
+        CompletableFuture<DownloadResult> first = executor.submit(recording(1, 1), this::onSuccess);
+        CompletableFuture<DownloadResult> failing = executor.submit(recording(2, 1), this::onSuccess);
+        CompletableFuture<DownloadResult> third = executor.submit(recording(3, 1), this::onSuccess);
+
+        assertEquals(2, executor.awaitCompletion());
+        assertEquals(1L, first.get().getRecording().getTelecastId());
+        assertEquals(3L, third.get().getRecording().getTelecastId());
+        assertFailed(failing);
+
+        List<Long> sorted = new ArrayList<>(succeeded);
+        Collections.sort(sorted);
+        assertEquals(Arrays.asList(1L, 3L), sorted);
+    }
+
+    @Test
+    public void completesExceptionallyIfOnSuccessFails() throws Exception {
+        executor = new DownloadExecutor(1, this::download, RecordingUtil.byDaysLeft());
+
+        CompletableFuture<DownloadResult> result = executor.submit(recording(1, 1), downloaded -> {
+            throw new IllegalStateException("Unable to record the download");
+        });
+
+        assertEquals(0, executor.awaitCompletion());
+        assertFailed(result);
+    }
+
+    @Test
+    public void defersDownloadWhichDoesNotFit() throws Exception {
+        Map<Long, AtomicInteger> attempts = new ConcurrentHashMap<>();
+        executor = new DownloadExecutor(1, recording -> {
+            AtomicInteger attempt = attempts.computeIfAbsent(recording.getTelecastId(), id -> new AtomicInteger());
+            if (recording.getTelecastId() == 1L && attempt.incrementAndGet() == 1) {
+                throw new IllegalStateException("Unable to download",
+                        new InsufficientDiskSpaceException("Not enough space", 1000L, 10L));
+            }
+            return download(recording);
+        }, RecordingUtil.byDaysLeft(), 0, upcoming -> {
+        }, Duration.ofMillis(200), 3);
+
+        CompletableFuture<DownloadResult> deferred = executor.submit(recording(1, 1), this::onSuccess);
+        executor.submit(recording(2, 30), this::onSuccess);
+
+        assertEquals(1L, deferred.get(TIMEOUT_SECONDS, TimeUnit.SECONDS).getRecording().getTelecastId());
+        assertEquals(2, executor.awaitCompletion());
+        assertEquals(2, attempts.get(1L).get());
+        // The recording which still fits is downloaded while the other one is deferred
+        assertEquals(Arrays.asList(2L, 1L), downloaded);
+        assertEquals(Arrays.asList(2L, 1L), succeeded);
+    }
+
+    @Test
+    public void failsAfterTheLastDeferral() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        executor = new DownloadExecutor(1, recording -> {
+            attempts.incrementAndGet();
+            throw new IllegalStateException("Unable to download",
+                    new InsufficientDiskSpaceException("Not enough space", 1000L, 10L));
+        }, RecordingUtil.byDaysLeft(), 0, upcoming -> {
+        }, Duration.ofMillis(10), 2);
+
+        CompletableFuture<DownloadResult> result = executor.submit(recording(1, 1), this::onSuccess);
+
+        assertEquals(0, executor.awaitCompletion());
+        assertFailed(result);
+        assertEquals(3, attempts.get());
+        assertTrue(succeeded.isEmpty());
+    }
+
+    private DownloadResult download(Recording recording) {
+        downloaded.add(recording.getTelecastId());
+        return new DownloadResult(recording, FORMAT, new File(recording.getTelecastId() + ".mp4"), 10L, 10L,
+                Duration.ofMillis(1), "sha256:00");
+    }
+
+    private void onSuccess(DownloadResult result) {
+        succeeded.add(result.getRecording().getTelecastId());
+    }
+
+    private static void assertFailed(CompletableFuture<DownloadResult> result) throws InterruptedException {
+        try {
+            result.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            fail("The download should have failed");
+        } catch (ExecutionException e) {
+            // expected
+        } catch (TimeoutException e) {
+            fail("The download did not complete within " + TIMEOUT_SECONDS + " seconds");
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            if (!latch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("Not released within " + TIMEOUT_SECONDS + " seconds");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Recording recording(long telecastId, int daysLeft) {
+        return new Recording.Builder()
+                .withTelecastId(telecastId)
+                .withTitle("Recording " + telecastId)
+                .withDaysLeft(daysLeft)
+                .withAvailableFormats(Collections.singletonList(FORMAT))
+                .build();
+    }
+}
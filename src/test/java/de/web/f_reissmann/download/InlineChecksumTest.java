@@ -0,0 +1,136 @@
+package de.web.f_reissmann.download;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the {@link InlineChecksum} of downloads in one and in several segments, fresh and resumed.
+ *
+ * @author Fabian Reißmann
+ * @since 06.04.2017
+ */
+public class InlineChecksumTest {
+
+    private static final int LENGTH = 300_000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final byte[] content = new byte[LENGTH];
+
+    {
+        new Random(42).nextBytes(content);
+    }
+
+    @Test
+    public void oneSegmentIsPlainSha256() throws IOException {
+        List<Segment> parts = Arrays.asList(new Segment(0, LENGTH - 1, 0));
+        InlineChecksum checksum = new InlineChecksum(parts);
+
+        writeAll(checksum, parts);
+
+        String value = checksum.value();
+        assertTrue(checksum.isPlain());
+        assertEquals("sha256:" + hex(sha256(content)), value);
+        assertEquals(value, InlineChecksum.sha256Of(file()));
+    }
+
+    @Test
+    public void severalSegmentsCombineTheirDigestsInOrderOfOffsets() throws NoSuchAlgorithmException {
+        List<Segment> parts = Arrays.asList(new Segment(200_000, LENGTH - 1, 0),
+                new Segment(0, 99_999, 0),
+                new Segment(100_000, 199_999, 0));
+        InlineChecksum checksum = new InlineChecksum(parts);
+
+        writeAll(checksum, parts);
+
+        MessageDigest combined = MessageDigest.getInstance("SHA-256");
+        combined.update(sha256(Arrays.copyOfRange(content, 0, 100_000)));
+        combined.update(sha256(Arrays.copyOfRange(content, 100_000, 200_000)));
+        combined.update(sha256(Arrays.copyOfRange(content, 200_000, LENGTH)));
+        assertFalse(checksum.isPlain());
+        assertEquals("sha256x3:" + hex(combined.digest()), checksum.value());
+    }
+
+    @Test
+    public void resumedChecksumEqualsUninterruptedOne() throws IOException {
+        List<Segment> fresh = split();
+        InlineChecksum uninterrupted = new InlineChecksum(fresh);
+        writeAll(uninterrupted, fresh);
+
+        // The first half of every segment was written before the interruption
+        List<Segment> parts = split();
+        Path file = folder.newFile().toPath();
+        byte[] partial = new byte[LENGTH];
+        for (Segment part : parts) {
+            int half = (int) part.length() / 2;
+            System.arraycopy(content, (int) part.getStart(), partial, (int) part.getStart(), half);
+            part.addWritten(half);
+        }
+        Files.write(file, partial);
+
+        InlineChecksum resumed = InlineChecksum.resume(parts, file);
+        for (Segment part : parts) {
+            resumed.digestOf(part).update(content, (int) part.getNextPosition(), (int) part.remaining());
+        }
+
+        assertEquals(uninterrupted.value(), resumed.value());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsForeignSegment() {
+        new InlineChecksum(split()).digestOf(new Segment(0, 99_999, 0));
+    }
+
+    private void writeAll(InlineChecksum checksum, List<Segment> parts) {
+        for (Segment part : parts) {
+            // In blocks, like the DownloadSink does
+            for (long position = part.getStart(); position <= part.getEnd(); position += 4096) {
+                int block = (int) Math.min(4096, part.getEnd() + 1 - position);
+                checksum.digestOf(part).update(content, (int) position, block);
+            }
+        }
+    }
+
+    private Path file() throws IOException {
+        Path file = folder.newFile().toPath();
+        Files.write(file, content);
+        return file;
+    }
+
+    private static List<Segment> split() {
+        return Arrays.asList(new Segment(0, 99_999, 0),
+                new Segment(100_000, 199_999, 0),
+                new Segment(200_000, LENGTH - 1, 0));
+    }
+
+    private static byte[] sha256(byte[] bytes) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(bytes);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder();
+        for (byte value : bytes) {
+            hex.append(String.format("%02x", value));
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,116 @@
+package de.web.f_reissmann.download;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Tests the {@link Mp4Verifier} with files made of the top-level boxes only.
+ *
+ * @author Fabian Reißmann
+ * @since 05.04.2017
+ */
+public class Mp4VerifierTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void acceptsCompleteFile() throws IOException {
+        Mp4Verifier.verify(write(box("ftyp", 12), box("moov", 100), box("mdat", 1000)));
+    }
+
+    @Test
+    public void acceptsLargeBoxAndBoxUpToEndOfFile() throws IOException {
+        Mp4Verifier.verify(write(box("ftyp", 12), largeBox("mdat", 1000), box("moov", 100)));
+        Mp4Verifier.verify(write(box("ftyp", 12), box("moov", 100), boxToEndOfFile("mdat", 1000)));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsTruncatedLastBox() throws IOException {
+        byte[] complete = concat(box("ftyp", 12), box("moov", 100), box("mdat", 1000));
+        Mp4Verifier.verify(write(Arrays.copyOf(complete, complete.length - 1)));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsFileTruncatedWithinHeader() throws IOException {
+        byte[] complete = concat(box("ftyp", 12), box("moov", 100), box("mdat", 1000));
+        Mp4Verifier.verify(write(Arrays.copyOf(complete, 12 + 100 + 5)));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsFileTruncatedWithinLargeHeader() throws IOException {
+        byte[] complete = concat(box("ftyp", 12), box("moov", 100), largeBox("mdat", 1000));
+        Mp4Verifier.verify(write(Arrays.copyOf(complete, 12 + 100 + 12)));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsTruncatedLargeBox() throws IOException {
+        byte[] complete = concat(box("ftyp", 12), box("moov", 100), largeBox("mdat", 1000));
+        Mp4Verifier.verify(write(Arrays.copyOf(complete, complete.length - 1)));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsMissingMoov() throws IOException {
+        Mp4Verifier.verify(write(box("ftyp", 12), box("mdat", 1000)));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOtherFirstBox() throws IOException {
+        Mp4Verifier.verify(write(box("moov", 100), box("ftyp", 12), box("mdat", 1000)));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsTrailingBytes() throws IOException {
+        Mp4Verifier.verify(write(box("ftyp", 12), box("moov", 100), box("mdat", 1000), new byte[3]));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsBoxSmallerThanItsHeader() throws IOException {
+        Mp4Verifier.verify(write(box("ftyp", 12), box("moov", 100), header(4, "mdat"), new byte[100]));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsEmptyFile() throws IOException {
+        Mp4Verifier.verify(write());
+    }
+
+    private Path write(byte[]... parts) throws IOException {
+        Path file = folder.newFile().toPath();
+        Files.write(file, concat(parts));
+        return file;
+    }
+
+    private static byte[] box(String type, int size) {
+        return concat(header(size, type), new byte[size - 8]);
+    }
+
+    private static byte[] largeBox(String type, long size) {
+        ByteBuffer largeSize = ByteBuffer.allocate(Long.BYTES).putLong(size);
+        return concat(header(1, type), largeSize.array(), new byte[(int) size - 16]);
+    }
+
+    private static byte[] boxToEndOfFile(String type, int size) {
+        return concat(header(0, type), new byte[size - 8]);
+    }
+
+    private static byte[] header(int size, String type) {
+        return ByteBuffer.allocate(8).putInt(size).put(type.getBytes(StandardCharsets.ISO_8859_1)).array();
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            bytes.write(part, 0, part.length);
+        }
+        return bytes.toByteArray();
+    }
+}
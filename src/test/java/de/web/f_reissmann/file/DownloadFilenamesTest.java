@@ -0,0 +1,78 @@
+package de.web.f_reissmann.file;
+
+import de.web.f_reissmann.recording.Recording;
+import de.web.f_reissmann.recording.format.RecordingFormat;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that the {@link DownloadFilenames} only depend on the recording.
+ *
+ * @author Fabian Reißmann
+ * @since 06.04.2017
+ */
+public class DownloadFilenamesTest {
+
+    private static final RecordingFormat CUT_HD = RecordingFormat.of(true, RecordingFormat.Quality.HD);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void keepsNamesIncludingTelecastId() {
+        DownloadFilenames filenames = filenames(FilenameTemplate.DEFAULT);
+
+        assertEquals(new File(folder.getRoot(), "Tatort-HD-1.mp4"), filenames.fileOf(recording(1), CUT_HD));
+    }
+
+    @Test
+    public void addsTelecastIdIfTemplateLacksIt() {
+        DownloadFilenames filenames = filenames("{title}/{title}-{quality}");
+
+        assertEquals(new File(folder.getRoot(), "Tatort/Tatort-HD-1.mp4"), filenames.fileOf(recording(1), CUT_HD));
+    }
+
+    @Test
+    public void namesDoNotDependOnTheOrder() {
+        DownloadFilenames first = filenames("{title}");
+        DownloadFilenames second = filenames("{title}");
+
+        File one = first.fileOf(recording(1), CUT_HD);
+        File two = first.fileOf(recording(2), CUT_HD);
+
+        assertNotEquals(one, two);
+        assertEquals(two, second.fileOf(recording(2), CUT_HD));
+        assertEquals(one, second.fileOf(recording(1), CUT_HD));
+    }
+
+    @Test
+    public void namesDoNotDependOnExistingFiles() throws IOException {
+        DownloadFilenames filenames = filenames("{title}");
+        File file = filenames.fileOf(recording(1), CUT_HD);
+
+        assertTrue(file.createNewFile());
+
+        assertEquals(file, filenames("{title}").fileOf(recording(1), CUT_HD));
+    }
+
+    private DownloadFilenames filenames(String template) {
+        return new DownloadFilenames(folder.getRoot(), FilenameTemplate.compile(template, FilesystemProfile.POSIX));
+    }
+
+    private static Recording recording(long telecastId) {
+        return new Recording.Builder()
+                .withTelecastId(telecastId)
+                .withTitle("Tatort")
+                .withAvailableFormats(Collections.singleton(CUT_HD))
+                .build();
+    }
+}
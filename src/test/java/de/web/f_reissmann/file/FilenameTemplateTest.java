@@ -0,0 +1,161 @@
+package de.web.f_reissmann.file;
+
+import de.web.f_reissmann.recording.Recording;
+import de.web.f_reissmann.recording.format.RecordingFormat;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the {@link FilenameTemplate} and how the names are sanitized for every {@link FilesystemProfile}.
+ *
+ * @author Fabian Reißmann
+ * @since 05.04.2017
+ */
+public class FilenameTemplateTest {
+
+    private static final RecordingFormat CUT_HD = RecordingFormat.of(true, RecordingFormat.Quality.HD);
+
+    /**
+     * The space of ".mp4.part.progress.tmp" is left free at the end of the name of the file.
+     */
+    private static final int MAX_NAME_LENGTH = 255 - ".mp4.part.progress.tmp".length();
+
+    @Test
+    public void sanitizesPerProfile() {
+        Recording recording = recording("Tatort: Wer?", "A/B", "12");
+
+        assertEquals("Tatort: Wer?-12-A_B-HD-42", render(FilesystemProfile.POSIX, recording));
+        assertEquals("Tatort_ Wer?-12-A_B-HD-42", render(FilesystemProfile.MAC, recording));
+        assertEquals("Tatort_ Wer_-12-A_B-HD-42", render(FilesystemProfile.WINDOWS, recording));
+        assertEquals("Tatort__Wer_-12-A_B-HD-42", render(FilesystemProfile.PORTABLE, recording));
+    }
+
+    @Test
+    public void replacesControlChars() {
+        Recording recording = recording("Eins\tZwei\u007f", null, null);
+
+        for (FilesystemProfile profile : FilesystemProfile.values()) {
+            assertEquals(profile.name(), "Eins_Zwei_-HD-42", render(profile, recording));
+        }
+    }
+
+    @Test
+    public void transliteratesUmlautsForPortableProfile() {
+        Recording recording = recording("Löwenzahn Äpfel Übermaß", null, null);
+
+        assertEquals("Loewenzahn_Aepfel_Uebermass-HD-42", render(FilesystemProfile.PORTABLE, recording));
+        assertEquals("Löwenzahn Äpfel Übermaß-HD-42", render(FilesystemProfile.POSIX, recording));
+    }
+
+    @Test
+    public void leavesOutTextInFrontOfEmptyFields() {
+        assertEquals("Title-HD-42", render(FilesystemProfile.POSIX, recording("Title", "", null)));
+        assertEquals("Title-Sub-HD-42", render(FilesystemProfile.POSIX, recording("Title", "Sub", null)));
+    }
+
+    @Test
+    public void fixesTrailingDotsAndSpacesOnWindowsOnly() {
+        FilenameTemplate template = FilenameTemplate.compile("{title}", FilesystemProfile.WINDOWS);
+
+        assertEquals("Ende_", template.render(recording("Ende.", null, null), CUT_HD, ""));
+        assertEquals("Ende_", template.render(recording("Ende ", null, null), CUT_HD, ""));
+        assertEquals("Ende.", FilenameTemplate.compile("{title}", FilesystemProfile.POSIX)
+                .render(recording("Ende.", null, null), CUT_HD, ""));
+    }
+
+    @Test
+    public void prefixesReservedNamesOnWindowsOnly() {
+        FilenameTemplate template = FilenameTemplate.compile("{title}", FilesystemProfile.WINDOWS);
+
+        assertEquals("_con", template.render(recording("con", null, null), CUT_HD, ""));
+        assertEquals("_Aux.log", template.render(recording("Aux.log", null, null), CUT_HD, ""));
+        assertEquals("LPT10", template.render(recording("LPT10", null, null), CUT_HD, ""));
+        assertEquals("Console", template.render(recording("Console", null, null), CUT_HD, ""));
+        assertEquals("con", FilenameTemplate.compile("{title}", FilesystemProfile.POSIX)
+                .render(recording("con", null, null), CUT_HD, ""));
+    }
+
+    @Test
+    public void replacesDotNames() {
+        for (FilesystemProfile profile : FilesystemProfile.values()) {
+            FilenameTemplate template = FilenameTemplate.compile("{title}/{telecastId}", profile);
+
+            assertEquals(profile.name(), "_/42", template.render(recording(".", null, null), CUT_HD, ""));
+            assertEquals(profile.name(), "_/42", template.render(recording("..", null, null), CUT_HD, ""));
+        }
+    }
+
+    @Test
+    public void createsSubfolders() {
+        FilenameTemplate template = FilenameTemplate.compile("{title}/{cut}-{title}-{telecastId}",
+                FilesystemProfile.POSIX);
+
+        assertEquals("A_B/cut-A_B-42", template.render(recording("A/B", null, null), CUT_HD, ""));
+        assertEquals("A_B/cut-A_B-42 (2)", template.render(recording("A/B", null, null), CUT_HD, " (2)"));
+    }
+
+    @Test
+    public void shortensLongestTextFieldAndKeepsTelecastId() {
+        Recording recording = recording(StringUtils.repeat('a', 300), "Sub", "1");
+
+        String name = render(FilesystemProfile.WINDOWS, recording);
+
+        assertEquals(MAX_NAME_LENGTH, name.length());
+        assertTrue(name, name.endsWith("a-1-Sub-HD-42"));
+    }
+
+    @Test
+    public void shortensByBytesOnPosix() {
+        Recording recording = recording(StringUtils.repeat('ä', 300), null, null);
+
+        String name = render(FilesystemProfile.POSIX, recording);
+
+        assertTrue(name.getBytes(StandardCharsets.UTF_8).length <= MAX_NAME_LENGTH);
+        assertTrue(name.getBytes(StandardCharsets.UTF_8).length >= MAX_NAME_LENGTH - 1);
+        assertTrue(name, name.endsWith("ä-HD-42"));
+    }
+
+    @Test
+    public void identifiesNamesDifferingInCase() {
+        assertEquals("title-hd-42", FilesystemProfile.WINDOWS.identityOf("Title-HD-42"));
+        assertEquals("title-hd-42", FilesystemProfile.MAC.identityOf("Title-HD-42"));
+        assertEquals("Title-HD-42", FilesystemProfile.POSIX.identityOf("Title-HD-42"));
+    }
+
+    @Test
+    public void detectsTelecastIdInNameOfFile() {
+        assertTrue(FilenameTemplate.compile(FilenameTemplate.DEFAULT, FilesystemProfile.POSIX).containsTelecastId());
+        assertFalse(FilenameTemplate.compile("{telecastId}/{title}", FilesystemProfile.POSIX).containsTelecastId());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownField() {
+        FilenameTemplate.compile("{title}-{season}", FilesystemProfile.POSIX);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsTemplateWithoutName() {
+        FilenameTemplate.compile("//", FilesystemProfile.POSIX);
+    }
+
+    private static String render(FilesystemProfile profile, Recording recording) {
+        return FilenameTemplate.compile(FilenameTemplate.DEFAULT, profile).render(recording, CUT_HD, "");
+    }
+
+    private static Recording recording(String title, String subTitle, String episode) {
+        return new Recording.Builder()
+                .withTelecastId(42)
+                .withTitle(title)
+                .withSubTitle(subTitle)
+                .withEpisode(episode)
+                .withAvailableFormats(Collections.singleton(CUT_HD))
+                .build();
+    }
+}
@@ -0,0 +1,118 @@
+package de.web.f_reissmann.ledger;
+
+import de.web.f_reissmann.download.DownloadResult;
+import de.web.f_reissmann.recording.Recording;
+import de.web.f_reissmann.recording.format.RecordingFormat;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the {@link DownloadLedger}, especially how it copes with a partially written log.
+ *
+ * @author Fabian Reißmann
+ * @since 05.04.2017
+ */
+public class DownloadLedgerTest {
+
+    private static final String HEADER = "# telecastId\tcut\tquality\tsize\tchecksum\tfile\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void ignoresTornLastLine() throws IOException {
+        File log = write(HEADER
+                + "1\ttrue\tHD\t100\tsha256:aa\t/videos/a-1.mp4\n"
+                + "2\ttrue\tHD\t200\tsha2");
+
+        DownloadLedger ledger = DownloadLedger.open(log, folder.getRoot());
+
+        assertTrue(ledger.contains(1));
+        assertFalse(ledger.contains(2));
+    }
+
+    @Test
+    public void terminatesTornLastLineSoTheNextEntryStartsOnANewLine() throws IOException {
+        File log = write(HEADER + "1\ttrue\tHD\t100\tsha256:aa\t/videos/a-1.mp4\n2\ttr");
+
+        DownloadLedger.open(log, folder.getRoot()).record(resultOf(3));
+        DownloadLedger reopened = DownloadLedger.open(log, folder.getRoot());
+
+        assertTrue(reopened.contains(1));
+        assertFalse(reopened.contains(2));
+        assertTrue(reopened.contains(3));
+        assertTrue(reopened.isVerified(3));
+
+        List<String> lines = Files.readAllLines(log.toPath(), StandardCharsets.UTF_8);
+        assertEquals("3\ttrue\tHD\t300\tsha256:cc\t" + new File("a-3.mp4").getPath(), lines.get(lines.size() - 1));
+    }
+
+    @Test
+    public void skipsInvalidLines() throws IOException {
+        File log = write(HEADER
+                + "1\ttrue\tHD\t100\tsha256:aa\t/videos/a-1.mp4\n"
+                + "not a ledger entry\n"
+                + "x\ttrue\tHD\t100\tsha256:aa\t/videos/a-x.mp4\n"
+                + "\n"
+                + "4\tfalse\tSD\t400\t-\t/videos/d-4.mp4\n");
+
+        DownloadLedger ledger = DownloadLedger.open(log, folder.getRoot());
+
+        assertTrue(ledger.contains(1));
+        assertTrue(ledger.isVerified(1));
+        assertTrue(ledger.contains(4));
+        assertFalse(ledger.isVerified(4));
+    }
+
+    @Test
+    public void keepsCompleteLogUnchanged() throws IOException {
+        String content = HEADER + "1\ttrue\tHD\t100\tsha256:aa\t/videos/a-1.mp4\n";
+        File log = write(content);
+
+        DownloadLedger.open(log, folder.getRoot());
+
+        assertEquals(content, new String(Files.readAllBytes(log.toPath()), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void bootstrapsFromDownloadedFiles() throws IOException {
+        File destination = folder.newFolder("videos");
+        Files.write(new File(destination, "Title-1-Sub-HD-123456.mp4").toPath(), new byte[10]);
+        Files.write(new File(destination, "notes.txt").toPath(), new byte[10]);
+
+        DownloadLedger ledger = DownloadLedger.open(new File(folder.getRoot(), "ledger.tsv"), destination);
+
+        assertTrue(ledger.contains(123456));
+        assertFalse(ledger.isVerified(123456));
+    }
+
+    private File write(String content) throws IOException {
+        File log = folder.newFile("ledger.tsv");
+        Files.write(log.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return log;
+    }
+
+    private static DownloadResult resultOf(long telecastId) {
+        RecordingFormat format = RecordingFormat.of(true, RecordingFormat.Quality.HD);
+        Recording recording = new Recording.Builder()
+                .withTelecastId(telecastId)
+                .withTitle("a")
+                .withAvailableFormats(Collections.singleton(format))
+                .build();
+        return new DownloadResult(recording, format, new File("a-" + telecastId + ".mp4"), telecastId * 100,
+                telecastId * 100, Duration.ofSeconds(1), "sha256:cc");
+    }
+}
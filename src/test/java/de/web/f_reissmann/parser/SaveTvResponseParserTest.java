@@ -0,0 +1,149 @@
+package de.web.f_reissmann.parser;
+
+import de.web.f_reissmann.recording.Recording;
+import de.web.f_reissmann.recording.format.RecordingFormat;
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the {@link SaveTvResponseParser} against a sample response of the online-archive.
+ *
+ * @author Fabian Reißmann
+ * @since 05.04.2017
+ */
+public class SaveTvResponseParserTest {
+
+    private static final String ARCHIVE = "archive.json";
+
+    private final SaveTvResponseParser parser = new SaveTvResponseParser();
+
+    @Test
+    public void extractsRecordingsSortedByDaysLeft() throws IOException {
+        List<Recording> recordings = parser.extractRecordings(readArchive());
+
+        assertEquals(Arrays.asList(13698123L, 13705432L, 13710001L), telecastIdsOf(recordings));
+
+        Recording tatort = recordings.get(1);
+        assertEquals("Tatort", tatort.getTitle());
+        assertEquals("Borowski und der Himmel über Kiel", tatort.getSubTitle());
+        assertEquals("", tatort.getEpisode());
+        assertEquals(21, tatort.getDaysLeft());
+        assertEquals(new HashSet<>(Arrays.asList(
+                RecordingFormat.of(true, RecordingFormat.Quality.HD),
+                RecordingFormat.of(false, RecordingFormat.Quality.HD),
+                RecordingFormat.of(false, RecordingFormat.Quality.SD))),
+                new HashSet<>(tatort.getAvailableFormats()));
+    }
+
+    @Test
+    public void acceptsBooleansAsStrings() throws IOException {
+        List<Recording> recordings = parser.extractRecordings(readArchive());
+
+        assertEquals(Arrays.asList(RecordingFormat.of(false, RecordingFormat.Quality.MOBILE)),
+                recordings.get(0).getAvailableFormats());
+        assertEquals(new HashSet<>(Arrays.asList(
+                RecordingFormat.of(true, RecordingFormat.Quality.SD),
+                RecordingFormat.of(true, RecordingFormat.Quality.MOBILE))),
+                new HashSet<>(recordings.get(2).getAvailableFormats()));
+    }
+
+    @Test
+    public void extractsSameRecordingsFromStream() throws IOException {
+        List<Recording> fromString = parser.extractRecordings(readArchive());
+
+        List<Recording> fromStream;
+        try (InputStream archive = openArchive()) {
+            fromStream = parser.extractRecordings(archive);
+        }
+
+        assertEquals(fromString.size(), fromStream.size());
+        for (int i = 0; i < fromString.size(); i++) {
+            Recording expected = fromString.get(i);
+            Recording actual = fromStream.get(i);
+
+            assertEquals(expected.getTelecastId(), actual.getTelecastId());
+            assertEquals(expected.getTitle(), actual.getTitle());
+            assertEquals(expected.getSubTitle(), actual.getSubTitle());
+            assertEquals(expected.getEpisode(), actual.getEpisode());
+            assertEquals(expected.getDaysLeft(), actual.getDaysLeft());
+            assertEquals(expected.getAvailableFormatMask(), actual.getAvailableFormatMask());
+        }
+    }
+
+    @Test
+    public void streamsRecordingsInOrderOfResponse() throws IOException {
+        List<Recording> recordings = new ArrayList<>();
+        try (InputStream archive = openArchive()) {
+            parser.streamRecordings(archive, recordings::add);
+        }
+
+        assertEquals(Arrays.asList(13705432L, 13698123L, 13710001L), telecastIdsOf(recordings));
+    }
+
+    @Test
+    public void streamsMissingTextsAsNull() throws IOException {
+        String response = "{\"ARRVIDEOARCHIVEENTRIES\":[{\"STRTELECASTENTRY\":{\"ITELECASTID\":1,"
+                + "\"STITLE\":\"Title\",\"SSUBTITLE\":null,\"SFOLGE\":null,\"IDAYSLEFTBEFOREDELETE\":2,"
+                + "\"ARRALLOWDDOWNLOADFORMATS\":[]}}]}";
+
+        List<Recording> recordings = parser.extractRecordings(
+                new ByteArrayInputStream(response.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(1, recordings.size());
+        assertEquals("Title", recordings.get(0).getTitle());
+        assertNull(recordings.get(0).getSubTitle());
+        assertNull(recordings.get(0).getEpisode());
+        assertEquals(0, recordings.get(0).getAvailableFormatMask());
+    }
+
+    @Test
+    public void extractsDownloadUri() {
+        assertEquals("https://example.org/video.mp4",
+                parser.extractDownloadUri("{\"DOWNLOADURL\":\"https://example.org/video.mp4\",\"SIZE\":1}"));
+    }
+
+    @Test
+    public void checksResponseOfDeletion() {
+        assertTrue(parser.hasDeletedCorrectly("{}"));
+        assertTrue(parser.hasDeletedCorrectly("{\"SUCCESS\":true}"));
+        assertFalse(parser.hasDeletedCorrectly("{\"SUCCESS\":false}"));
+        assertFalse(parser.hasDeletedCorrectly("{\"SUCCESS\":true,\"ERROR\":\"Unknown telecast\"}"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rejectsResponseOfDeletionWhichIsNoObject() {
+        parser.hasDeletedCorrectly("[]");
+    }
+
+    private static List<Long> telecastIdsOf(List<Recording> recordings) {
+        List<Long> telecastIds = new ArrayList<>();
+        for (Recording recording : recordings) {
+            telecastIds.add(recording.getTelecastId());
+        }
+        return telecastIds;
+    }
+
+    private static String readArchive() throws IOException {
+        try (InputStream archive = openArchive()) {
+            return IOUtils.toString(archive, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static InputStream openArchive() {
+        return SaveTvResponseParserTest.class.getResourceAsStream(ARCHIVE);
+    }
+}
@@ -0,0 +1,104 @@
+package de.web.f_reissmann.recording.format.selection;
+
+import de.web.f_reissmann.recording.Recording;
+import de.web.f_reissmann.recording.format.RecordingFormat;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests that the {@link FormatPreference} selects the same formats as the former selection strategies, which sorted
+ * the available formats with a comparator.
+ *
+ * @author Fabian Reißmann
+ * @since 05.04.2017
+ */
+public class FormatPreferenceTest {
+
+    /**
+     * The order of the former CutBestQualityFirst: cut first, then the higher quality-code first.
+     */
+    private static final Comparator<RecordingFormat> CUT_BEST_QUALITY_FIRST =
+            Comparator.comparing((RecordingFormat format) -> !format.isCut())
+                    .thenComparing(Comparator.comparingInt(RecordingFormat::getQualityCode).reversed());
+
+    /**
+     * The order of the former CutLowestQualityFirst: cut first, then the lower quality-code first.
+     */
+    private static final Comparator<RecordingFormat> CUT_LOWEST_QUALITY_FIRST =
+            Comparator.comparing((RecordingFormat format) -> !format.isCut())
+                    .thenComparingInt(RecordingFormat::getQualityCode);
+
+    @Test
+    public void cutBestQualityMatchesFormerStrategy() {
+        assertMatches(FormatPreference.compile(FormatPreference.Order.CUT_BEST_QUALITY.name()),
+                CUT_BEST_QUALITY_FIRST);
+    }
+
+    @Test
+    public void cutLowestQualityMatchesFormerStrategy() {
+        assertMatches(FormatPreference.compile(FormatPreference.Order.CUT_LOWEST_QUALITY.name()),
+                CUT_LOWEST_QUALITY_FIRST);
+    }
+
+    @Test
+    public void ruleOfOrderEqualsItsName() {
+        for (FormatPreference.Order order : FormatPreference.Order.values()) {
+            assertEquals(FormatPreference.compile(order.name()).getRanking(),
+                    FormatPreference.compile(order.getRule()).getRanking());
+        }
+    }
+
+    @Test
+    public void rankingListsEveryFormatInOrder() {
+        List<RecordingFormat> ranking = FormatPreference.compile("CUT_BEST_QUALITY").getRanking();
+
+        List<RecordingFormat> expected = allFormats();
+        expected.sort(CUT_BEST_QUALITY_FIRST);
+        assertEquals(expected, ranking);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void failsIfNoFormatIsAvailable() {
+        FormatPreference.compile("CUT_BEST_QUALITY").select(recordingWith(0));
+    }
+
+    private static void assertMatches(FormatPreference preference, Comparator<RecordingFormat> formerOrder) {
+        for (int mask = 1; mask < 1 << RecordingFormat.COUNT; mask++) {
+            Recording recording = recordingWith(mask);
+
+            RecordingFormat expected = recording.getAvailableFormats().stream()
+                    .sorted(formerOrder)
+                    .findFirst()
+                    .orElseThrow(IllegalStateException::new);
+            assertSame("Available: " + recording.getAvailableFormats(), expected, preference.select(recording));
+        }
+    }
+
+    private static Recording recordingWith(int mask) {
+        List<RecordingFormat> formats = new ArrayList<>();
+        for (int index = 0; index < RecordingFormat.COUNT; index++) {
+            if ((mask & (1 << index)) != 0) {
+                formats.add(RecordingFormat.ofIndex(index));
+            }
+        }
+        return new Recording.Builder()
+                .withTelecastId(mask)
+                .withTitle("Title " + mask)
+                .withAvailableFormats(formats)
+                .build();
+    }
+
+    private static List<RecordingFormat> allFormats() {
+        List<RecordingFormat> formats = new ArrayList<>();
+        for (int index = 0; index < RecordingFormat.COUNT; index++) {
+            formats.add(RecordingFormat.ofIndex(index));
+        }
+        return formats;
+    }
+}
@@ -0,0 +1,116 @@
+package de.web.f_reissmann.resilience;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests the state transitions of the {@link CircuitBreaker}: closed, open, half-open and closed or open again.
+ *
+ * @author Fabian Reißmann
+ * @since 05.04.2017
+ */
+public class CircuitBreakerTest {
+
+    private static final int THRESHOLD = 3;
+    private static final long OPEN_MILLIS = 10_000L;
+
+    private final AtomicLong millis = new AtomicLong(1_000_000L);
+    private final CircuitBreaker breaker = new CircuitBreaker("test", THRESHOLD, OPEN_MILLIS, millis::get);
+
+    @Test
+    public void staysClosedBelowThreshold() throws CircuitOpenException {
+        for (int i = 0; i < 10; i++) {
+            breaker.acquirePermission();
+            breaker.onFailure();
+            breaker.acquirePermission();
+            breaker.onFailure();
+            breaker.acquirePermission();
+            breaker.onSuccess();
+        }
+    }
+
+    @Test
+    public void opensAtThreshold() throws CircuitOpenException {
+        failTimes(THRESHOLD);
+
+        millis.addAndGet(4_000L);
+        assertRejected(6_000L);
+    }
+
+    @Test
+    public void ignoredFailuresDoNotCount() throws CircuitOpenException {
+        failTimes(THRESHOLD - 1);
+        breaker.acquirePermission();
+        breaker.onIgnoredFailure();
+
+        breaker.acquirePermission();
+    }
+
+    @Test
+    public void letsOneTrialPassOnceOpenDurationPassed() throws CircuitOpenException {
+        failTimes(THRESHOLD);
+
+        millis.addAndGet(OPEN_MILLIS);
+        breaker.acquirePermission();
+        assertRejected(0L);
+    }
+
+    @Test
+    public void closesIfTrialSucceeds() throws CircuitOpenException {
+        failTimes(THRESHOLD);
+        millis.addAndGet(OPEN_MILLIS);
+        breaker.acquirePermission();
+
+        breaker.onSuccess();
+
+        breaker.acquirePermission();
+        breaker.acquirePermission();
+        failTimes(THRESHOLD - 1);
+        breaker.acquirePermission();
+    }
+
+    @Test
+    public void opensAgainIfTrialFails() throws CircuitOpenException {
+        failTimes(THRESHOLD);
+        millis.addAndGet(OPEN_MILLIS);
+        breaker.acquirePermission();
+
+        breaker.onFailure();
+
+        assertRejected(OPEN_MILLIS);
+        millis.addAndGet(OPEN_MILLIS);
+        breaker.acquirePermission();
+    }
+
+    @Test
+    public void releasesTrialOnIgnoredFailure() throws CircuitOpenException {
+        failTimes(THRESHOLD);
+        millis.addAndGet(OPEN_MILLIS);
+        breaker.acquirePermission();
+
+        breaker.onIgnoredFailure();
+
+        breaker.acquirePermission();
+        assertRejected(0L);
+    }
+
+    private void failTimes(int times) throws CircuitOpenException {
+        for (int i = 0; i < times; i++) {
+            breaker.acquirePermission();
+            breaker.onFailure();
+        }
+    }
+
+    private void assertRejected(long remainingMillis) {
+        try {
+            breaker.acquirePermission();
+            fail("The circuit breaker should be open");
+        } catch (CircuitOpenException e) {
+            assertEquals(remainingMillis, e.getRemainingMillis());
+        }
+    }
+}